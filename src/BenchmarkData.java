@@ -0,0 +1,90 @@
+import java.util.Random;
+
+/**
+ * Key streams shared by the JMH benchmarks.
+ *
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+public final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Returns distinct non-negative keys in random order.
+     *
+     * @param size number of keys
+     * @param seed random seed
+     * @return array of keys
+     */
+    public static Integer[] distinctKeys(int size, long seed) {
+        Integer[] keys = new Integer[size];
+        Random random = new Random(seed);
+        int offset = random.nextInt(Integer.MAX_VALUE / 4);
+        for (int n = 0; n < size; n++) {
+            keys[n] = offset + n * 3 + random.nextInt(3);
+        }
+        for (int n = size - 1; n > 0; n--) {
+            int m = random.nextInt(n + 1);
+            Integer temp = keys[n];
+            keys[n] = keys[m];
+            keys[m] = temp;
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the keys 0 .. size - 1 in ascending order.
+     *
+     * @param size number of keys
+     * @return array of keys
+     */
+    public static Integer[] sortedKeys(int size) {
+        Integer[] keys = new Integer[size];
+        for (int n = 0; n < size; n++) {
+            keys[n] = n;
+        }
+        return keys;
+    }
+
+    /**
+     * Returns keys drawn from only size / 100 distinct values, so most keys
+     * end up in long dup chains.
+     *
+     * @param size number of keys
+     * @param seed random seed
+     * @return array of keys
+     */
+    public static Integer[] duplicateKeys(int size, long seed) {
+        Integer[] keys = new Integer[size];
+        Random random = new Random(seed);
+        int distinct = Math.max(1, size / 100);
+        for (int n = 0; n < size; n++) {
+            keys[n] = random.nextInt(distinct);
+        }
+        return keys;
+    }
+
+    /**
+     * Returns keys for the named distribution.
+     *
+     * @param distribution "random", "sorted" or "duplicates"
+     * @param size         number of keys
+     * @param seed         random seed
+     * @return array of keys
+     * @throws IllegalArgumentException if the distribution is unknown
+     */
+    public static Integer[] keys(String distribution, int size, long seed) {
+        switch (distribution) {
+            case "random":
+                return distinctKeys(size, seed);
+            case "sorted":
+                return sortedKeys(size);
+            case "duplicates":
+                return duplicateKeys(size, seed);
+            default:
+                throw new IllegalArgumentException(distribution);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler attached, so allocation rate
+ * (gc.alloc.rate.norm, bytes per operation) is reported next to the timings.
+ *
+ * Usage: java BenchmarkRunner [regex] [param=value ...]
+ *
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Runs every benchmark matching the regex, "Benchmark" by default.
+     *
+     * @param args optional include regex followed by param overrides
+     * @throws RunnerException if JMH fails
+     */
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder options = new OptionsBuilder();
+        options.include(args.length > 0 ? args[0] : "Benchmark");
+        for (int n = 1; n < args.length; n++) {
+            String[] param = args[n].split("=", 2);
+            options.param(param[0], param[1].split(","));
+        }
+        options.addProfiler(GCProfiler.class);
+        new Runner(options.build()).run();
+    }
+}
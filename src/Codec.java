@@ -0,0 +1,137 @@
+/*
+ * Name: Yin Lam Lai
+ * PID: A15779757
+ */
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes values of one type to a ByteBuffer and reads them back. FADAF uses a
+ * key codec and a data codec to write and open snapshots; INTEGER, LONG and
+ * STRING cover the common cases.
+ *
+ * @param <T> Generic type of value
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+public interface Codec<T> {
+
+    /**
+     * Codec for Integer values, 4 bytes each.
+     */
+    Codec<Integer> INTEGER = new Codec<Integer>() {
+        @Override
+        public int size(Integer value) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void encode(Integer value, ByteBuffer out) {
+            out.putInt(value);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer in) {
+            return in.getInt();
+        }
+    };
+
+    /**
+     * Codec for Long values, 8 bytes each.
+     */
+    Codec<Long> LONG = new Codec<Long>() {
+        @Override
+        public int size(Long value) {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void encode(Long value, ByteBuffer out) {
+            out.putLong(value);
+        }
+
+        @Override
+        public Long decode(ByteBuffer in) {
+            return in.getLong();
+        }
+    };
+
+    /**
+     * Codec for String values, a 4 byte length followed by the UTF-8 bytes.
+     */
+    Codec<String> STRING = new Codec<String>() {
+        @Override
+        public int size(String value) {
+            // UTF-8 length without encoding the string
+            int bytes = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    bytes += 1;
+                } else if (c < 0x800) {
+                    bytes += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    bytes += 4;
+                    i++;
+                } else {
+                    bytes += 3;
+                }
+            }
+            return Integer.BYTES + bytes;
+        }
+
+        @Override
+        public void encode(String value, ByteBuffer out) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.putInt(bytes.length);
+            out.put(bytes);
+        }
+
+        @Override
+        public String decode(ByteBuffer in) {
+            int length = in.getInt();
+            if (length < 0) {
+                throw new IllegalArgumentException("negative string length: " + length);
+            }
+            if (length > in.remaining()) {
+                // checked before allocating, a corrupt length must not cost memory
+                throw new BufferUnderflowException();
+            }
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * Returns the number of bytes encode writes for the given value.
+     *
+     * @param value value to measure
+     * @return encoded size in bytes
+     */
+    int size(T value);
+
+    /**
+     * Writes the given value at the position of the buffer, which has at
+     * least size(value) bytes left.
+     *
+     * @param value value to write
+     * @param out   buffer to write into
+     */
+    void encode(T value, ByteBuffer out);
+
+    /**
+     * Reads one value written by encode from the position of the buffer.
+     *
+     * @param in buffer to read from
+     * @return decoded value
+     * @throws java.nio.BufferUnderflowException if the buffer ends before the
+     *                                           value does
+     * @throws IllegalArgumentException          if the bytes are not a valid
+     *                                           encoding
+     */
+    T decode(ByteBuffer in);
+}
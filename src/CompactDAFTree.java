@@ -0,0 +1,1200 @@
+/*
+ * Name: Yin Lam Lai
+ * PID: A15779757
+ */
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * Creates an AVL balanced DAF tree stored as a struct of arrays. Every pair
+ * is a slot index into parallel arrays (key, data, left, right, dup, height)
+ * instead of a DAFNode object, so a pair costs 21 bytes of array space with
+ * compressed references and no object header, and the GC traces a handful
+ * of large arrays instead of one object per pair. Freed slots go on a free
+ * list (linked through the dup array) and are reused by later inserts.
+ *
+ * Only the first slot of a key is linked into the tree; the rest of its dup
+ * chain hangs off it through dup. There are no parent links: updates descend
+ * once, remembering their path, and rebalance back up along it. Dup chains
+ * are searched linearly, so very long chains make insert and remove O(d).
+ *
+ * Plug it into FADAF with new FADAF<>(capacity, new CompactDAFTree<>()); no
+ * hash index is kept for it, which saves the index entries as well.
+ *
+ * @param <K> Generic type of key
+ * @param <D> Generic type of data
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+public class CompactDAFTree<K extends Comparable<? super K>, D> implements OrderedStore<K, D> {
+
+    // constants
+    private static final int NIL = -1; // no slot
+    private static final int DEFAULT_CAPACITY = 16; // slots of a new tree
+    private static final int MAX_HEIGHT = 64; // bound on AVL height for int slot counts
+
+    // instance variables
+    private Object[] keys; // key of each key slot, null for dup slots
+    private Object[] data; // data of each slot
+    private int[] left, right; // children of each key slot
+    private int[] dup; // next slot of the chain, or next free slot
+    private byte[] height; // subtree height of each key slot
+    private int root; // root slot
+    private int free; // first free slot
+    private int used; // slots handed out so far, freed or not
+    private int nElems; // number of elements stored
+    private int nKeys; // number of unique keys stored
+    private int modCount; // number of structural modifications, for iterators
+    private final int[] path = new int[MAX_HEIGHT]; // slots on the last descent
+
+    /**
+     * Initializes an empty CompactDAFTree.
+     */
+    public CompactDAFTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Initializes an empty CompactDAFTree with room for the given number of
+     * pairs before its arrays grow.
+     *
+     * @param capacity initial number of slots
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public CompactDAFTree(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException();
+        }
+        keys = new Object[capacity];
+        data = new Object[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        dup = new int[capacity];
+        height = new byte[capacity];
+        root = NIL;
+        free = NIL;
+    }
+
+    /**
+     * Returns the total number of elements stored in the tree.
+     *
+     * @return total number of elements stored
+     */
+    public int size() {
+        return nElems;
+    }
+
+    /**
+     * Returns the total number of unique keys stored in the tree.
+     *
+     * @return total number of unique keys stored
+     */
+    public int nUniqueKeys() {
+        return nKeys;
+    }
+
+    /**
+     * Returns the height of the tree, counting only key slots.
+     *
+     * @return height of the tree, 0 if empty
+     */
+    public int height() {
+        return height(root);
+    }
+
+    /**
+     * Returns the number of slots the arrays have room for.
+     *
+     * @return capacity in pairs
+     */
+    public int capacity() {
+        return dup.length;
+    }
+
+    /**
+     * Shrinks the arrays to the slots handed out so far. Freed slots in the
+     * middle stay on the free list, so this only gives back the unused tail.
+     */
+    public void trimToSize() {
+        resize(used);
+    }
+
+    /**
+     * Inserts the given key-data pair at the end of its key's dup chain.
+     *
+     * @param key  key to insert
+     * @param data data to insert
+     * @return the stored pair, or null if the pair already exists
+     * @throws NullPointerException if key or data is null
+     */
+    public Map.Entry<K, D> insert(K key, D data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        int before = nElems;
+        int keySlot = findOrAttach(key, k -> data);
+        if (nElems == before && appendToChain(keySlot, data) == NIL) {
+            return null;
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(key, data);
+    }
+
+    /**
+     * Checks if the key is stored in the tree.
+     *
+     * @param key key to search
+     * @return true if found, false otherwise
+     * @throws NullPointerException if the key is null
+     */
+    public boolean lookupAny(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        return find(key) != NIL;
+    }
+
+    /**
+     * Checks if the given key-data pair is stored in the tree.
+     *
+     * @param key  key to search
+     * @param data data to search
+     * @return true if found, false otherwise
+     * @throws NullPointerException if key or data is null
+     */
+    public boolean lookup(K key, D data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        int keySlot = find(key);
+        return keySlot != NIL && findInChain(keySlot, data) != NIL;
+    }
+
+    /**
+     * Returns a LinkedList of all data paired with the given key, in insertion
+     * order.
+     *
+     * @param key target key
+     * @return list of data (empty if no data found)
+     * @throws NullPointerException if the key is null
+     */
+    public LinkedList<D> getAllData(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        LinkedList<D> dataList = new LinkedList<>();
+        for (int slot = find(key); slot != NIL; slot = dup[slot]) {
+            dataList.add(dataAt(slot));
+        }
+        return dataList;
+    }
+
+    /**
+     * Removes the given key-data pair.
+     *
+     * @param key  key of the pair
+     * @param data data of the pair
+     * @return true if removed, false if the pair was not found
+     * @throws NullPointerException if key or data is null
+     */
+    public boolean remove(K key, D data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        int keySlot = find(key);
+        if (keySlot == NIL) {
+            return false;
+        }
+        int prev = NIL;
+        for (int slot = keySlot; slot != NIL; prev = slot, slot = dup[slot]) {
+            if (data.equals(this.data[slot])) {
+                removeFromChain(keySlot, prev, slot);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all pairs with the given key.
+     *
+     * @param key key to remove
+     * @return true if any pair is removed, false otherwise
+     * @throws NullPointerException if the key is null
+     */
+    public boolean removeAll(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        int keySlot = find(key);
+        if (keySlot == NIL) {
+            return false;
+        }
+        // the rest of the chain goes with its key slot
+        int slot = dup[keySlot];
+        while (slot != NIL) {
+            int next = dup[slot];
+            release(slot);
+            nElems--;
+            slot = next;
+        }
+        dup[keySlot] = NIL;
+        detach(key);
+        return true;
+    }
+
+    /**
+     * Inserts the given pair only if the key is not stored yet.
+     *
+     * @param key  key to insert
+     * @param data data to insert
+     * @return the first data of the key if it was already stored, or null if
+     *         the pair was inserted
+     * @throws NullPointerException if key or data is null
+     */
+    public D putIfAbsent(K key, D data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        int before = nElems;
+        int keySlot = findOrAttach(key, k -> data);
+        return (nElems != before) ? null : dataAt(keySlot);
+    }
+
+    /**
+     * Inserts a pair for the key with data computed by the given function,
+     * only if the key is not stored yet. The function is not called for
+     * stored keys.
+     *
+     * @param key     key to look up or insert
+     * @param mapping function computing the data of a new key
+     * @return the first data of the key, or null if the key was absent and the
+     *         function returned null
+     * @throws NullPointerException if key or mapping is null
+     */
+    public D computeIfAbsent(K key, Function<? super K, ? extends D> mapping) {
+        if (key == null || mapping == null) {
+            throw new NullPointerException();
+        }
+        int keySlot = findOrAttach(key, mapping);
+        return (keySlot == NIL) ? null : dataAt(keySlot);
+    }
+
+    /**
+     * Replaces the data of the given pair, keeping its place in the dup chain.
+     * If the new pair is already stored the old pair is just removed.
+     *
+     * @param key     key of the pair
+     * @param oldData data to replace
+     * @param newData data to put in its place
+     * @return true if the old pair was found, false otherwise
+     * @throws NullPointerException if any argument is null
+     */
+    public boolean replace(K key, D oldData, D newData) {
+        if (key == null || oldData == null || newData == null) {
+            throw new NullPointerException();
+        }
+        int keySlot = find(key);
+        return keySlot != NIL && replaceInChain(keySlot, oldData, newData);
+    }
+
+    /**
+     * Inserts the given pair if the key is absent. Otherwise the first data of
+     * the key is replaced by the result of the given function applied to it
+     * and the given data, or removed if the function returns null.
+     *
+     * @param key       key to merge into
+     * @param data      data to insert or merge
+     * @param remapping function combining the first data and the given data
+     * @return the new first data of the merged pair, or null if it was removed
+     * @throws NullPointerException if any argument is null
+     */
+    public D merge(K key, D data, BiFunction<? super D, ? super D, ? extends D> remapping) {
+        if (key == null || data == null || remapping == null) {
+            throw new NullPointerException();
+        }
+        int before = nElems;
+        int keySlot = findOrAttach(key, k -> data);
+        if (nElems != before) {
+            return data;
+        }
+        D first = dataAt(keySlot);
+        D merged = remapping.apply(first, data);
+        if (merged == null) {
+            removeFromChain(keySlot, NIL, keySlot);
+        } else {
+            replaceInChain(keySlot, first, merged);
+        }
+        return merged;
+    }
+
+    /**
+     * Returns an iterator over all pairs in ascending key order, each key's
+     * data in insertion order. The tree is walked with a stack of slots.
+     *
+     * @return iterator
+     */
+    public Iterator<Map.Entry<K, D>> iterator() {
+        return new CompactIterator();
+    }
+
+    /**
+     * Returns a spliterator over all pairs in the same order as iterator. It
+     * splits by handing out batches of the iterator, like any
+     * Spliterators.spliterator over an iterator of known size.
+     *
+     * @return spliterator
+     */
+    public Spliterator<Map.Entry<K, D>> spliterator() {
+        return Spliterators.spliterator(iterator(), nElems,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+    }
+
+    /**
+     * Returns the smallest key stored in the tree.
+     *
+     * @return minimum key, or null if the tree is empty
+     */
+    public K getMinKey() {
+        if (root == NIL) {
+            return null;
+        }
+        int slot = root;
+        while (left[slot] != NIL) {
+            slot = left[slot];
+        }
+        return keyAt(slot);
+    }
+
+    /**
+     * Returns the largest key stored in the tree.
+     *
+     * @return maximum key, or null if the tree is empty
+     */
+    public K getMaxKey() {
+        if (root == NIL) {
+            return null;
+        }
+        int slot = root;
+        while (right[slot] != NIL) {
+            slot = right[slot];
+        }
+        return keyAt(slot);
+    }
+
+    /**
+     * Returns the largest key less than or equal to the given key.
+     *
+     * @param key target key
+     * @return floor key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    public K floorKey(K key) {
+        return below(key, true);
+    }
+
+    /**
+     * Returns the smallest key greater than or equal to the given key.
+     *
+     * @param key target key
+     * @return ceiling key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    public K ceilingKey(K key) {
+        return above(key, true);
+    }
+
+    /**
+     * Returns the largest key strictly less than the given key.
+     *
+     * @param key target key
+     * @return lower key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    public K lowerKey(K key) {
+        return below(key, false);
+    }
+
+    /**
+     * Returns the smallest key strictly greater than the given key.
+     *
+     * @param key target key
+     * @return higher key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    public K higherKey(K key) {
+        return above(key, false);
+    }
+
+    /**
+     * Returns a LinkedList of all keys (including duplicates) in [lo, hi), in
+     * ascending order. Subtrees outside the bounds are skipped.
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return list of keys (empty if none in range)
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public LinkedList<K> rangeKeys(K lo, K hi) {
+        checkRange(lo, hi);
+        LinkedList<K> keyList = new LinkedList<>();
+        visitRange(root, lo, hi, keySlot -> {
+            K key = keyAt(keySlot);
+            for (int slot = keySlot; slot != NIL; slot = dup[slot]) {
+                keyList.add(key);
+            }
+        });
+        return keyList;
+    }
+
+    /**
+     * Returns a LinkedList of all key-data pairs with keys in [lo, hi), in
+     * ascending key order. Subtrees outside the bounds are skipped.
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return list of pairs (empty if none in range)
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public LinkedList<Map.Entry<K, D>> rangeEntries(K lo, K hi) {
+        checkRange(lo, hi);
+        LinkedList<Map.Entry<K, D>> entries = new LinkedList<>();
+        visitRange(root, lo, hi, keySlot -> {
+            K key = keyAt(keySlot);
+            for (int slot = keySlot; slot != NIL; slot = dup[slot]) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(key, dataAt(slot)));
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * Performs the given action on every key in ascending order, once per
+     * pair.
+     *
+     * @param action action to perform on each key
+     * @throws NullPointerException            if the action is null
+     * @throws ConcurrentModificationException if the action changes the tree
+     */
+    public void forEachKey(Consumer<? super K> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        int expectedModCount = modCount;
+        visitRange(root, null, null, keySlot -> {
+            K key = keyAt(keySlot);
+            for (int slot = keySlot; slot != NIL; slot = dup[slot]) {
+                action.accept(key);
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        });
+    }
+
+    /**
+     * Performs the given action on every data paired with the given key, in
+     * insertion order.
+     *
+     * @param key    target key
+     * @param action action to perform on each data
+     * @throws NullPointerException            if key or action is null
+     * @throws ConcurrentModificationException if the action changes the tree
+     */
+    public void forEachData(K key, Consumer<? super D> action) {
+        if (key == null || action == null) {
+            throw new NullPointerException();
+        }
+        int expectedModCount = modCount;
+        for (int slot = find(key); slot != NIL; slot = dup[slot]) {
+            action.accept(dataAt(slot));
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * Performs the given action on every pair with a key in [lo, hi), in
+     * ascending key order.
+     *
+     * @param lo     inclusive lower bound
+     * @param hi     exclusive upper bound
+     * @param action action to perform on each key and data
+     * @throws NullPointerException            if lo, hi or action is null
+     * @throws IllegalArgumentException        if lo is greater than hi
+     * @throws ConcurrentModificationException if the action changes the tree
+     */
+    public void forEachInRange(K lo, K hi, BiConsumer<? super K, ? super D> action) {
+        checkRange(lo, hi);
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        int expectedModCount = modCount;
+        visitRange(root, lo, hi, keySlot -> {
+            K key = keyAt(keySlot);
+            for (int slot = keySlot; slot != NIL; slot = dup[slot]) {
+                action.accept(key, dataAt(slot));
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        });
+    }
+
+    /**
+     * Copies keys (including duplicates) in ascending order into the given
+     * array, stopping when it is full.
+     *
+     * @param buffer array to fill from index 0
+     * @return number of keys written
+     * @throws NullPointerException if the buffer is null
+     */
+    public int getAllKeys(K[] buffer) {
+        if (buffer == null) {
+            throw new NullPointerException();
+        }
+        return fillKeys(root, null, null, buffer, 0);
+    }
+
+    /**
+     * Copies the data of the given key in insertion order into the given
+     * array, stopping when it is full.
+     *
+     * @param key    target key
+     * @param buffer array to fill from index 0
+     * @return number of data written
+     * @throws NullPointerException if key or buffer is null
+     */
+    public int getAllData(K key, D[] buffer) {
+        if (key == null || buffer == null) {
+            throw new NullPointerException();
+        }
+        int n = 0;
+        for (int slot = find(key); slot != NIL && n < buffer.length; slot = dup[slot]) {
+            buffer[n++] = dataAt(slot);
+        }
+        return n;
+    }
+
+    /**
+     * Copies keys (including duplicates) in [lo, hi) in ascending order into
+     * the given array, stopping when it is full.
+     *
+     * @param lo     inclusive lower bound
+     * @param hi     exclusive upper bound
+     * @param buffer array to fill from index 0
+     * @return number of keys written
+     * @throws NullPointerException     if lo, hi or buffer is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public int rangeKeys(K lo, K hi, K[] buffer) {
+        checkRange(lo, hi);
+        if (buffer == null) {
+            throw new NullPointerException();
+        }
+        return fillKeys(root, lo, hi, buffer, 0);
+    }
+
+    /**
+     * Removes all pairs with keys in [lo, hi).
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return list of the unique keys removed, in ascending order
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public LinkedList<K> removeRange(K lo, K hi) {
+        checkRange(lo, hi);
+        LinkedList<K> keyList = new LinkedList<>();
+        visitRange(root, lo, hi, keySlot -> keyList.add(keyAt(keySlot)));
+        for (K key : keyList) {
+            removeAll(key);
+        }
+        return keyList;
+    }
+
+    /**
+     * Helper to read the key of a slot.
+     *
+     * @param slot slot index
+     * @return its key
+     */
+    @SuppressWarnings("unchecked")
+    private K keyAt(int slot) {
+        return (K) keys[slot];
+    }
+
+    /**
+     * Helper to read the data of a slot.
+     *
+     * @param slot slot index
+     * @return its data
+     */
+    @SuppressWarnings("unchecked")
+    private D dataAt(int slot) {
+        return (D) data[slot];
+    }
+
+    /**
+     * Helper to return the height of a key slot.
+     *
+     * @param slot slot index, or NIL
+     * @return its height, 0 for NIL
+     */
+    private int height(int slot) {
+        return (slot == NIL) ? 0 : height[slot];
+    }
+
+    /**
+     * Helper to find the key slot of the given key.
+     *
+     * @param key key to search
+     * @return its key slot, or NIL if not stored
+     */
+    private int find(K key) {
+        int slot = root;
+        while (slot != NIL) {
+            int c = key.compareTo(keyAt(slot));
+            if (c == 0) {
+                return slot;
+            }
+            slot = (c < 0) ? left[slot] : right[slot];
+        }
+        return NIL;
+    }
+
+    /**
+     * Helper to find the slot holding the given data in a chain.
+     *
+     * @param keySlot first slot of the chain
+     * @param data    data to find
+     * @return its slot, or NIL if not in the chain
+     */
+    private int findInChain(int keySlot, Object data) {
+        for (int slot = keySlot; slot != NIL; slot = dup[slot]) {
+            if (data.equals(this.data[slot])) {
+                return slot;
+            }
+        }
+        return NIL;
+    }
+
+    /**
+     * Helper to find the key slot of the given key, attaching a new one with
+     * data from the given function if the key is absent. The tree is
+     * descended once and rebalanced along the same path.
+     *
+     * @param key     key to find or insert
+     * @param mapping function computing the data of a new key
+     * @return the key slot, or NIL if the key was absent and the function
+     *         returned null
+     */
+    private int findOrAttach(K key, Function<? super K, ? extends D> mapping) {
+        int depth = 0;
+        int slot = root;
+        int c = 0;
+        while (slot != NIL) {
+            c = key.compareTo(keyAt(slot));
+            if (c == 0) {
+                return slot;
+            }
+            path[depth++] = slot;
+            slot = (c < 0) ? left[slot] : right[slot];
+        }
+        D value = mapping.apply(key);
+        if (value == null) {
+            return NIL;
+        }
+        slot = allocate(value);
+        keys[slot] = key;
+        left[slot] = NIL;
+        right[slot] = NIL;
+        height[slot] = 1;
+        if (depth == 0) {
+            root = slot;
+        } else if (c < 0) {
+            left[path[depth - 1]] = slot;
+        } else {
+            right[path[depth - 1]] = slot;
+        }
+        nElems++;
+        nKeys++;
+        modCount++;
+        rebalancePath(depth);
+        return slot;
+    }
+
+    /**
+     * Helper to append data to the end of a chain unless it is already there.
+     *
+     * @param keySlot first slot of the chain
+     * @param value   data to append
+     * @return the new slot, or NIL if the pair already exists
+     */
+    private int appendToChain(int keySlot, D value) {
+        int slot = keySlot;
+        while (true) {
+            if (value.equals(data[slot])) {
+                return NIL;
+            }
+            if (dup[slot] == NIL) {
+                break;
+            }
+            slot = dup[slot];
+        }
+        int added = allocate(value);
+        dup[slot] = added;
+        nElems++;
+        modCount++;
+        return added;
+    }
+
+    /**
+     * Helper to replace data in a chain, keeping its place. If the new data
+     * is already in the chain the old pair is just removed.
+     *
+     * @param keySlot first slot of the chain
+     * @param oldData data to replace
+     * @param newData data to put in its place
+     * @return true if the old data was found, false otherwise
+     */
+    private boolean replaceInChain(int keySlot, D oldData, D newData) {
+        int prev = NIL;
+        int slot = keySlot;
+        while (slot != NIL && !oldData.equals(data[slot])) {
+            prev = slot;
+            slot = dup[slot];
+        }
+        if (slot == NIL) {
+            return false;
+        }
+        if (oldData.equals(newData)) {
+            return true;
+        }
+        if (findInChain(keySlot, newData) != NIL) {
+            removeFromChain(keySlot, prev, slot);
+        } else {
+            data[slot] = newData;
+        }
+        return true;
+    }
+
+    /**
+     * Helper to remove one slot of a chain. Removing the first slot of a
+     * longer chain moves the second one's data into it, so the key slot stays
+     * linked in the tree; removing the only slot detaches the key.
+     *
+     * @param keySlot first slot of the chain
+     * @param prev    slot before the one to remove, NIL for the first
+     * @param slot    slot to remove
+     */
+    private void removeFromChain(int keySlot, int prev, int slot) {
+        if (slot == keySlot) {
+            int next = dup[keySlot];
+            if (next == NIL) {
+                detach(keyAt(keySlot));
+                return;
+            }
+            data[keySlot] = data[next];
+            dup[keySlot] = dup[next];
+            release(next);
+        } else {
+            dup[prev] = dup[slot];
+            release(slot);
+        }
+        nElems--;
+        modCount++;
+    }
+
+    /**
+     * Helper to unlink the key slot of the given key from the tree and free
+     * it. Its chain must already be reduced to that one slot. A slot with two
+     * children takes over the contents of its successor, which is unlinked
+     * instead.
+     *
+     * @param key key to detach
+     */
+    private void detach(K key) {
+        int depth = 0;
+        int slot = root;
+        while (true) {
+            int c = key.compareTo(keyAt(slot));
+            if (c == 0) {
+                break;
+            }
+            path[depth++] = slot;
+            slot = (c < 0) ? left[slot] : right[slot];
+        }
+        int target = slot;
+        if (left[slot] != NIL && right[slot] != NIL) {
+            path[depth++] = slot;
+            slot = right[slot];
+            while (left[slot] != NIL) {
+                path[depth++] = slot;
+                slot = left[slot];
+            }
+            keys[target] = keys[slot];
+            data[target] = data[slot];
+            dup[target] = dup[slot];
+            dup[slot] = NIL;
+        }
+        int child = (left[slot] != NIL) ? left[slot] : right[slot];
+        if (depth == 0) {
+            root = child;
+        } else if (left[path[depth - 1]] == slot) {
+            left[path[depth - 1]] = child;
+        } else {
+            right[path[depth - 1]] = child;
+        }
+        release(slot);
+        nElems--;
+        nKeys--;
+        modCount++;
+        rebalancePath(depth);
+    }
+
+    /**
+     * Helper to take a slot from the free list, or a new one at the end of
+     * the arrays, growing them if they are full.
+     *
+     * @param value data of the slot
+     * @return the slot, with no chain successor
+     */
+    private int allocate(D value) {
+        int slot;
+        if (free != NIL) {
+            slot = free;
+            free = dup[slot];
+        } else {
+            if (used == dup.length) {
+                resize(Math.max(DEFAULT_CAPACITY, used + (used >> 1)));
+            }
+            slot = used++;
+        }
+        data[slot] = value;
+        dup[slot] = NIL;
+        return slot;
+    }
+
+    /**
+     * Helper to put a slot on the free list, dropping its references.
+     *
+     * @param slot slot to free
+     */
+    private void release(int slot) {
+        keys[slot] = null;
+        data[slot] = null;
+        dup[slot] = free;
+        free = slot;
+    }
+
+    /**
+     * Helper to copy the arrays into ones of the given length.
+     *
+     * @param capacity new number of slots, at least used
+     */
+    private void resize(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        data = Arrays.copyOf(data, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        dup = Arrays.copyOf(dup, capacity);
+        height = Arrays.copyOf(height, capacity);
+    }
+
+    /**
+     * Helper to rebalance the first depth slots of path, bottom up, relinking
+     * each rotated subtree into its parent. Stops early once a subtree keeps
+     * its height without rotating.
+     *
+     * @param depth number of slots on the path
+     */
+    private void rebalancePath(int depth) {
+        for (int i = depth - 1; i >= 0; i--) {
+            int slot = path[i];
+            int oldHeight = height[slot];
+            int balanced = rebalance(slot);
+            if (balanced != slot) {
+                if (i == 0) {
+                    root = balanced;
+                } else if (left[path[i - 1]] == slot) {
+                    left[path[i - 1]] = balanced;
+                } else {
+                    right[path[i - 1]] = balanced;
+                }
+            } else if (height[slot] == oldHeight) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Helper to restore the AVL property at a slot whose children are
+     * balanced.
+     *
+     * @param slot slot to rebalance
+     * @return root slot of the subtree afterwards
+     */
+    private int rebalance(int slot) {
+        updateHeight(slot);
+        int balance = height(left[slot]) - height(right[slot]);
+        if (balance > 1) {
+            if (height(left[left[slot]]) < height(right[left[slot]])) {
+                left[slot] = rotateLeft(left[slot]);
+            }
+            return rotateRight(slot);
+        }
+        if (balance < -1) {
+            if (height(right[right[slot]]) < height(left[right[slot]])) {
+                right[slot] = rotateRight(right[slot]);
+            }
+            return rotateLeft(slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Helper to rotate a subtree right.
+     *
+     * @param slot root slot of the subtree
+     * @return new root slot
+     */
+    private int rotateRight(int slot) {
+        int top = left[slot];
+        left[slot] = right[top];
+        right[top] = slot;
+        updateHeight(slot);
+        updateHeight(top);
+        return top;
+    }
+
+    /**
+     * Helper to rotate a subtree left.
+     *
+     * @param slot root slot of the subtree
+     * @return new root slot
+     */
+    private int rotateLeft(int slot) {
+        int top = right[slot];
+        right[slot] = left[top];
+        left[top] = slot;
+        updateHeight(slot);
+        updateHeight(top);
+        return top;
+    }
+
+    /**
+     * Helper to recompute the height of a slot from its children.
+     *
+     * @param slot slot to update
+     */
+    private void updateHeight(int slot) {
+        height[slot] = (byte) (1 + Math.max(height(left[slot]), height(right[slot])));
+    }
+
+    /**
+     * Helper to return the closest key at or below (or strictly below) the
+     * given key.
+     *
+     * @param key       target key
+     * @param inclusive if the key itself counts
+     * @return found key, or null if there is none
+     */
+    private K below(K key, boolean inclusive) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        int best = NIL;
+        int slot = root;
+        while (slot != NIL) {
+            int c = key.compareTo(keyAt(slot));
+            if (c > 0 || (c == 0 && inclusive)) {
+                best = slot;
+                if (c == 0) {
+                    break;
+                }
+                slot = right[slot];
+            } else {
+                slot = left[slot];
+            }
+        }
+        return (best == NIL) ? null : keyAt(best);
+    }
+
+    /**
+     * Helper to return the closest key at or above (or strictly above) the
+     * given key.
+     *
+     * @param key       target key
+     * @param inclusive if the key itself counts
+     * @return found key, or null if there is none
+     */
+    private K above(K key, boolean inclusive) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        int best = NIL;
+        int slot = root;
+        while (slot != NIL) {
+            int c = key.compareTo(keyAt(slot));
+            if (c < 0 || (c == 0 && inclusive)) {
+                best = slot;
+                if (c == 0) {
+                    break;
+                }
+                slot = left[slot];
+            } else {
+                slot = right[slot];
+            }
+        }
+        return (best == NIL) ? null : keyAt(best);
+    }
+
+    /**
+     * Helper to check the arguments of a range method.
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     */
+    private void checkRange(K lo, K hi) {
+        if (lo == null || hi == null) {
+            throw new NullPointerException();
+        }
+        if (lo.compareTo(hi) > 0) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Helper to visit the key slots of a subtree with keys in [lo, hi) in
+     * ascending order, skipping subtrees outside the bounds. Null bounds are
+     * open.
+     *
+     * @param slot   root slot of the subtree
+     * @param lo     inclusive lower bound, or null
+     * @param hi     exclusive upper bound, or null
+     * @param action action to perform on each key slot
+     */
+    private void visitRange(int slot, K lo, K hi, IntConsumer action) {
+        if (slot == NIL) {
+            return;
+        }
+        K key = keyAt(slot);
+        boolean aboveLo = lo == null || key.compareTo(lo) >= 0;
+        boolean belowHi = hi == null || key.compareTo(hi) < 0;
+        if (aboveLo) {
+            visitRange(left[slot], lo, hi, action);
+        }
+        if (aboveLo && belowHi) {
+            action.accept(slot);
+        }
+        if (belowHi) {
+            visitRange(right[slot], lo, hi, action);
+        }
+    }
+
+    /**
+     * Helper to copy the keys of a subtree in [lo, hi), once per pair, into
+     * an array until it is full. Null bounds are open.
+     *
+     * @param slot   root slot of the subtree
+     * @param lo     inclusive lower bound, or null
+     * @param hi     exclusive upper bound, or null
+     * @param buffer array to fill
+     * @param n      keys written so far
+     * @return keys written after this subtree
+     */
+    private int fillKeys(int slot, K lo, K hi, K[] buffer, int n) {
+        if (slot == NIL || n == buffer.length) {
+            return n;
+        }
+        K key = keyAt(slot);
+        boolean aboveLo = lo == null || key.compareTo(lo) >= 0;
+        boolean belowHi = hi == null || key.compareTo(hi) < 0;
+        if (aboveLo) {
+            n = fillKeys(left[slot], lo, hi, buffer, n);
+        }
+        if (aboveLo && belowHi) {
+            for (int chain = slot; chain != NIL && n < buffer.length; chain = dup[chain]) {
+                buffer[n++] = key;
+            }
+        }
+        if (belowHi) {
+            n = fillKeys(right[slot], lo, hi, buffer, n);
+        }
+        return n;
+    }
+
+    /**
+     * Creates an in-order iterator over the pairs, walking key slots with an
+     * explicit stack and each chain through dup.
+     */
+    private class CompactIterator implements Iterator<Map.Entry<K, D>> {
+
+        private final int[] stack = new int[MAX_HEIGHT]; // key slots still to visit
+        private int top; // number of slots on the stack
+        private int keySlot = NIL; // key slot of the current chain
+        private int slot = NIL; // next slot of the current chain
+        private final int expectedModCount; // modCount this iterator is valid for
+
+        /**
+         * Constructor for CompactIterator.
+         */
+        CompactIterator() {
+            expectedModCount = modCount;
+            pushLeft(root);
+        }
+
+        /**
+         * Checks if the iterator has a next pair.
+         *
+         * @return true if there is a next pair, false otherwise
+         */
+        public boolean hasNext() {
+            return slot != NIL || top > 0;
+        }
+
+        /**
+         * Returns the next pair.
+         *
+         * @return next pair
+         * @throws NoSuchElementException          if there is no next pair
+         * @throws ConcurrentModificationException if the tree changed
+         */
+        public Map.Entry<K, D> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (slot == NIL) {
+                if (top == 0) {
+                    throw new NoSuchElementException();
+                }
+                keySlot = stack[--top];
+                pushLeft(right[keySlot]);
+                slot = keySlot;
+            }
+            Map.Entry<K, D> entry = new AbstractMap.SimpleImmutableEntry<>(keyAt(keySlot), dataAt(slot));
+            slot = dup[slot];
+            return entry;
+        }
+
+        /**
+         * Helper to push a slot and its chain of left children.
+         *
+         * @param from slot to start at
+         */
+        private void pushLeft(int from) {
+            for (int cur = from; cur != NIL; cur = left[cur]) {
+                stack[top++] = cur;
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactDAFTreeTest {
+
+    @Test
+    public void dupChains() {
+        CompactDAFTree<Integer, String> tree = new CompactDAFTree<>();
+        assertNotNull(tree.insert(5, "a"));
+        assertNotNull(tree.insert(5, "b"));
+        assertNotNull(tree.insert(5, "c"));
+        assertNotNull(tree.insert(3, "d"));
+        assertNull(tree.insert(5, "b"));
+        assertEquals(4, tree.size());
+        assertEquals(2, tree.nUniqueKeys());
+        assertEquals(Arrays.asList("a", "b", "c"), tree.getAllData(5));
+
+        // removing the first pair keeps the rest of the chain in order
+        assertTrue(tree.remove(5, "a"));
+        assertEquals(Arrays.asList("b", "c"), tree.getAllData(5));
+        assertTrue(tree.replace(5, "c", "e"));
+        assertTrue(tree.replace(5, "e", "b"));
+        assertEquals(Arrays.asList("b"), tree.getAllData(5));
+        assertEquals("bx", tree.merge(5, "x", (a, b) -> a + b));
+        assertNull(tree.merge(5, "x", (a, b) -> null));
+        assertFalse(tree.lookupAny(5));
+        assertEquals("d", tree.putIfAbsent(3, "f"));
+        assertEquals("g", tree.computeIfAbsent(4, k -> "g"));
+        assertNull(tree.computeIfAbsent(6, k -> null));
+        assertEquals(2, tree.size());
+        assertTrue(tree.removeAll(3));
+        assertTrue(tree.removeAll(4));
+        assertEquals(0, tree.size());
+        assertNull(tree.getMinKey());
+    }
+
+    @Test
+    public void matchesTreeMapModel() {
+        CompactDAFTree<Integer, Integer> tree = new CompactDAFTree<>();
+        TreeMap<Integer, List<Integer>> model = new TreeMap<>();
+        Random random = new Random(7);
+        for (int n = 0; n < 200000; n++) {
+            int key = random.nextInt(2000);
+            int data = random.nextInt(4);
+            int op = random.nextInt(10);
+            List<Integer> chain = model.get(key);
+            if (op < 6) {
+                boolean added = chain == null || !chain.contains(data);
+                assertEquals(added, tree.insert(key, data) != null);
+                if (added) {
+                    model.computeIfAbsent(key, k -> new ArrayList<>()).add(data);
+                }
+            } else if (op < 9) {
+                boolean removed = chain != null && chain.remove((Integer) data);
+                assertEquals(removed, tree.remove(key, data));
+                if (chain != null && chain.isEmpty()) {
+                    model.remove(key);
+                }
+            } else {
+                assertEquals(model.remove(key) != null, tree.removeAll(key));
+            }
+        }
+        int pairs = 0;
+        for (List<Integer> chain : model.values()) {
+            pairs += chain.size();
+        }
+        assertEquals(pairs, tree.size());
+        assertEquals(model.size(), tree.nUniqueKeys());
+        // AVL height bound is about 1.44 * log2(n)
+        assertTrue(tree.height() <= 16);
+        // freed slots are reused, so the arrays never outgrow the peak size
+        assertTrue(tree.capacity() <= 2 * 2000 * 4);
+
+        Iterator<Map.Entry<Integer, Integer>> iter = tree.iterator();
+        for (Map.Entry<Integer, List<Integer>> entry : model.entrySet()) {
+            assertEquals(entry.getValue(), tree.getAllData(entry.getKey()));
+            for (Integer data : entry.getValue()) {
+                assertEquals(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), data), iter.next());
+            }
+        }
+        assertFalse(iter.hasNext());
+        for (int key = -1; key <= 2001; key += 7) {
+            assertEquals(model.floorKey(key), tree.floorKey(key));
+            assertEquals(model.ceilingKey(key), tree.ceilingKey(key));
+            assertEquals(model.lowerKey(key), tree.lowerKey(key));
+            assertEquals(model.higherKey(key), tree.higherKey(key));
+        }
+        assertEquals(model.firstKey(), tree.getMinKey());
+        assertEquals(model.lastKey(), tree.getMaxKey());
+        assertEquals(new ArrayList<>(model.subMap(100, 200).keySet()), tree.removeRange(100, 200));
+        assertTrue(tree.ceilingKey(100) >= 200);
+    }
+
+    @Test
+    public void rangesAndBuffers() {
+        CompactDAFTree<Integer, Integer> tree = new CompactDAFTree<>(4);
+        for (int i = 0; i < 30; i++) {
+            tree.insert(i % 10, i);
+        }
+        assertEquals(Arrays.asList(2, 2, 2, 3, 3, 3), tree.rangeKeys(2, 4));
+        assertEquals(new AbstractMap.SimpleImmutableEntry<>(3, 13), tree.rangeEntries(3, 4).get(1));
+        Integer[] buffer = new Integer[4];
+        assertEquals(4, tree.getAllKeys(buffer));
+        assertArrayEquals(new Integer[] {0, 0, 0, 1}, buffer);
+        assertEquals(3, tree.getAllData(7, buffer));
+        assertArrayEquals(new Integer[] {7, 17, 27, 1}, buffer);
+        assertEquals(4, tree.rangeKeys(5, 10, buffer));
+        assertArrayEquals(new Integer[] {5, 5, 5, 6}, buffer);
+        List<Integer> keys = new ArrayList<>();
+        tree.forEachKey(keys::add);
+        assertEquals(tree.rangeKeys(0, 10), keys);
+        long[] sum = new long[1];
+        tree.forEachInRange(8, 10, (k, d) -> sum[0] += d);
+        assertEquals(8 + 18 + 28 + 9 + 19 + 29, sum[0]);
+        assertEquals(30, tree.spliterator().getExactSizeIfKnown());
+        assertThrows(IllegalArgumentException.class, () -> tree.rangeKeys(5, 4));
+        assertThrows(ConcurrentModificationException.class, () -> tree.forEachKey(k -> tree.insert(k, -1)));
+        Iterator<Map.Entry<Integer, Integer>> iter = tree.iterator();
+        iter.next();
+        tree.remove(0, 0);
+        assertThrows(ConcurrentModificationException.class, iter::next);
+        tree.trimToSize();
+        assertTrue(tree.capacity() <= 31);
+        assertEquals(Arrays.asList(10, 20, -1), tree.getAllData(0));
+    }
+
+    @Test
+    public void pluggedIntoFADAF() {
+        FADAF<Integer, Integer> fadaf = new FADAF<>(10, new CompactDAFTree<Integer, Integer>());
+        for (int i = 0; i < 100; i++) {
+            fadaf.insert(i % 25, i);
+        }
+        assertEquals(100, fadaf.size());
+        assertEquals(25, fadaf.nUniqueKeys());
+        assertEquals(Arrays.asList(3, 28, 53, 78), fadaf.getAllData(3));
+        assertTrue(fadaf.removeAll(3));
+        assertEquals(Integer.valueOf(4), fadaf.higherKey(2));
+        assertEquals(Arrays.asList(0, 1, 2, 4), new ArrayList<>(fadaf.keySet().headSet(5)));
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * Name: Yin Lam Lai
+ * PID: A15779757
+ */
+
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Creates a thread-safe FADAF. The key index is split into hash segments,
+ * each a HashIndex from key to the first node of its dup chain guarded by its
+ * own StampedLock, so lookupAny only touches one segment. The DAFTree is
+ * guarded by one StampedLock: writers take it exclusively, while lookup and
+ * getAllData first try an optimistic read that takes no lock at all and only
+ * fall back to a read lock if a writer ran in between. Optimistic reads only
+ * probe a segment's array; a key that may sit in the segment's overflow tree
+ * is always read under a lock.
+ *
+ * Every write changes the tree and its key's segment while holding the tree
+ * write lock, so all reads are linearizable with insert, remove and
+ * removeAll.
+ *
+ * @param <K> Generic type of key
+ * @param <D> Generic type of data
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+public class ConcurrentFADAF<K extends Comparable<? super K>, D> {
+
+    // constants
+    public static final int DEFAULT_SEGMENTS = 32; // default number of index segments
+
+    // instance variables
+    private final DAFTree<K, D> tree;
+    private final StampedLock treeLock;
+    private final HashIndex<K, DAFTree<K, D>.DAFNode<K, D>>[] segments; // key index, split by hash
+    private final StampedLock[] segmentLocks; // one lock per segment
+
+    /**
+     * Constructor for ConcurrentFADAF with the default number of segments.
+     *
+     * @param capacity initial capacity of the key index
+     * @throws IllegalArgumentException if capacity is less than the minimum
+     *                                  threshold
+     */
+    public ConcurrentFADAF(int capacity) {
+        this(capacity, DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * Constructor for ConcurrentFADAF.
+     *
+     * @param capacity  initial capacity of the key index, split over segments
+     * @param nSegments number of index segments, rounded up to a power of two
+     * @throws IllegalArgumentException if capacity is less than the minimum
+     *                                  threshold or nSegments is not positive
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentFADAF(int capacity, int nSegments) {
+        if (capacity < HashTable.MIN_CAPACITY || nSegments <= 0) {
+            throw new IllegalArgumentException();
+        }
+        int n = Integer.highestOneBit(nSegments);
+        if (n < nSegments) {
+            n <<= 1;
+        }
+        tree = new DAFTree<>();
+        treeLock = new StampedLock();
+        segments = (HashIndex<K, DAFTree<K, D>.DAFNode<K, D>>[]) new HashIndex<?, ?>[n];
+        segmentLocks = new StampedLock[n];
+        for (int i = 0; i < n; i++) {
+            segments[i] = new HashIndex<>(Math.max(HashTable.MIN_CAPACITY, capacity / n));
+            segmentLocks[i] = new StampedLock();
+        }
+    }
+
+    /**
+     * Returns the total number of key-data pairs stored.
+     *
+     * @return count of key-data pairs
+     */
+    public int size() {
+        long stamp = treeLock.tryOptimisticRead();
+        int size = tree.size();
+        if (!treeLock.validate(stamp)) {
+            stamp = treeLock.readLock();
+            try {
+                size = tree.size();
+            } finally {
+                treeLock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the total number of unique keys stored.
+     *
+     * @return count of unique keys
+     */
+    public int nUniqueKeys() {
+        long stamp = treeLock.tryOptimisticRead();
+        int keys = tree.nUniqueKeys();
+        if (!treeLock.validate(stamp)) {
+            stamp = treeLock.readLock();
+            try {
+                keys = tree.nUniqueKeys();
+            } finally {
+                treeLock.unlockRead(stamp);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Insert the given key-data pair.
+     *
+     * @param key  key to insert
+     * @param data data to insert
+     * @return true if the pair is inserted, false if the pair was already present
+     * @throws NullPointerException if key or data is null
+     */
+    public boolean insert(K key, D data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        long stamp = treeLock.writeLock();
+        try {
+            DAFTree<K, D>.DAFNode<K, D> head = segmentFor(key).get(key);
+            if (head != null) {
+                return tree.appendDup(head, data) != null;
+            }
+            updateSegment(key, tree.insert(key, data));
+            return true;
+        } finally {
+            treeLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove all key-data pairs that share the given key.
+     *
+     * @param key key to remove
+     * @return true if at least 1 pair is removed, false otherwise
+     * @throws NullPointerException if the key is null
+     */
+    public boolean removeAll(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        long stamp = treeLock.writeLock();
+        try {
+            DAFTree<K, D>.DAFNode<K, D> head = segmentFor(key).get(key);
+            if (head == null) {
+                return false;
+            }
+            updateSegment(key, null);
+            tree.removeChain(head);
+            return true;
+        } finally {
+            treeLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove the specified pair.
+     *
+     * @param key  key of the pair to remove
+     * @param data data of the pair to remove
+     * @return true if this pair is removed, false if this pair is not present
+     * @throws NullPointerException if key or data is null
+     */
+    public boolean remove(K key, D data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        long stamp = treeLock.writeLock();
+        try {
+            DAFTree<K, D>.DAFNode<K, D> head = segmentFor(key).get(key);
+            DAFTree<K, D>.DAFNode<K, D> node = (head == null) ? null : tree.findInChain(head, data);
+            if (node == null) {
+                return false;
+            }
+            if (node == head) {
+                // the first node leaves; the tree promotes its dup in its place
+                updateSegment(key, node.dup);
+            }
+            tree.removeFromChain(head, node);
+            return true;
+        } finally {
+            treeLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Check if any pair with the given key is stored. Only the key's index
+     * segment is read, optimistically when no writer holds it.
+     *
+     * @param key key to lookup
+     * @return true if any pair is found, false otherwise
+     * @throws NullPointerException if the key is null
+     */
+    public boolean lookupAny(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        int i = segmentIndex(key);
+        HashIndex<K, DAFTree<K, D>.DAFNode<K, D>> segment = segments[i];
+        StampedLock lock = segmentLocks[i];
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                Object found = segment.peek(key);
+                if (found != HashTable.UNKNOWN && lock.validate(stamp)) {
+                    return found != null;
+                }
+            } catch (RuntimeException e) {
+                // saw a half-updated segment, retry under the lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return segment.lookup(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Check if a pair with the given key and data is stored.
+     *
+     * @param key  key of the pair to lookup
+     * @param data data of the pair to lookup
+     * @return true if the pair is found, false otherwise
+     * @throws NullPointerException if key or data is null
+     */
+    public boolean lookup(K key, D data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        long stamp = treeLock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int budget = tree.size() + 1;
+                Object found = segmentFor(key).peek(key);
+                DAFTree<K, D>.DAFNode<K, D> temp = (found == HashTable.UNKNOWN) ? null : node(found);
+                while (temp != null && budget-- > 0 && !data.equals(temp.data)) {
+                    temp = temp.dup;
+                }
+                if (found != HashTable.UNKNOWN && budget >= 0 && treeLock.validate(stamp)) {
+                    return temp != null;
+                }
+            } catch (RuntimeException e) {
+                // saw a half-updated tree, retry under the lock
+            }
+        }
+        stamp = treeLock.readLock();
+        try {
+            DAFTree<K, D>.DAFNode<K, D> head = segmentFor(key).get(key);
+            return head != null && tree.findInChain(head, data) != null;
+        } finally {
+            treeLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Return a LinkedList of data paired with the given key.
+     *
+     * @param key target key
+     * @return a list of data
+     * @throws NullPointerException if the key is null
+     */
+    public LinkedList<D> getAllData(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        long stamp = treeLock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int budget = tree.size() + 1;
+                LinkedList<D> dataList = new LinkedList<>();
+                Object found = segmentFor(key).peek(key);
+                DAFTree<K, D>.DAFNode<K, D> temp = (found == HashTable.UNKNOWN) ? null : node(found);
+                while (temp != null && budget-- > 0) {
+                    dataList.add(temp.data);
+                    temp = temp.dup;
+                }
+                if (found != HashTable.UNKNOWN && budget >= 0 && treeLock.validate(stamp)) {
+                    return dataList;
+                }
+            } catch (RuntimeException e) {
+                // saw a half-updated tree, retry under the lock
+            }
+        }
+        stamp = treeLock.readLock();
+        try {
+            LinkedList<D> dataList = new LinkedList<>();
+            for (DAFTree<K, D>.DAFNode<K, D> temp = segmentFor(key).get(key); temp != null; temp = temp.dup) {
+                dataList.add(temp.data);
+            }
+            return dataList;
+        } finally {
+            treeLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Return a LinkedList of all keys (including duplicates) in ascending order.
+     *
+     * @return a list of all keys, empty list if no keys stored
+     */
+    public LinkedList<K> getAllKeys() {
+        long stamp = treeLock.readLock();
+        try {
+            LinkedList<K> keys = new LinkedList<>();
+            Iterator<DAFTree<K, D>.DAFNode<K, D>> iter = tree.iterator();
+            while (iter.hasNext()) {
+                keys.add(iter.next().key);
+            }
+            return keys;
+        } finally {
+            treeLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Return the minimum key stored.
+     *
+     * @return minimum key, or null if no keys stored
+     */
+    public K getMinKey() {
+        long stamp = treeLock.readLock();
+        try {
+            return tree.getMinKey();
+        } finally {
+            treeLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Return the maximum key stored.
+     *
+     * @return maximum key, or null if no keys stored
+     */
+    public K getMaxKey() {
+        long stamp = treeLock.readLock();
+        try {
+            return tree.getMaxKey();
+        } finally {
+            treeLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Helper to point a key at a new first node in its index segment, or drop
+     * it. Called with the tree write lock held; segment readers that do not
+     * look at the tree only wait for this short update.
+     *
+     * @param key  key to update
+     * @param head new first node of the key, or null to delete the key
+     */
+    private void updateSegment(K key, DAFTree<K, D>.DAFNode<K, D> head) {
+        int i = segmentIndex(key);
+        long stamp = segmentLocks[i].writeLock();
+        try {
+            if (head != null) {
+                segments[i].put(key, head);
+            } else {
+                segments[i].delete(key);
+            }
+        } finally {
+            segmentLocks[i].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Helper to cast a value peeked from an index segment back to its node.
+     *
+     * @param found value returned by HashIndex.peek, not UNKNOWN
+     * @return the node, or null if the key was not stored
+     */
+    @SuppressWarnings("unchecked")
+    private DAFTree<K, D>.DAFNode<K, D> node(Object found) {
+        return (DAFTree<K, D>.DAFNode<K, D>) found;
+    }
+
+    /**
+     * Helper to return the index segment of a key. Segments only change under
+     * the tree write lock, so tree readers may read them without the segment
+     * lock.
+     *
+     * @param key key to place
+     * @return index segment
+     */
+    private HashIndex<K, DAFTree<K, D>.DAFNode<K, D>> segmentFor(K key) {
+        return segments[segmentIndex(key)];
+    }
+
+    /**
+     * Helper to pick the index segment of a key from the high bits of its
+     * spread hash; segment tables mask the low bits of the same hash.
+     *
+     * @param key key to place
+     * @return segment index
+     */
+    private int segmentIndex(K key) {
+        long h = HashTable.spread(key.hashCode()) & 0xffffffffL;
+        return (int) ((h * segments.length) >>> 32);
+    }
+}
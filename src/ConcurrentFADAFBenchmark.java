@@ -0,0 +1,108 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures read throughput of ConcurrentFADAF against a plain FADAF behind
+ * one global lock, and FADAF on the lock-free SkipListStore engine. Run the read benchmarks with increasing thread counts
+ * (JMH -t 1, 2, 4, ...) to see scaling; the "mixed" group runs seven readers
+ * next to one writer.
+ *
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ConcurrentFADAFBenchmark {
+
+    @Param({"100000", "1000000"})
+    int size;
+
+    Integer[] keys;
+    ConcurrentFADAF<Integer, Integer> concurrent;
+    FADAF<Integer, Integer> locked;
+    FADAF<Integer, Integer> skipList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = BenchmarkData.distinctKeys(size, 42);
+        concurrent = new ConcurrentFADAF<>(size);
+        locked = new FADAF<>(size);
+        skipList = new FADAF<>(size, new SkipListStore<Integer, Integer>());
+        for (int n = 0; n < keys.length; n++) {
+            concurrent.insert(keys[n], n);
+            locked.insert(keys[n], n);
+            skipList.insert(keys[n], n);
+        }
+    }
+
+    private Integer randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(size)];
+    }
+
+    @Benchmark
+    public boolean lookupAny() {
+        return concurrent.lookupAny(randomKey());
+    }
+
+    @Benchmark
+    public LinkedList<Integer> getAllData() {
+        return concurrent.getAllData(randomKey());
+    }
+
+    @Benchmark
+    public LinkedList<Integer> globalLockGetAllData() {
+        Integer key = randomKey();
+        synchronized (locked) {
+            return locked.getAllData(key);
+        }
+    }
+
+    @Benchmark
+    public LinkedList<Integer> skipListGetAllData() {
+        return skipList.getAllData(randomKey());
+    }
+
+    /**
+     * Adds and removes an extra pair on a random key. With several threads
+     * this shows whether writers on different keys wait for each other.
+     */
+    @Benchmark
+    public boolean concurrentWrite() {
+        Integer key = randomKey();
+        concurrent.insert(key, -1);
+        return concurrent.remove(key, -1);
+    }
+
+    @Benchmark
+    public boolean skipListWrite() {
+        Integer key = randomKey();
+        skipList.insert(key, -1);
+        return skipList.remove(key, -1);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(7)
+    public LinkedList<Integer> mixedRead() {
+        return concurrent.getAllData(randomKey());
+    }
+
+    /**
+     * Adds and removes an extra pair, so the size stays constant.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean mixedWrite() {
+        Integer key = randomKey();
+        concurrent.insert(key, -1);
+        return concurrent.remove(key, -1);
+    }
+}
@@ -0,0 +1,128 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentFADAFTest {
+
+    @Test
+    public void singleThreadedMatchesFADAF() {
+        ConcurrentFADAF<Integer, String> fadaf = new ConcurrentFADAF<>(10, 4);
+        assertTrue(fadaf.insert(1, "a"));
+        assertTrue(fadaf.insert(1, "b"));
+        assertFalse(fadaf.insert(1, "a"));
+        assertTrue(fadaf.insert(2, "a"));
+        assertEquals(3, fadaf.size());
+        assertEquals(2, fadaf.nUniqueKeys());
+        assertEquals(java.util.Arrays.asList("a", "b"), fadaf.getAllData(1));
+        assertTrue(fadaf.remove(1, "a"));
+        assertTrue(fadaf.lookupAny(1));
+        assertTrue(fadaf.remove(1, "b"));
+        assertFalse(fadaf.lookupAny(1));
+        assertTrue(fadaf.removeAll(2));
+        assertEquals(0, fadaf.size());
+        assertNull(fadaf.getMinKey());
+    }
+
+    @Test
+    public void readersNeverMissStableKeys() throws InterruptedException {
+        ConcurrentFADAF<Integer, String> fadaf = new ConcurrentFADAF<>(10);
+        for (int i = 0; i < 1000; i++) {
+            fadaf.insert(i, "base");
+        }
+        AtomicBoolean failed = new AtomicBoolean();
+        Thread[] threads = new Thread[6];
+        for (int t = 0; t < threads.length; t++) {
+            boolean writer = t < 2;
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int n = 0; n < 50000; n++) {
+                    int key = random.nextInt(1000);
+                    if (writer) {
+                        // churn extra pairs on stable keys and whole extra keys
+                        fadaf.insert(key, "x");
+                        fadaf.remove(key, "x");
+                        fadaf.insert(key + 1000, "y");
+                        fadaf.removeAll(key + 1000);
+                    } else if (!fadaf.lookupAny(key) || !fadaf.getAllData(key).contains("base")
+                            || !fadaf.lookup(key, "base")) {
+                        failed.set(true);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(failed.get());
+        assertEquals(1000, fadaf.size());
+        assertEquals(1000, fadaf.nUniqueKeys());
+        assertFalse(fadaf.lookupAny(1500));
+    }
+
+    @Test
+    public void overflowedKeysStayReadable() throws InterruptedException {
+        // one segment, and every key collides, so most keys overflow its array
+        ConcurrentFADAF<CollidingKey, Integer> fadaf = new ConcurrentFADAF<>(10, 1);
+        for (int i = 0; i < 300; i++) {
+            fadaf.insert(new CollidingKey(i), i);
+        }
+        AtomicBoolean failed = new AtomicBoolean();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            boolean writer = t == 0;
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int n = 0; n < 20000; n++) {
+                    int id = random.nextInt(300);
+                    if (writer) {
+                        // churn whole keys, which rotates the overflow tree
+                        fadaf.insert(new CollidingKey(id + 300), id);
+                        fadaf.removeAll(new CollidingKey(id + 300));
+                    } else if (!fadaf.lookupAny(new CollidingKey(id)) || !fadaf.lookup(new CollidingKey(id), id)
+                            || fadaf.getAllData(new CollidingKey(id)).size() != 1) {
+                        failed.set(true);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join(60000);
+            assertFalse(thread.isAlive());
+        }
+        assertFalse(failed.get());
+        assertEquals(300, fadaf.size());
+    }
+
+    /**
+     * Key whose hash codes all collide, ordered by its id.
+     */
+    private static class CollidingKey implements Comparable<CollidingKey> {
+        final int id;
+
+        CollidingKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof CollidingKey && ((CollidingKey) other).id == id;
+        }
+
+        @Override
+        public int compareTo(CollidingKey other) {
+            return Integer.compare(id, other.id);
+        }
+    }
+}
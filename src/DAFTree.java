@@ -3,9 +3,14 @@
  * PID: A15779757
  */
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
- * Crates a DAF tree with a DAF Node
+ * Crates a DAF tree with a DAF Node. This is the default OrderedStore engine
+ * behind FADAF; its nodes are the Map.Entry objects handed out by insert.
  * 
  * @param <K> Generic type of key
  * @param <D> Generic type of data
@@ -13,24 +18,38 @@ import java.util.*;
  * @since 6/6/2020
  */
 @SuppressWarnings("rawtypes")
-public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
+public class DAFTree<K extends Comparable<? super K>, D> implements Iterable, OrderedStore<K, D> {
+
+    // constants
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 13; // buildFrom input size to sort in parallel
+    private static final int DUP_INDEX_THRESHOLD = 8; // chain length above which a key's data get hashed
 
     // instance variables
     private DAFNode<K, D> root; // root node
     private int nElems; // number of elements stored
     private int nKeys; // number of unique keys stored
+    private final boolean balanced; // whether AVL rotations are applied
+    private int modCount; // number of structural modifications, for iterators
+    private DAFNode<K, D> rebalanceFrom; // lowest key node touched by a removal
+    private int maxHeight; // largest height the tree has reached
 
     /**
-     * Creates a DAF Node that takes a key-data pair.
+     * Creates a DAF Node that takes a key-data pair. Nodes are read-only
+     * entries: key and data never change while the node is in the tree.
      * 
      * @param <K> Generic type of key
      * @param <D> Generic type of data
      */
-    protected class DAFNode<K extends Comparable<? super K>, D> {
+    protected class DAFNode<K extends Comparable<? super K>, D> implements Map.Entry<K, D> {
         K key;
         D data;
         DAFNode<K, D> left, dup, right; // children
         DAFNode<K, D> par; // parent
+        int height; // height of the subtree, only meaningful for the first node of a key
+        int count; // length of the dup chain, only meaningful for the first node of a key
+        int size; // pairs in the subtree, including dups, only on the first node of a key
+        int keys; // key nodes in the subtree, only on the first node of a key
+        DAFTree<K, D>.DupIndex dups; // data -> node of this key's chain, only on the first node of long chains
 
         /**
          * Initializes a DAFNode object.
@@ -46,31 +65,72 @@ public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
             dup = null;
             right = null;
             par = null;
+            height = 1;
+            count = 1;
+            size = 1;
+            keys = 1;
+        }
+
+        /**
+         * Returns the key of this node.
+         *
+         * @return key
+         */
+        @Override
+        public K getKey() {
+            return key;
+        }
 
+        /**
+         * Returns the data of this node.
+         *
+         * @return data
+         */
+        @Override
+        public D getValue() {
+            return data;
+        }
+
+        /**
+         * Not supported, the data is part of the node's identity in its chain.
+         *
+         * @param value ignored
+         * @return never returns
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public D setValue(D value) {
+            throw new UnsupportedOperationException();
         }
 
         /**
-         * Check if obj equals to this object.
+         * Check if obj equals to this object. Follows the Map.Entry contract, so
+         * a node equals any entry with an equal key and data.
          * 
          * @param obj object to compare with
          * @return true if equal, false otherwise
          */
         @Override
         public boolean equals(Object obj) {
-            /* (Optional) TODO */
-            return false;
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+            return key.equals(other.getKey()) && data.equals(other.getValue());
         }
 
 
         /**
-         * Returns the hash value of current node.
+         * Returns the hash value of current node, as defined by Map.Entry.
          * 
          * @return hash value
          */
         @Override
         public int hashCode() {
-            /* (Optional) TODO */
-            return -1;
+            return key.hashCode() ^ data.hashCode();
         }
 
         /* PROVIDED HELPERS, MODIFY WITH CAUTION! */
@@ -101,6 +161,19 @@ public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
                 other.right.par = other;
             }
 
+            // height describes the position in the tree, so it moves with the links
+            int tempHeight = this.height;
+            this.height = other.height;
+            other.height = tempHeight;
+
+            // so do the subtree counts, but count belongs to the chain
+            int tempSize = this.size;
+            this.size = other.size;
+            other.size = tempSize;
+            int tempKeys = this.keys;
+            this.keys = other.keys;
+            other.keys = tempKeys;
+
             // no swap of dup as dup is coupled with the node
 
             temp = this.par;
@@ -141,12 +214,107 @@ public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
     }
 
     /**
-     * Initializes an empty DAFTree.
+     * Creates the hash index of a long dup chain. It maps every data of the
+     * chain to its node and remembers the last node, so finding, appending and
+     * unlinking one pair do not walk the chain. The chain itself still holds
+     * the insertion order.
+     */
+    private class DupIndex extends HashIndex<D, DAFNode<K, D>> {
+        DAFNode<K, D> tail; // last node of the chain
+
+        /**
+         * Constructor for DupIndex.
+         */
+        DupIndex() {
+            super(DUP_INDEX_THRESHOLD * 4);
+        }
+    }
+
+    /**
+     * Initializes an empty, self-balancing DAFTree.
      */
     public DAFTree() {
+        this(true);
+    }
+
+    /**
+     * Initializes an empty DAFTree.
+     *
+     * @param balanced true to keep the tree AVL balanced, false for a plain BST
+     */
+    public DAFTree(boolean balanced) {
         root = null;
         nElems = 0;
         nKeys = 0;
+        this.balanced = balanced;
+    }
+
+    /**
+     * Builds a balanced DAFTree from the given pairs in O(n) after sorting.
+     * Input that is already in key order is not sorted again; otherwise a
+     * stable sort is used (in parallel for large inputs), so each key's data
+     * keep their input order in its dup chain. Repeated pairs are dropped.
+     *
+     * @param entries pairs to load
+     * @param <K>     Generic type of key
+     * @param <D>     Generic type of data
+     * @return a new self-balancing tree holding the pairs
+     * @throws NullPointerException if entries, or any key or data, is null
+     */
+    public static <K extends Comparable<? super K>, D> DAFTree<K, D> buildFrom(
+            Iterable<? extends Map.Entry<K, D>> entries) {
+        DAFTree<K, D> tree = new DAFTree<>();
+        tree.buildSorted(sortByKey(entries));
+        return tree;
+    }
+
+    /**
+     * Replaces the contents of this tree with the given pairs, sorted and
+     * linked balanced as in buildFrom. The tree keeps its balancing mode and
+     * height record; open iterators fail fast afterwards.
+     *
+     * @param entries pairs to load
+     * @throws NullPointerException if entries, or any key or data, is null
+     */
+    void rebuildFrom(Iterable<? extends Map.Entry<K, D>> entries) {
+        buildSorted(sortByKey(entries));
+    }
+
+    /**
+     * Helper to copy the given pairs into an array in key order. Input that
+     * is already in key order is not sorted again; otherwise a stable sort is
+     * used, in parallel for large inputs.
+     *
+     * @param entries pairs to copy
+     * @param <K>     Generic type of key
+     * @param <D>     Generic type of data
+     * @return the pairs in ascending key order
+     * @throws NullPointerException if entries, or any key or data, is null
+     */
+    @SuppressWarnings("unchecked")
+    private static <K extends Comparable<? super K>, D> Map.Entry<K, D>[] sortByKey(
+            Iterable<? extends Map.Entry<K, D>> entries) {
+        ArrayList<Map.Entry<K, D>> list = new ArrayList<>();
+        for (Map.Entry<K, D> entry : entries) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                throw new NullPointerException();
+            }
+            list.add(entry);
+        }
+        Map.Entry<K, D>[] sorted = list.toArray(new Map.Entry[0]);
+        Comparator<Map.Entry<K, D>> byKey = (a, b) -> a.getKey().compareTo(b.getKey());
+        boolean inOrder = true;
+        for (int i = 1; i < sorted.length && inOrder; i++) {
+            inOrder = byKey.compare(sorted[i - 1], sorted[i]) <= 0;
+        }
+        if (!inOrder) {
+            if (sorted.length >= PARALLEL_SORT_THRESHOLD) {
+                Arrays.parallelSort(sorted, byKey);
+            } else {
+                Arrays.sort(sorted, byKey);
+            }
+        }
+        return sorted;
     }
 
     /**
@@ -168,7 +336,26 @@ public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
     }
 
     /**
-     * Inserts a new node that has given key and data to the tree.
+     * Returns the height of the tree, counting only key nodes (not duplicates).
+     *
+     * @return height of the tree, 0 if empty
+     */
+    public int height() {
+        return height(root);
+    }
+
+    /**
+     * Returns the largest height the tree has reached since it was created.
+     *
+     * @return maximum height, 0 if never filled
+     */
+    public int maxHeight() {
+        return maxHeight;
+    }
+
+    /**
+     * Inserts a new node that has given key and data to the tree. The tree is
+     * descended once, comparing each key once.
      * 
      * @param key  key to insert
      * @param data data to insert
@@ -179,49 +366,96 @@ public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
         if (key == null || data == null) {
             throw new NullPointerException();
         }
-        DAFNode<K, D> node = new DAFNode(key, data);
-        if (nElems == 0) {
-            root = node;
-            nElems++;
-            nKeys++;
-            return node;
+        int before = nElems;
+        DAFNode<K, D> keyNode = findOrAttach(key, k -> data);
+        if (nElems != before) {
+            return keyNode;
         }
+        return appendToChain(keyNode, data);
+    }
 
-        if (lookup(key, data)) {
-            return null;
+    /**
+     * Inserts the given pair only if the key is not stored yet.
+     *
+     * @param key  key to insert
+     * @param data data to insert
+     * @return the first data of the key if it was already stored, or null if
+     *         the pair was inserted
+     * @throws NullPointerException if key or data is null
+     */
+    public D putIfAbsent(K key, D data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
         }
+        int before = nElems;
+        DAFNode<K, D> keyNode = findOrAttach(key, k -> data);
+        return (nElems != before) ? null : keyNode.data;
+    }
 
-        DAFNode<K, D> temp = root;
-        while (true) {
-            if (key.compareTo(temp.key) < 0) {
-                if (temp.left == null) {
-                    temp.left = node;
-                    node.par = temp;
-                    nElems++;
-                    nKeys++;
-                    return node;
-                }
-                temp = temp.left;
-            } else if (key.compareTo(temp.key) > 0) {
-                if (temp.right == null) {
-                    temp.right = node;
-                    node.par = temp;
-                    nElems++;
-                    nKeys++;
-                    return node;
-                }
-                temp = temp.right;
-            } else {
-                while (temp.dup != null) {
-                    temp = temp.dup;
-                }
-                temp.dup = node;
-                node.par = temp;
-                nElems++;
-                return node;
-            }
+    /**
+     * Inserts a pair for the key with data computed by the given function,
+     * only if the key is not stored yet. The function is not called for
+     * stored keys.
+     *
+     * @param key     key to look up or insert
+     * @param mapping function computing the data of a new key
+     * @return the first data of the key, or null if the key was absent and the
+     *         function returned null
+     * @throws NullPointerException if key or mapping is null
+     */
+    public D computeIfAbsent(K key, Function<? super K, ? extends D> mapping) {
+        if (key == null || mapping == null) {
+            throw new NullPointerException();
+        }
+        DAFNode<K, D> keyNode = findOrAttach(key, mapping);
+        return (keyNode == null) ? null : keyNode.data;
+    }
+
+    /**
+     * Replaces the data of the given pair, keeping its place in the dup chain.
+     * If the new pair is already stored the old pair is just removed.
+     *
+     * @param key     key of the pair
+     * @param oldData data to replace
+     * @param newData data to put in its place
+     * @return true if the old pair was found, false otherwise
+     * @throws NullPointerException if any argument is null
+     */
+    public boolean replace(K key, D oldData, D newData) {
+        if (key == null || oldData == null || newData == null) {
+            throw new NullPointerException();
         }
+        DAFNode<K, D> keyNode = find(key);
+        return keyNode != null && replaceInChain(keyNode, oldData, newData) != null;
+    }
 
+    /**
+     * Inserts the given pair if the key is absent. Otherwise the first data of
+     * the key is replaced by the result of the given function applied to it
+     * and the given data, or removed if the function returns null.
+     *
+     * @param key       key to merge into
+     * @param data      data to insert or merge
+     * @param remapping function combining the first data and the given data
+     * @return the new first data of the merged pair, or null if it was removed
+     * @throws NullPointerException if any argument is null
+     */
+    public D merge(K key, D data, BiFunction<? super D, ? super D, ? extends D> remapping) {
+        if (key == null || data == null || remapping == null) {
+            throw new NullPointerException();
+        }
+        int before = nElems;
+        DAFNode<K, D> keyNode = findOrAttach(key, k -> data);
+        if (nElems != before) {
+            return data;
+        }
+        D merged = remapping.apply(keyNode.data, data);
+        if (merged == null) {
+            removeFromChain(keyNode, keyNode);
+        } else {
+            replaceInChain(keyNode, keyNode.data, merged);
+        }
+        return merged;
     }
 
     /**
@@ -235,18 +469,7 @@ public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
         if (key == null) {
             throw new NullPointerException();
         }
-        DAFNode<K, D> temp = root;
-        while (temp != null) {
-            if (key.compareTo(temp.key) < 0) {
-                temp = temp.left;
-
-            } else if (key.compareTo(temp.key) > 0) {
-                temp = temp.right;
-            } else {
-                return true;
-            }
-        }
-        return false;
+        return find(key) != null;
     }
 
     /**
@@ -261,47 +484,144 @@ public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
         if (key == null || data == null) {
             throw new NullPointerException();
         }
+        DAFNode<K, D> keyNode = find(key);
+        return keyNode != null && findInChain(keyNode, data) != null;
+    }
+
+    /**
+     * Returns the smallest key stored in the tree.
+     *
+     * @return minimum key, or null if the tree is empty
+     */
+    public K getMinKey() {
+        return (root == null) ? null : findMin(root).key;
+    }
+
+    /**
+     * Returns the largest key stored in the tree.
+     *
+     * @return maximum key, or null if the tree is empty
+     */
+    public K getMaxKey() {
+        return (root == null) ? null : findMax(root).key;
+    }
+
+    /**
+     * Returns the largest key less than or equal to the given key.
+     *
+     * @param key key to search
+     * @return floor key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    public K floorKey(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        DAFNode<K, D> best = null;
         DAFNode<K, D> temp = root;
         while (temp != null) {
-            if (key.compareTo(temp.key) < 0) {
+            int cmp = key.compareTo(temp.key);
+            if (cmp == 0) {
+                return temp.key;
+            } else if (cmp < 0) {
                 temp = temp.left;
+            } else {
+                best = temp;
+                temp = temp.right;
+            }
+        }
+        return (best == null) ? null : best.key;
+    }
 
-            } else if (key.compareTo(temp.key) > 0) {
+    /**
+     * Returns the smallest key greater than or equal to the given key.
+     *
+     * @param key key to search
+     * @return ceiling key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    public K ceilingKey(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        DAFNode<K, D> best = null;
+        DAFNode<K, D> temp = root;
+        while (temp != null) {
+            int cmp = key.compareTo(temp.key);
+            if (cmp == 0) {
+                return temp.key;
+            } else if (cmp > 0) {
                 temp = temp.right;
             } else {
-                if (data.equals(temp.data)) {
-                    return true;
-                }
-                temp = temp.dup;
+                best = temp;
+                temp = temp.left;
             }
         }
-        return false;
+        return (best == null) ? null : best.key;
     }
 
     /**
-     * Returns a LinkedList of all data associated with the given key.
-     * 
-     * @return list of data (empty if no data found)
+     * Returns the largest key strictly less than the given key.
+     *
+     * @param key key to search
+     * @return lower key, or null if there is none
      * @throws NullPointerException if the key is null
      */
-    public LinkedList<D> getAllData(K key) {
+    public K lowerKey(K key) {
         if (key == null) {
             throw new NullPointerException();
         }
-        LinkedList<D> dataList = new LinkedList<>();
+        DAFNode<K, D> best = null;
         DAFNode<K, D> temp = root;
         while (temp != null) {
-            if (key.compareTo(temp.key) < 0) {
+            if (key.compareTo(temp.key) <= 0) {
                 temp = temp.left;
+            } else {
+                best = temp;
+                temp = temp.right;
+            }
+        }
+        return (best == null) ? null : best.key;
+    }
 
-            } else if (key.compareTo(temp.key) > 0) {
+    /**
+     * Returns the smallest key strictly greater than the given key.
+     *
+     * @param key key to search
+     * @return higher key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    public K higherKey(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        DAFNode<K, D> best = null;
+        DAFNode<K, D> temp = root;
+        while (temp != null) {
+            if (key.compareTo(temp.key) >= 0) {
                 temp = temp.right;
             } else {
-                dataList.add(temp.data);
-                temp = temp.dup;
+                best = temp;
+                temp = temp.left;
             }
         }
+        return (best == null) ? null : best.key;
+    }
 
+    /**
+     * Returns a LinkedList of all data associated with the given key.
+     * 
+     * @return list of data (empty if no data found)
+     * @throws NullPointerException if the key is null
+     */
+    public LinkedList<D> getAllData(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        LinkedList<D> dataList = new LinkedList<>();
+        for (DAFNode<K, D> temp = find(key); temp != null; temp = temp.dup) {
+            dataList.add(temp.data);
+        }
         return dataList;
     }
 
@@ -315,28 +635,13 @@ public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
         if (key == null || data == null) {
             throw new NullPointerException();
         }
-        if (!lookup(key, data)) {
+        DAFNode<K, D> keyNode = find(key);
+        DAFNode<K, D> node = (keyNode == null) ? null : findInChain(keyNode, data);
+        if (node == null) {
             return false;
         }
-
-        DAFNode<K, D> temp = root;
-        while (temp != null) {
-            if (key.compareTo(temp.key) < 0) {
-                temp = temp.left;
-            } else if (key.compareTo(temp.key) > 0) {
-                temp = temp.right;
-            } else if (key.compareTo(temp.key) == 0){
-                break;
-            }
-        }
-        while (true) {
-            if (data.equals(temp.data)) {
-                remove(temp);
-                return true;
-            } else {
-                temp = temp.dup;
-            }
-        }
+        removeFromChain(keyNode, node);
+        return true;
     }
 
     /**
@@ -349,80 +654,448 @@ public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
         if (key == null) {
             throw new NullPointerException();
         }
-        if (!lookupAny(key)) {
+        DAFNode<K, D> keyNode = find(key);
+        if (keyNode == null) {
             return false;
         }
-
-        DAFNode<K, D> temp = root;
-
-        while (temp != null) {
-            if (key.compareTo(temp.key) < 0) {
-                temp = temp.left;
-
-            } else if (key.compareTo(temp.key) > 0) {
-                temp = temp.right;
-            } else {
-                while (temp.dup != null) {
-                    remove(temp.dup);
-                }
-                remove(temp);
-                break;
-            }
-        }
+        removeChain(keyNode);
         return true;
     }
 
-
-
     /**
-     * Returns a tree iterator instance.
-     * 
-     * @return iterator
+     * Appends a new node with the given data to the dup chain of the given key
+     * node, without searching the tree. Like the other chain methods below it
+     * trusts the handle, so it is only called by the FADAFs in this package
+     * with key nodes from their hash index.
+     *
+     * @param keyNode first node stored under the key
+     * @param data    data to insert
+     * @return the inserted node object, or null if the pair already exists
+     * @throws NullPointerException if data is null
      */
-    public Iterator<DAFNode<K, D>> iterator() {
-        return new DAFTreeIterator();
+    DAFNode<K, D> appendDup(DAFNode<K, D> keyNode, D data) {
+        if (data == null) {
+            throw new NullPointerException();
+        }
+        return appendToChain(keyNode, data);
     }
 
     /**
-     * Creates an iterator for a DAF Tree
+     * Returns the node holding the given data in the dup chain of the given
+     * key node, without searching the tree. O(1) for long chains.
+     *
+     * @param keyNode first node stored under the key
+     * @param data    data to find
+     * @return the node holding the data, or null if the pair is not stored
+     * @throws NullPointerException if data is null
      */
-    public class DAFTreeIterator implements Iterator<DAFNode<K, D>> {
-
-        /**
-         * Initializes a tree iterator instance.
-         */
-        Stack<DAFNode<K, D>> stack;
-
-        public DAFTreeIterator() {
-            stack  = new Stack<>();
-            traversal(root);
+    DAFNode<K, D> findInChain(DAFNode<K, D> keyNode, D data) {
+        if (data == null) {
+            throw new NullPointerException();
         }
-        public void traversal(DAFNode<K, D> node) {
-            if (node != null) {
-                traversal(node.left);
-                traversalHelper(node);
-                traversal(node.right);
-            }
+        if (keyNode.dups != null) {
+            return keyNode.dups.get(data);
         }
-        public void traversalHelper(DAFNode<K, D> node) {
-            while (node != null) {
-                stack.push(node);
-                node = node.dup;
-
+        for (DAFNode<K, D> temp = keyNode; temp != null; temp = temp.dup) {
+            if (data.equals(temp.data)) {
+                return temp;
             }
-
         }
+        return null;
+    }
 
-        /**
-         * Checks if the iterator has next element.
-         * 
-         * @return true if there is a next, false otherwise
-         */
-        public boolean hasNext() {
-            if (stack.isEmpty()) {
-                return false;
-            }
-            return true;
+    /**
+     * Replaces the data of a pair in the dup chain of the given key node,
+     * without searching the tree. A new node takes the old one's place in the
+     * chain and the tree, so entries handed out earlier keep their pair; if
+     * the new pair is already stored the old pair is just removed.
+     *
+     * @param keyNode first node stored under the key
+     * @param oldData data to replace
+     * @param newData data to put in its place
+     * @return the node now holding the new pair, which is the new key node if
+     *         keyNode was replaced, or null if the old pair was not found
+     * @throws NullPointerException if oldData or newData is null
+     */
+    DAFNode<K, D> replaceInChain(DAFNode<K, D> keyNode, D oldData, D newData) {
+        if (newData == null) {
+            throw new NullPointerException();
+        }
+        DAFNode<K, D> node = findInChain(keyNode, oldData);
+        if (node == null) {
+            return null;
+        }
+        if (oldData.equals(newData)) {
+            return node;
+        }
+        DAFNode<K, D> existing = findInChain(keyNode, newData);
+        if (existing != null) {
+            removeFromChain(keyNode, node);
+            return existing;
+        }
+        return substitute(keyNode, node, newData);
+    }
+
+    /**
+     * Removes a node from the dup chain of the given key node, without
+     * searching the tree. Removing a later node only unlinks it; removing the
+     * key node itself promotes the next node of the chain in its place.
+     *
+     * @param keyNode first node stored under the key
+     * @param node    node of that chain to remove
+     */
+    void removeFromChain(DAFNode<K, D> keyNode, DAFNode<K, D> node) {
+        if (node == keyNode) {
+            remove(node);
+            return;
+        }
+        unlinkDup(keyNode, node);
+        nElems--;
+        modCount++;
+    }
+
+    /**
+     * Removes the given key node together with its whole dup chain, without
+     * searching the tree.
+     *
+     * @param keyNode first node stored under the key
+     */
+    void removeChain(DAFNode<K, D> keyNode) {
+        // the rest of the chain goes with its key node, only that one has links
+        nElems -= keyNode.count - 1;
+        keyNode.dup = null;
+        keyNode.dups = null;
+        keyNode.count = 1;
+        remove(keyNode);
+    }
+
+    /**
+     * Returns a LinkedList of all keys (including duplicates) in [lo, hi), in
+     * ascending order. Subtrees outside the bounds are skipped.
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return list of keys (empty if none in range)
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public LinkedList<K> rangeKeys(K lo, K hi) {
+        checkRange(lo, hi);
+        LinkedList<K> keys = new LinkedList<>();
+        visitRange(root, lo, hi, node -> keys.add(node.key));
+        return keys;
+    }
+
+    /**
+     * Returns a LinkedList of all key-data pairs with keys in [lo, hi), in
+     * ascending key order. Subtrees outside the bounds are skipped.
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return list of pairs (empty if none in range)
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public LinkedList<Map.Entry<K, D>> rangeEntries(K lo, K hi) {
+        checkRange(lo, hi);
+        LinkedList<Map.Entry<K, D>> entries = new LinkedList<>();
+        visitRange(root, lo, hi,
+                node -> entries.add(new AbstractMap.SimpleImmutableEntry<>(node.key, node.data)));
+        return entries;
+    }
+
+    /**
+     * Performs the given action on every key in ascending order, once per
+     * pair. The tree is walked through parent links, so nothing is allocated.
+     *
+     * @param action action to perform on each key
+     * @throws NullPointerException            if the action is null
+     * @throws ConcurrentModificationException if the action changes the tree
+     */
+    public void forEachKey(Consumer<? super K> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        int expectedModCount = modCount;
+        for (DAFNode<K, D> node = (root == null) ? null : findMin(root); node != null; node = successor(node)) {
+            for (int i = node.count; i > 0; i--) {
+                action.accept(node.key);
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * Performs the given action on every data of the given key, walking its
+     * dup chain in insertion order.
+     *
+     * @param key    target key
+     * @param action action to perform on each data
+     * @throws NullPointerException            if key or action is null
+     * @throws ConcurrentModificationException if the action changes the tree
+     */
+    public void forEachData(K key, Consumer<? super D> action) {
+        if (key == null || action == null) {
+            throw new NullPointerException();
+        }
+        int expectedModCount = modCount;
+        for (DAFNode<K, D> temp = find(key); temp != null; temp = temp.dup) {
+            action.accept(temp.data);
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * Performs the given action on every pair with a key in [lo, hi). The walk
+     * starts at the ceiling of lo and follows successors, so it takes
+     * O(log n + k) and allocates nothing.
+     *
+     * @param lo     inclusive lower bound
+     * @param hi     exclusive upper bound
+     * @param action action to perform on each key and data
+     * @throws NullPointerException            if lo, hi or action is null
+     * @throws IllegalArgumentException        if lo is greater than hi
+     * @throws ConcurrentModificationException if the action changes the tree
+     */
+    public void forEachInRange(K lo, K hi, BiConsumer<? super K, ? super D> action) {
+        checkRange(lo, hi);
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        int expectedModCount = modCount;
+        for (DAFNode<K, D> node = ceilingNode(lo); node != null && node.key.compareTo(hi) < 0;
+                node = successor(node)) {
+            for (DAFNode<K, D> cur = node; cur != null; cur = cur.dup) {
+                action.accept(cur.key, cur.data);
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * Copies keys (including duplicates) in ascending order into the given
+     * array, stopping when it is full.
+     *
+     * @param buffer array to fill from index 0
+     * @return number of keys written
+     * @throws NullPointerException if the buffer is null
+     */
+    public int getAllKeys(K[] buffer) {
+        if (buffer == null) {
+            throw new NullPointerException();
+        }
+        int n = 0;
+        for (DAFNode<K, D> node = (root == null) ? null : findMin(root); node != null && n < buffer.length;
+                node = successor(node)) {
+            for (int i = Math.min(node.count, buffer.length - n); i > 0; i--) {
+                buffer[n++] = node.key;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Copies the data of the given key in insertion order into the given
+     * array, stopping when it is full.
+     *
+     * @param key    target key
+     * @param buffer array to fill from index 0
+     * @return number of data written
+     * @throws NullPointerException if key or buffer is null
+     */
+    public int getAllData(K key, D[] buffer) {
+        if (key == null || buffer == null) {
+            throw new NullPointerException();
+        }
+        int n = 0;
+        for (DAFNode<K, D> temp = find(key); temp != null && n < buffer.length; temp = temp.dup) {
+            buffer[n++] = temp.data;
+        }
+        return n;
+    }
+
+    /**
+     * Copies keys (including duplicates) in [lo, hi) in ascending order into
+     * the given array, stopping when it is full.
+     *
+     * @param lo     inclusive lower bound
+     * @param hi     exclusive upper bound
+     * @param buffer array to fill from index 0
+     * @return number of keys written
+     * @throws NullPointerException     if lo, hi or buffer is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public int rangeKeys(K lo, K hi, K[] buffer) {
+        checkRange(lo, hi);
+        if (buffer == null) {
+            throw new NullPointerException();
+        }
+        int n = 0;
+        for (DAFNode<K, D> node = ceilingNode(lo); node != null && n < buffer.length
+                && node.key.compareTo(hi) < 0; node = successor(node)) {
+            for (int i = Math.min(node.count, buffer.length - n); i > 0; i--) {
+                buffer[n++] = node.key;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Removes all nodes with keys in [lo, hi) from the tree.
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return list of the unique keys removed, in ascending order
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public LinkedList<K> removeRange(K lo, K hi) {
+        checkRange(lo, hi);
+        LinkedList<K> keys = new LinkedList<>();
+        visitRange(root, lo, hi, node -> {
+            // only the first node of each dup chain contributes its key
+            if (node.par == null || node.par.dup != node) {
+                keys.add(node.key);
+            }
+        });
+        for (K key : keys) {
+            removeAll(key);
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the number of pairs with keys strictly less than the given key,
+     * in O(log n) from the subtree counts.
+     *
+     * @param key target key
+     * @return number of smaller pairs
+     * @throws NullPointerException if the key is null
+     */
+    public int rank(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        int rank = 0;
+        DAFNode<K, D> temp = root;
+        while (temp != null) {
+            if (key.compareTo(temp.key) <= 0) {
+                temp = temp.left;
+            } else {
+                rank += size(temp.left) + temp.count;
+                temp = temp.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the key of the pair at the given position in ascending key
+     * order, counting duplicates, in O(log n).
+     *
+     * @param index position, from 0 to size() - 1
+     * @return key at that position
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public K select(int index) {
+        if (index < 0 || index >= nElems) {
+            throw new IndexOutOfBoundsException();
+        }
+        DAFNode<K, D> temp = root;
+        while (true) {
+            int left = size(temp.left);
+            if (index < left) {
+                temp = temp.left;
+            } else if (index < left + temp.count) {
+                return temp.key;
+            } else {
+                index -= left + temp.count;
+                temp = temp.right;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of pairs with keys in [lo, hi), in O(log n).
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return number of pairs in range
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public int countRange(K lo, K hi) {
+        checkRange(lo, hi);
+        return rank(hi) - rank(lo);
+    }
+
+    /**
+     * Returns the number of unique keys in [lo, hi), in O(log n).
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return number of unique keys in range
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public int countKeysInRange(K lo, K hi) {
+        checkRange(lo, hi);
+        return keyRank(hi) - keyRank(lo);
+    }
+
+    /**
+     * Returns the lower median key over all pairs, counting duplicates.
+     *
+     * @return median key, or null if the tree is empty
+     */
+    public K median() {
+        return (nElems == 0) ? null : select((nElems - 1) / 2);
+    }
+
+    /**
+     * Returns a tree iterator instance.
+     * 
+     * @return iterator
+     */
+    public Iterator<DAFNode<K, D>> iterator() {
+        return new DAFTreeIterator();
+    }
+
+    /**
+     * Creates an in-order iterator for a DAF Tree. Only the left spine of the
+     * unvisited part of the tree is kept, so memory is O(h) and the first
+     * element is available in O(h). Duplicates come right after their key node,
+     * in insertion order.
+     */
+    public class DAFTreeIterator implements Iterator<DAFNode<K, D>> {
+
+        private final ArrayDeque<DAFNode<K, D>> stack; // key nodes still to visit
+        private DAFNode<K, D> nextNode; // node returned by the next call to next()
+        private int expectedModCount; // modCount this iterator is valid for
+
+        /**
+         * Initializes a tree iterator instance.
+         */
+        public DAFTreeIterator() {
+            stack = new ArrayDeque<>();
+            expectedModCount = modCount;
+            pushLeft(root);
+            nextNode = popKeyNode();
+        }
+
+        /**
+         * Checks if the iterator has next element.
+         * 
+         * @return true if there is a next, false otherwise
+         */
+        public boolean hasNext() {
+            return nextNode != null;
         }
 
         /**
@@ -430,12 +1103,218 @@ public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
          * 
          * @return next node
          * @throws NoSuchElementException if the iterator reaches the end of traversal
+         * @throws ConcurrentModificationException if the tree was modified after
+         *                                         this iterator was created
          */
         public DAFNode<K, D> next() {
-            if (stack.isEmpty()) {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (nextNode == null) {
                 throw new NoSuchElementException();
             }
-            return stack.pop();
+            DAFNode<K, D> cur = nextNode;
+            nextNode = (cur.dup != null) ? cur.dup : popKeyNode();
+            return cur;
+        }
+
+        /**
+         * Helper to take the next key node off the stack, queueing the left spine
+         * of its right subtree behind it.
+         *
+         * @return next key node, or null if the traversal is done
+         */
+        private DAFNode<K, D> popKeyNode() {
+            DAFNode<K, D> node = stack.poll();
+            if (node != null) {
+                pushLeft(node.right);
+            }
+            return node;
+        }
+
+        /**
+         * Helper to push the given node and its chain of left children.
+         *
+         * @param node Subtree root, may be null
+         */
+        private void pushLeft(DAFNode<K, D> node) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+        }
+    }
+
+    /**
+     * Returns a spliterator over all nodes in the same order as iterator. It
+     * splits by subtree, so parallel streams over the tree scale, and reports
+     * the exact size until it is split.
+     *
+     * @return spliterator
+     */
+    public Spliterator<DAFNode<K, D>> spliterator() {
+        DAFNode<K, D> first = (root == null) ? null : findMin(root);
+        return new DAFTreeSpliterator(first, null, root, nElems, true, modCount);
+    }
+
+    /**
+     * Creates a spliterator over the nodes of a DAF Tree from a first key node
+     * up to an exclusive fence key node. The range covers every node of one
+     * subtree plus possibly some key nodes (with their chains) right before
+     * it. A split hands out everything before the subtree root together with
+     * its left subtree and keeps the root with its right subtree, like the
+     * spliterators of TreeMap. Splitting stops once traversal has started.
+     */
+    public class DAFTreeSpliterator implements Spliterator<DAFNode<K, D>> {
+
+        private DAFNode<K, D> keyNode; // key node of the chain being visited
+        private DAFNode<K, D> nextNode; // node returned next, null when done
+        private final DAFNode<K, D> fence; // first key node after the range, null for the end
+        private DAFNode<K, D> subtree; // subtree the next split cuts at its root
+        private long est; // number of nodes left, exact while sized
+        private boolean sized; // whether est is exact
+        private boolean started; // whether a node was visited, no splits after that
+        private final int expectedModCount; // modCount of the tree at creation
+
+        /**
+         * Constructor for DAFTreeSpliterator.
+         *
+         * @param first            first key node of the range, null if empty
+         * @param fence            first key node after the range, null for the end
+         * @param subtree          subtree covering the range after its first nodes
+         * @param est              number of nodes in the range
+         * @param sized            whether est is exact
+         * @param expectedModCount modCount of the tree to check against
+         */
+        DAFTreeSpliterator(DAFNode<K, D> first, DAFNode<K, D> fence, DAFNode<K, D> subtree, long est,
+                boolean sized, int expectedModCount) {
+            this.keyNode = first;
+            this.nextNode = first;
+            this.fence = fence;
+            this.subtree = subtree;
+            this.est = est;
+            this.sized = sized;
+            this.expectedModCount = expectedModCount;
+        }
+
+        /**
+         * Visits the next node, if any.
+         *
+         * @param action action to apply to the node
+         * @return true if a node was visited, false if none are left
+         * @throws ConcurrentModificationException if the tree was changed
+         */
+        @Override
+        public boolean tryAdvance(Consumer<? super DAFNode<K, D>> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            if (nextNode == null) {
+                return false;
+            }
+            DAFNode<K, D> cur = step();
+            action.accept(cur);
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            return true;
+        }
+
+        /**
+         * Visits all remaining nodes.
+         *
+         * @param action action to apply to each node
+         * @throws ConcurrentModificationException if the tree was changed
+         */
+        @Override
+        public void forEachRemaining(Consumer<? super DAFNode<K, D>> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            while (nextNode != null) {
+                action.accept(step());
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        /**
+         * Splits off the nodes before the current subtree root, together with
+         * its left subtree.
+         *
+         * @return spliterator over the first part, or null if this one cannot
+         *         be split
+         */
+        @Override
+        public Spliterator<DAFNode<K, D>> trySplit() {
+            DAFNode<K, D> cut = subtree;
+            if (started || cut == null || nextNode == cut || est < 2) {
+                // already started, or nothing comes before the cut
+                return null;
+            }
+            est >>>= 1;
+            sized = false;
+            DAFTreeSpliterator prefix = new DAFTreeSpliterator(keyNode, cut, cut.left, est, false,
+                    expectedModCount);
+            keyNode = cut;
+            nextNode = cut;
+            subtree = cut.right;
+            return prefix;
+        }
+
+        /**
+         * Returns the number of nodes left, exact until the first split.
+         *
+         * @return estimated size
+         */
+        @Override
+        public long estimateSize() {
+            return est;
+        }
+
+        /**
+         * Returns the characteristics of this spliterator.
+         *
+         * @return ORDERED, SORTED, DISTINCT and NONNULL, plus SIZED before a split
+         */
+        @Override
+        public int characteristics() {
+            return (sized ? SIZED : 0) | ORDERED | SORTED | DISTINCT | NONNULL;
+        }
+
+        /**
+         * Returns the order of the nodes, by key.
+         *
+         * @return key comparator for entries
+         */
+        @Override
+        public Comparator<? super DAFNode<K, D>> getComparator() {
+            return Map.Entry.comparingByKey();
+        }
+
+        /**
+         * Helper to return the next node and move past it: down its chain,
+         * then to the successor key node unless that is the fence.
+         *
+         * @return node to visit
+         */
+        private DAFNode<K, D> step() {
+            DAFNode<K, D> cur = nextNode;
+            started = true;
+            if (cur.dup != null) {
+                nextNode = cur.dup;
+            } else {
+                keyNode = successor(keyNode);
+                if (keyNode == fence) {
+                    keyNode = null;
+                }
+                nextNode = keyNode;
+            }
+            if (est > 0) {
+                est--;
+            }
+            return cur;
         }
     }
 
@@ -448,9 +1327,19 @@ public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
      * @boolean true always
      */
     public boolean remove(DAFNode<K, D> cur) {
-        if (cur.dup == null && (cur.par == null || cur.par.dup != cur))
+        if (cur.par != null && cur.par.dup == cur) {
+            // a later node of a chain never touches the tree shape
+            DAFNode<K, D> keyNode = cur.par;
+            while (keyNode.par != null && keyNode.par.dup == keyNode) {
+                keyNode = keyNode.par;
+            }
+            removeFromChain(keyNode, cur);
+            return true;
+        }
+        if (cur.dup == null)
             nKeys--;
 
+        rebalanceFrom = null;
         if (cur == root) {
             root = removeHelper(cur, cur.key, cur.data);
             if (root != null) {
@@ -460,8 +1349,11 @@ public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
             // passing in par to let helper update both par and child reference
             removeHelper(cur.par, cur.key, cur.data);
         }
+        rebalanceUp(rebalanceFrom);
+        rebalanceFrom = null;
 
         nElems--;
+        modCount++;
         return true;
     }
 
@@ -490,6 +1382,17 @@ public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
             // swap only left & right
             root.dup.left = root.left;
             root.dup.right = root.right;
+            root.dup.height = root.height;
+            root.dup.count = root.count - 1;
+            root.dup.keys = root.keys;
+            // the subtree lost one pair, fix the counts from here up
+            rebalanceFrom = root.dup;
+            if (root.dups != null) {
+                // the chain index moves to the new first node
+                root.dups.delete(root.data);
+                root.dup.dups = (root.dups.size() > DUP_INDEX_THRESHOLD / 2) ? root.dups : null;
+                root.dups = null;
+            }
             if (root.left != null) {
                 root.left.par = root.dup;
             }
@@ -519,6 +1422,10 @@ public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
 
             root.right = replacedChild = removeHelper(nextRoot, successor.key, successor.data);
         } else {
+            // a key node leaves the tree shape, heights change from its parent up
+            if (root.par == null || root.par.dup != root) {
+                rebalanceFrom = root.par;
+            }
             root = (root.left != null) ? root.left : root.right;
         }
 
@@ -529,6 +1436,546 @@ public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
         return root;
     }
 
+    /**
+     * Helper to find the first node stored under the given key, comparing the
+     * key once per level.
+     *
+     * @param key key to search
+     * @return key node, or null if the key is not stored
+     */
+    private DAFNode<K, D> find(K key) {
+        DAFNode<K, D> temp = root;
+        while (temp != null) {
+            int cmp = key.compareTo(temp.key);
+            if (cmp < 0) {
+                temp = temp.left;
+            } else if (cmp > 0) {
+                temp = temp.right;
+            } else {
+                return temp;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper to find the first node stored under the given key, or hang a new
+     * key node where the search ended. Both take one descent that compares the
+     * key once per level.
+     *
+     * @param key     key to search
+     * @param mapping function computing the data of a new key node, only
+     *                called if the key is absent
+     * @return the existing or new key node, or null if the key was absent and
+     *         mapping returned null
+     */
+    private DAFNode<K, D> findOrAttach(K key, Function<? super K, ? extends D> mapping) {
+        DAFNode<K, D> parent = null;
+        DAFNode<K, D> temp = root;
+        int cmp = 0;
+        while (temp != null) {
+            cmp = key.compareTo(temp.key);
+            if (cmp == 0) {
+                return temp;
+            }
+            parent = temp;
+            temp = (cmp < 0) ? temp.left : temp.right;
+        }
+        D data = mapping.apply(key);
+        if (data == null) {
+            return null;
+        }
+        DAFNode<K, D> node = new DAFNode<>(key, data);
+        node.par = parent;
+        if (parent == null) {
+            root = node;
+        } else if (cmp < 0) {
+            parent.left = node;
+        } else {
+            parent.right = node;
+        }
+        nElems++;
+        nKeys++;
+        modCount++;
+        rebalanceUp(parent);
+        return node;
+    }
+
+    /**
+     * Helper to return the number of unique keys strictly less than the given
+     * key.
+     *
+     * @param key target key
+     * @return number of smaller keys
+     */
+    private int keyRank(K key) {
+        int rank = 0;
+        DAFNode<K, D> temp = root;
+        while (temp != null) {
+            if (key.compareTo(temp.key) <= 0) {
+                temp = temp.left;
+            } else {
+                rank += keys(temp.left) + 1;
+                temp = temp.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Helper to validate the bounds of a range query.
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    private void checkRange(K lo, K hi) {
+        if (lo == null || hi == null) {
+            throw new NullPointerException();
+        }
+        if (lo.compareTo(hi) > 0) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Helper to visit, in order, every node (including duplicates) whose key is
+     * in [lo, hi), descending only into subtrees that can hold such keys.
+     *
+     * @param node    Subtree root, may be null
+     * @param lo      inclusive lower bound
+     * @param hi      exclusive upper bound
+     * @param visitor Action applied to each node in range
+     */
+    private void visitRange(DAFNode<K, D> node, K lo, K hi,
+            Consumer<DAFNode<K, D>> visitor) {
+        while (node != null) {
+            boolean aboveLo = lo.compareTo(node.key) <= 0;
+            boolean belowHi = node.key.compareTo(hi) < 0;
+            if (aboveLo && belowHi) {
+                visitRange(node.left, lo, hi, visitor);
+                for (DAFNode<K, D> cur = node; cur != null; cur = cur.dup) {
+                    visitor.accept(cur);
+                }
+                node = node.right;
+            } else if (aboveLo) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Helper to replace the contents of this tree with pairs sorted by key.
+     * Each run of equal keys becomes one dup chain, then the chain heads are
+     * linked into a perfectly balanced tree.
+     *
+     * @param sorted pairs in ascending key order
+     */
+    private void buildSorted(Map.Entry<K, D>[] sorted) {
+        ArrayList<DAFNode<K, D>> heads = new ArrayList<>();
+        int start = 0;
+        while (start < sorted.length) {
+            K key = sorted[start].getKey();
+            int end = start + 1;
+            while (end < sorted.length && key.compareTo(sorted[end].getKey()) == 0) {
+                end++;
+            }
+            DAFNode<K, D> head = addHead(heads, key, sorted[start].getValue());
+            for (int i = start + 1; i < end; i++) {
+                appendToChain(head, sorted[i].getValue());
+            }
+            start = end;
+        }
+        linkHeads(heads);
+    }
+
+    /**
+     * Starts a dup chain for a tree being built from sorted keys. The head is
+     * detached until linkHeads links it in; further data of its key are added
+     * with appendDup.
+     *
+     * @param heads chain heads built so far, in ascending key order
+     * @param key   key of the chain, greater than every key in heads
+     * @param data  first data of the chain
+     * @return the new chain head
+     */
+    DAFNode<K, D> addHead(ArrayList<DAFNode<K, D>> heads, K key, D data) {
+        DAFNode<K, D> head = new DAFNode<>(key, data);
+        heads.add(head);
+        return head;
+    }
+
+    /**
+     * Replaces the contents of this tree with the given chain heads, linked
+     * into a perfectly balanced tree. Open iterators fail fast afterwards.
+     *
+     * @param heads chain heads from addHead, in ascending key order
+     */
+    void linkHeads(ArrayList<DAFNode<K, D>> heads) {
+        root = linkBalanced(heads, 0, heads.size() - 1);
+        if (root != null) {
+            root.par = null;
+        }
+        nKeys = heads.size();
+        nElems = size(root);
+        maxHeight = Math.max(maxHeight, height(root));
+        modCount++;
+    }
+
+    /**
+     * Helper to append data to the dup chain of the given key node unless the
+     * chain already holds it. Chains that grow past DUP_INDEX_THRESHOLD get a
+     * DupIndex on their key node.
+     *
+     * @param keyNode first node stored under the key
+     * @param data    data to append
+     * @return the new node, or null if the pair already exists
+     */
+    private DAFNode<K, D> appendToChain(DAFNode<K, D> keyNode, D data) {
+        DAFNode<K, D> tail;
+        int length = 0;
+        if (keyNode.dups != null) {
+            if (keyNode.dups.get(data) != null) {
+                return null;
+            }
+            tail = keyNode.dups.tail;
+        } else {
+            tail = keyNode;
+            while (true) {
+                if (data.equals(tail.data)) {
+                    return null;
+                }
+                length++;
+                if (tail.dup == null) {
+                    break;
+                }
+                tail = tail.dup;
+            }
+        }
+        DAFNode<K, D> node = new DAFNode<>(keyNode.key, data);
+        tail.dup = node;
+        node.par = tail;
+        keyNode.count++;
+        addToSizes(keyNode, 1);
+        if (keyNode.dups != null) {
+            keyNode.dups.put(data, node);
+            keyNode.dups.tail = node;
+        } else if (length + 1 > DUP_INDEX_THRESHOLD) {
+            keyNode.dups = new DupIndex();
+            for (DAFNode<K, D> temp = keyNode; temp != null; temp = temp.dup) {
+                keyNode.dups.put(temp.data, temp);
+            }
+            keyNode.dups.tail = node;
+        }
+        nElems++;
+        modCount++;
+        return node;
+    }
+
+    /**
+     * Helper to unlink a node other than the key node from its dup chain. A
+     * chain index that shrinks to half the threshold is dropped again.
+     *
+     * @param keyNode first node stored under the key
+     * @param node    later node of that chain
+     */
+    private void unlinkDup(DAFNode<K, D> keyNode, DAFNode<K, D> node) {
+        DAFNode<K, D> prev = node.par;
+        prev.dup = node.dup;
+        if (node.dup != null) {
+            node.dup.par = prev;
+        }
+        keyNode.count--;
+        addToSizes(keyNode, -1);
+        if (keyNode.dups != null) {
+            keyNode.dups.delete(node.data);
+            if (keyNode.dups.tail == node) {
+                keyNode.dups.tail = prev;
+            }
+            if (keyNode.dups.size() <= DUP_INDEX_THRESHOLD / 2) {
+                keyNode.dups = null;
+            }
+        }
+    }
+
+    /**
+     * Helper to put a new node holding the given data in the place of a node
+     * of a dup chain. The new node takes over the links, heights, counts and
+     * chain index of the old one, which is left detached with its pair intact.
+     *
+     * @param keyNode first node stored under the key
+     * @param node    node of that chain to replace
+     * @param data    data of the new node
+     * @return the new node
+     */
+    private DAFNode<K, D> substitute(DAFNode<K, D> keyNode, DAFNode<K, D> node, D data) {
+        DAFNode<K, D> fresh = new DAFNode<>(node.key, data);
+        fresh.left = node.left;
+        fresh.right = node.right;
+        fresh.dup = node.dup;
+        fresh.height = node.height;
+        fresh.count = node.count;
+        fresh.size = node.size;
+        fresh.keys = node.keys;
+        fresh.dups = node.dups;
+        if (fresh.left != null) {
+            fresh.left.par = fresh;
+        }
+        if (fresh.right != null) {
+            fresh.right.par = fresh;
+        }
+        if (fresh.dup != null) {
+            fresh.dup.par = fresh;
+        }
+        if (node.par == null) {
+            root = fresh;
+        } else {
+            fresh.changeParentTo(node, node.par);
+        }
+        DupIndex index = (node == keyNode) ? fresh.dups : keyNode.dups;
+        if (index != null) {
+            index.delete(node.data);
+            index.put(data, fresh);
+            if (index.tail == node) {
+                index.tail = fresh;
+            }
+        }
+        node.left = null;
+        node.right = null;
+        node.dup = null;
+        node.par = null;
+        node.dups = null;
+        modCount++;
+        return fresh;
+    }
+
+    /**
+     * Helper to link the chain heads in [lo, hi] into a perfectly balanced
+     * subtree, setting heights on the way up.
+     *
+     * @param heads chain heads in ascending key order
+     * @param lo    first index, inclusive
+     * @param hi    last index, inclusive
+     * @return root of the subtree, or null if the range is empty
+     */
+    private DAFNode<K, D> linkBalanced(ArrayList<DAFNode<K, D>> heads, int lo, int hi) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        DAFNode<K, D> node = heads.get(mid);
+        node.left = linkBalanced(heads, lo, mid - 1);
+        node.right = linkBalanced(heads, mid + 1, hi);
+        if (node.left != null) {
+            node.left.par = node;
+        }
+        if (node.right != null) {
+            node.right.par = node;
+        }
+        updateNode(node);
+        return node;
+    }
+
+    /**
+     * Helper to update heights from the given key node up to the root, rotating
+     * every node that became unbalanced on the way if balancing is enabled.
+     *
+     * @param node Lowest key node whose subtree changed, may be null
+     */
+    private void rebalanceUp(DAFNode<K, D> node) {
+        while (node != null) {
+            updateNode(node);
+            if (balanced) {
+                node = rebalance(node);
+            }
+            node = node.par;
+        }
+        maxHeight = Math.max(maxHeight, height(root));
+    }
+
+    /**
+     * Helper to restore the AVL property at the given key node.
+     *
+     * @param node Key node to rebalance
+     * @return The node that now roots this subtree
+     */
+    private DAFNode<K, D> rebalance(DAFNode<K, D> node) {
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    /**
+     * Helper to rotate the subtree at the given key node to the left.
+     *
+     * @param node Key node whose right child moves up
+     * @return The new root of this subtree
+     */
+    private DAFNode<K, D> rotateLeft(DAFNode<K, D> node) {
+        DAFNode<K, D> child = node.right;
+        node.right = child.left;
+        if (node.right != null) {
+            node.right.par = node;
+        }
+        replaceChild(node, child);
+        child.left = node;
+        node.par = child;
+        updateNode(node);
+        updateNode(child);
+        return child;
+    }
+
+    /**
+     * Helper to rotate the subtree at the given key node to the right.
+     *
+     * @param node Key node whose left child moves up
+     * @return The new root of this subtree
+     */
+    private DAFNode<K, D> rotateRight(DAFNode<K, D> node) {
+        DAFNode<K, D> child = node.left;
+        node.left = child.right;
+        if (node.left != null) {
+            node.left.par = node;
+        }
+        replaceChild(node, child);
+        child.right = node;
+        node.par = child;
+        updateNode(node);
+        updateNode(child);
+        return child;
+    }
+
+    /**
+     * Helper to hang the replacement in place of the given key node under its
+     * parent, or make it the root.
+     *
+     * @param node        Key node being replaced
+     * @param replacement Node taking its place
+     */
+    private void replaceChild(DAFNode<K, D> node, DAFNode<K, D> replacement) {
+        DAFNode<K, D> parent = node.par;
+        replacement.par = parent;
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.left == node) {
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
+        }
+    }
+
+    /**
+     * Helper to recompute the height and subtree counts of a key node from its
+     * children and its chain.
+     *
+     * @param node Key node to update
+     */
+    private void updateNode(DAFNode<K, D> node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        node.size = size(node.left) + size(node.right) + node.count;
+        node.keys = keys(node.left) + keys(node.right) + 1;
+    }
+
+    /**
+     * Helper to add to the pair count of a key node and all its ancestors,
+     * after its chain grew or shrank.
+     *
+     * @param node  Key node whose chain changed
+     * @param delta change in the number of pairs
+     */
+    private void addToSizes(DAFNode<K, D> node, int delta) {
+        for (; node != null; node = node.par) {
+            node.size += delta;
+        }
+    }
+
+    /**
+     * Helper to return the number of pairs in a subtree.
+     *
+     * @param node Subtree root, may be null
+     * @return pairs in the subtree, 0 if null
+     */
+    private int size(DAFNode<K, D> node) {
+        return (node == null) ? 0 : node.size;
+    }
+
+    /**
+     * Helper to return the number of key nodes in a subtree.
+     *
+     * @param node Subtree root, may be null
+     * @return key nodes in the subtree, 0 if null
+     */
+    private int keys(DAFNode<K, D> node) {
+        return (node == null) ? 0 : node.keys;
+    }
+
+    /**
+     * Helper to return the height of a subtree.
+     *
+     * @param node Subtree root, may be null
+     * @return height of the subtree, 0 if null
+     */
+    private int height(DAFNode<K, D> node) {
+        return (node == null) ? 0 : node.height;
+    }
+
+    /**
+     * Helper to find the key node with the smallest key greater than or equal
+     * to the given key.
+     *
+     * @param key target key
+     * @return ceiling key node, or null if there is none
+     */
+    private DAFNode<K, D> ceilingNode(K key) {
+        DAFNode<K, D> best = null;
+        DAFNode<K, D> temp = root;
+        while (temp != null) {
+            int cmp = key.compareTo(temp.key);
+            if (cmp == 0) {
+                return temp;
+            } else if (cmp > 0) {
+                temp = temp.right;
+            } else {
+                best = temp;
+                temp = temp.left;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Helper to return the key node following the given one in key order,
+     * through the parent links.
+     *
+     * @param node Key node to start from
+     * @return The next key node, or null if this is the largest key
+     */
+    private DAFNode<K, D> successor(DAFNode<K, D> node) {
+        if (node.right != null) {
+            return findMin(node.right);
+        }
+        DAFNode<K, D> parent = node.par;
+        while (parent != null && node == parent.right) {
+            node = parent;
+            parent = parent.par;
+        }
+        return parent;
+    }
+
     /**
      * Helper to return the smallest node from a given subroot.
      *
@@ -542,4 +1989,17 @@ public class DAFTree<K extends Comparable<? super K>, D> implements Iterable {
         return cur;
     }
 
+    /**
+     * Helper to return the largest node from a given subroot.
+     *
+     * @param root Largest node will be found from this node
+     * @return The largest node from the 'root' node
+     */
+    private DAFNode<K, D> findMax(DAFNode<K, D> root) {
+        DAFNode<K, D> cur = root;
+        while (cur.right != null)
+            cur = cur.right;
+        return cur;
+    }
+
 }
@@ -0,0 +1,84 @@
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building a DAFTree from random, sorted and heavily duplicated key
+ * streams, one insert at a time and through buildFrom, point lookups on the result and a full in-order iteration.
+ * build and iterate report the time for the whole tree; divide by size for
+ * the per-element cost.
+ *
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class DAFTreeBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"random", "sorted", "duplicates"})
+    String distribution;
+
+    Integer[] keys;
+    List<Map.Entry<Integer, Integer>> entries;
+    DAFTree<Integer, Integer> tree;
+    int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = BenchmarkData.keys(distribution, size, 42);
+        tree = build();
+        entries = new ArrayList<>(size);
+        for (int n = 0; n < keys.length; n++) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(keys[n], n));
+        }
+    }
+
+    private DAFTree<Integer, Integer> build() {
+        DAFTree<Integer, Integer> result = new DAFTree<>();
+        for (int n = 0; n < keys.length; n++) {
+            result.insert(keys[n], n);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public DAFTree<Integer, Integer> insertAll() {
+        return build();
+    }
+
+    @Benchmark
+    public DAFTree<Integer, Integer> buildFrom() {
+        return DAFTree.buildFrom(entries);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean lookupAny() {
+        Integer key = keys[cursor++];
+        if (cursor == size) {
+            cursor = 0;
+        }
+        return tree.lookupAny(key);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        Iterator<DAFTree<Integer, Integer>.DAFNode<Integer, Integer>> iter = tree.iterator();
+        while (iter.hasNext()) {
+            bh.consume(iter.next());
+        }
+    }
+}
@@ -1,6 +1,20 @@
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 public class DAFTreeTest {
     DAFTree test = new DAFTree();
@@ -23,4 +37,310 @@ public class DAFTreeTest {
 
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void sortedInsertStaysBalanced() {
+        DAFTree<Integer, Integer> tree = new DAFTree<>();
+        for (int i = 0; i < 100000; i++) {
+            tree.insert(i, i);
+        }
+        assertEquals(100000, tree.size());
+        // AVL height bound is about 1.44 * log2(n)
+        assertTrue(tree.height() <= 25);
+        assertTrue(tree.lookupAny(0));
+        assertTrue(tree.lookupAny(99999));
+    }
+
+    @Test
+    public void removeKeepsBalanceAndDups() {
+        DAFTree<Integer, Integer> tree = new DAFTree<>();
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(i, 1);
+            tree.insert(i, 2);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            assertTrue(tree.removeAll(i));
+        }
+        for (int i = 1; i < 1000; i += 4) {
+            assertTrue(tree.remove(i, 1));
+        }
+        assertEquals(750, tree.size());
+        assertEquals(500, tree.nUniqueKeys());
+        assertTrue(tree.height() <= 12);
+        assertFalse(tree.lookupAny(10));
+        assertEquals(1, tree.getAllData(1).size());
+        assertEquals(2, tree.getAllData(3).size());
+    }
+
+    @Test
+    public void unbalancedModeDegenerates() {
+        DAFTree<Integer, Integer> tree = new DAFTree<>(false);
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i, i);
+        }
+        assertEquals(100, tree.height());
+    }
+
+    @Test
+    public void iteratorIsInOrderWithDups() {
+        DAFTree<Integer, Integer> tree = new DAFTree<>();
+        tree.insert(5, 1);
+        tree.insert(3, 1);
+        tree.insert(5, 2);
+        tree.insert(8, 1);
+        tree.insert(3, 2);
+        int[] keys = {3, 3, 5, 5, 8};
+        int[] data = {1, 2, 1, 2, 1};
+        Iterator<DAFTree<Integer, Integer>.DAFNode<Integer, Integer>> iter = tree.iterator();
+        for (int i = 0; i < keys.length; i++) {
+            assertTrue(iter.hasNext());
+            DAFTree<Integer, Integer>.DAFNode<Integer, Integer> node = iter.next();
+            assertEquals(keys[i], (int) node.key);
+            assertEquals(data[i], (int) node.data);
+        }
+        assertFalse(iter.hasNext());
+        assertThrows(NoSuchElementException.class, iter::next);
+    }
+
+    @Test
+    public void iteratorFailsFast() {
+        DAFTree<Integer, Integer> tree = new DAFTree<>();
+        tree.insert(1, 1);
+        tree.insert(2, 1);
+        Iterator<DAFTree<Integer, Integer>.DAFNode<Integer, Integer>> iter = tree.iterator();
+        iter.next();
+        tree.insert(3, 1);
+        assertThrows(ConcurrentModificationException.class, iter::next);
+    }
+
+    @Test
+    public void nodesAreEntries() {
+        DAFTree<Integer, String> tree = new DAFTree<>();
+        Map.Entry<Integer, String> node = tree.insert(1, "a");
+        Map.Entry<Integer, String> entry = new AbstractMap.SimpleImmutableEntry<>(1, "a");
+        assertEquals(entry, node);
+        assertEquals(node, entry);
+        assertEquals(entry.hashCode(), node.hashCode());
+        assertNotEquals(node, tree.insert(1, "b"));
+        assertThrows(UnsupportedOperationException.class, () -> node.setValue("c"));
+    }
+
+    @Test
+    public void buildFromGroupsChainsAndBalances() {
+        List<Map.Entry<Integer, String>> entries = new ArrayList<>();
+        for (int i = 999; i >= 0; i--) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(i / 2, "d" + (i % 2)));
+        }
+        entries.add(new AbstractMap.SimpleImmutableEntry<>(7, "d1"));
+        DAFTree<Integer, String> tree = DAFTree.buildFrom(entries);
+        assertEquals(1000, tree.size());
+        assertEquals(500, tree.nUniqueKeys());
+        assertEquals(9, tree.height());
+        assertEquals(Arrays.asList("d1", "d0"), tree.getAllData(7));
+        assertEquals(0, (int) tree.getMinKey());
+        assertEquals(499, (int) tree.getMaxKey());
+
+        // the built tree keeps working as a normal tree
+        tree.insert(1000, "x");
+        assertTrue(tree.remove(250, "d0"));
+        assertTrue(tree.removeAll(3));
+        assertEquals(998, tree.size());
+        assertTrue(DAFTree.<Integer, String>buildFrom(new ArrayList<>()).getAllData(1).isEmpty());
+    }
+
+    @Test
+    public void longChainsKeepOrderThroughRemovals() {
+        DAFTree<Integer, Integer> tree = new DAFTree<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i % 3, i);
+            if (i % 3 == 1) {
+                expected.add(i);
+            }
+        }
+        assertNull(tree.insert(1, 40));
+        assertTrue(tree.lookup(1, 97));
+        // drop the first node of the chain, a middle one and the last one
+        assertTrue(tree.remove(1, 1));
+        assertTrue(tree.remove(1, 49));
+        assertTrue(tree.remove(1, 97));
+        assertFalse(tree.remove(1, 49));
+        expected.removeAll(Arrays.asList(1, 49, 97));
+        assertEquals(expected, tree.getAllData(1));
+        assertNotNull(tree.insert(1, 1));
+        expected.add(1);
+        assertEquals(expected, tree.getAllData(1));
+        for (int i = 4; i < 90; i += 3) {
+            tree.remove(1, i);
+        }
+        assertEquals(Arrays.asList(91, 94, 1), tree.getAllData(1));
+        assertEquals(3 + 34 + 33, tree.size());
+    }
+
+    /**
+     * Key that counts how often it is compared.
+     */
+    static class CountingKey implements Comparable<CountingKey> {
+        static int comparisons;
+        final int value;
+
+        CountingKey(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(CountingKey other) {
+            comparisons++;
+            return Integer.compare(value, other.value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CountingKey && ((CountingKey) obj).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value;
+        }
+    }
+
+    @Test
+    public void insertComparesOncePerLevel() {
+        DAFTree<CountingKey, Integer> tree = new DAFTree<>();
+        for (int i = 0; i < 1023; i++) {
+            tree.insert(new CountingKey(2 * i), i);
+        }
+        assertEquals(10, tree.height());
+        CountingKey.comparisons = 0;
+        tree.insert(new CountingKey(501), 0);
+        assertTrue(CountingKey.comparisons <= 11, "new key: " + CountingKey.comparisons);
+        CountingKey.comparisons = 0;
+        tree.insert(new CountingKey(500), 1);
+        assertTrue(CountingKey.comparisons <= 11, "dup: " + CountingKey.comparisons);
+        CountingKey.comparisons = 0;
+        assertEquals(250, (int) tree.putIfAbsent(new CountingKey(500), 7));
+        assertTrue(CountingKey.comparisons <= 11, "putIfAbsent: " + CountingKey.comparisons);
+    }
+
+    @Test
+    public void upserts() {
+        DAFTree<String, Integer> tree = new DAFTree<>();
+        assertNull(tree.putIfAbsent("a", 1));
+        assertEquals(1, (int) tree.putIfAbsent("a", 2));
+        assertEquals(1, (int) tree.computeIfAbsent("a", k -> 3));
+        assertNull(tree.computeIfAbsent("b", k -> null));
+        assertFalse(tree.lookupAny("b"));
+        assertEquals(4, (int) tree.computeIfAbsent("b", k -> 4));
+        tree.insert("a", 5);
+        tree.insert("a", 6);
+        assertTrue(tree.replace("a", 5, 50));
+        assertEquals(Arrays.asList(1, 50, 6), tree.getAllData("a"));
+        assertTrue(tree.replace("a", 50, 6));
+        assertEquals(Arrays.asList(1, 6), tree.getAllData("a"));
+        assertFalse(tree.replace("a", 5, 7));
+        assertEquals(11, (int) tree.merge("a", 10, Integer::sum));
+        assertEquals(Arrays.asList(11, 6), tree.getAllData("a"));
+        assertNull(tree.merge("a", 0, (x, y) -> null));
+        assertEquals(Arrays.asList(6), tree.getAllData("a"));
+        assertEquals(9, (int) tree.merge("c", 9, Integer::sum));
+        assertEquals(3, tree.size());
+    }
+
+    @Test
+    public void spliteratorSplitsBySubtree() {
+        DAFTree<Integer, Integer> tree = new DAFTree<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            tree.insert(i / 2, i);
+            expected.add(i / 2);
+        }
+        Spliterator<DAFTree<Integer, Integer>.DAFNode<Integer, Integer>> split = tree.spliterator();
+        assertEquals(5000, split.getExactSizeIfKnown());
+        assertTrue(split.hasCharacteristics(Spliterator.SORTED | Spliterator.ORDERED | Spliterator.NONNULL));
+
+        // walk a tree of splits in order and check nothing is lost or repeated
+        List<Integer> keys = new ArrayList<>();
+        Deque<Spliterator<DAFTree<Integer, Integer>.DAFNode<Integer, Integer>>> parts = new ArrayDeque<>();
+        parts.push(split);
+        int splits = 0;
+        while (!parts.isEmpty()) {
+            Spliterator<DAFTree<Integer, Integer>.DAFNode<Integer, Integer>> part = parts.pop();
+            Spliterator<DAFTree<Integer, Integer>.DAFNode<Integer, Integer>> prefix = part.trySplit();
+            if (prefix != null) {
+                splits++;
+                parts.push(part);
+                parts.push(prefix);
+            } else {
+                part.forEachRemaining(node -> keys.add(node.key));
+            }
+        }
+        assertTrue(splits > 100);
+        assertEquals(expected, keys);
+
+        assertEquals(expected, StreamSupport.stream(tree.spliterator(), true)
+                .map(node -> node.key).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void orderStatistics() {
+        DAFTree<Integer, Integer> tree = new DAFTree<>();
+        assertNull(tree.median());
+        for (int i = 0; i < 300; i++) {
+            tree.insert(i / 3, i);
+        }
+        assertEquals(30, tree.rank(10));
+        assertEquals(0, tree.rank(-5));
+        assertEquals(300, tree.rank(500));
+        assertEquals(10, (int) tree.select(30));
+        assertEquals(10, (int) tree.select(32));
+        assertEquals(99, (int) tree.select(299));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.select(300));
+        assertEquals(49, (int) tree.median());
+        assertEquals(15, tree.countRange(10, 15));
+        assertEquals(5, tree.countKeysInRange(10, 15));
+
+        // counts follow removals of whole keys, first nodes and later nodes
+        tree.removeAll(10);
+        tree.remove(11, 33);
+        tree.remove(12, 38);
+        assertEquals(10, tree.countRange(10, 15));
+        assertEquals(4, tree.countKeysInRange(10, 15));
+        assertEquals(11, (int) tree.select(30));
+        assertEquals(12, (int) tree.select(32));
+        assertEquals(295, tree.size());
+    }
+
+    @Test
+    public void visitorsAndBuffers() {
+        DAFTree<Integer, String> tree = new DAFTree<>();
+        for (int i = 0; i < 50; i++) {
+            tree.insert(i % 10, "d" + i);
+        }
+        List<Integer> keys = new ArrayList<>();
+        tree.forEachKey(keys::add);
+        assertEquals(50, keys.size());
+        assertEquals(Integer.valueOf(0), keys.get(4));
+        assertEquals(Integer.valueOf(1), keys.get(5));
+
+        List<String> data = new ArrayList<>();
+        tree.forEachData(3, data::add);
+        assertEquals(Arrays.asList("d3", "d13", "d23", "d33", "d43"), data);
+
+        List<String> pairs = new ArrayList<>();
+        tree.forEachInRange(4, 6, (k, d) -> pairs.add(k + d));
+        assertEquals(Arrays.asList("4d4", "4d14", "4d24", "4d34", "4d44",
+                "5d5", "5d15", "5d25", "5d35", "5d45"), pairs);
+
+        Integer[] keyBuffer = new Integer[7];
+        assertEquals(7, tree.getAllKeys(keyBuffer));
+        assertArrayEquals(new Integer[] {0, 0, 0, 0, 0, 1, 1}, keyBuffer);
+        assertEquals(10, tree.rangeKeys(8, 20, new Integer[20]));
+        String[] dataBuffer = new String[3];
+        assertEquals(3, tree.getAllData(9, dataBuffer));
+        assertArrayEquals(new String[] {"d9", "d19", "d29"}, dataBuffer);
+        assertEquals(0, tree.getAllData(99, dataBuffer));
+
+        assertThrows(ConcurrentModificationException.class, () -> tree.forEachKey(k -> tree.insert(100 + k, "x")));
+    }
+}
@@ -3,10 +3,34 @@
  * PID: A15779757
  */
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * Creates a FADAF structure that uses a Hash table and a DAF Tree
+ * Creates a FADAF structure that uses a Hash table and a DAF Tree. The hash
+ * index maps every key to the first node of its dup chain, so per-key
+ * operations start at the chain instead of descending the tree.
+ *
+ * Any other OrderedStore can be plugged in at construction time instead of
+ * the DAFTree. Such an engine already finds its own chains, so no hash index
+ * is kept and every call goes straight to the store; FADAF is then exactly as
+ * thread-safe as its store, e.g. SkipListStore.
  *
  * @param <K> Generic type of key
  * @param <D> Generic type of data
@@ -15,8 +39,17 @@ import java.util.*;
  */
 public class FADAF<K extends Comparable<? super K>, D> {
 
-    DAFTree<K, D> tree;
-    HashTable<K> hashTable;
+    // constants
+    public static final int SNAPSHOT_MAGIC = 0x46414446; // "FADF", first int of every snapshot
+    public static final int SNAPSHOT_VERSION = 1; // snapshot format version
+    private static final int SNAPSHOT_BUFFER = 1 << 16; // bytes per snapshot channel write
+    private static final int SNAPSHOT_WINDOW = 1 << 30; // bytes of a snapshot mapped at once
+
+    // instance variables
+    OrderedStore<K, D> store; // engine holding the pairs
+    DAFTree<K, D> tree; // same as store for the DAFTree engine, null otherwise
+    HashIndex<K, DAFTree<K, D>.DAFNode<K, D>> hashTable; // key -> first node of its chain, DAFTree only
+    private volatile FADAFMetrics metrics; // call counters, null until enabled
 
     /**
      * Constructor for FADAF.
@@ -26,9 +59,28 @@ public class FADAF<K extends Comparable<? super K>, D> {
      *                                  threshold
      */
     public FADAF(int capacity) {
-        tree = new DAFTree<>();
-        hashTable = new HashTable<>(capacity);
+        this(capacity, new DAFTree<>());
+    }
 
+    /**
+     * Constructor for FADAF on the given engine.
+     * 
+     * @param capacity initial capacity of the hash index
+     * @param store    empty engine to store the pairs in
+     * @throws NullPointerException     if the store is null
+     * @throws IllegalArgumentException if capacity is less than the minimum
+     *                                  threshold or the store is not empty
+     */
+    @SuppressWarnings("unchecked")
+    public FADAF(int capacity, OrderedStore<K, D> store) {
+        if (capacity < HashTable.MIN_CAPACITY || store.size() != 0) {
+            throw new IllegalArgumentException();
+        }
+        this.store = store;
+        if (store instanceof DAFTree) {
+            tree = (DAFTree<K, D>) store;
+            hashTable = new HashIndex<>(capacity);
+        }
     }
 
     /**
@@ -37,7 +89,7 @@ public class FADAF<K extends Comparable<? super K>, D> {
      * @return count of key-data pairs
      */
     public int size() {
-        return tree.size();
+        return store.size();
     }
 
     /**
@@ -46,7 +98,7 @@ public class FADAF<K extends Comparable<? super K>, D> {
      * @return count of unique keys
      */
     public int nUniqueKeys() {
-        return tree.nUniqueKeys();
+        return store.nUniqueKeys();
     }
 
     /**
@@ -58,15 +110,217 @@ public class FADAF<K extends Comparable<? super K>, D> {
      * @throws NullPointerException if key or data is null
      */
     public boolean insert(K key, D data) {
-        DAFTree<K, D>.DAFNode<K, D> check = tree.insert(key, data);
-        if (check == null) {
-            return false;
+        long start = startTimer();
+        try {
+            if (key == null || data == null) {
+                throw new NullPointerException();
+            }
+            if (tree == null) {
+                return store.insert(key, data) != null;
+            }
+            // one probe finds the chain, or inserts a new key with one descent
+            int before = tree.size();
+            DAFTree<K, D>.DAFNode<K, D> head = hashTable.computeIfAbsent(key, k -> tree.insert(k, data));
+            return tree.size() != before || tree.appendDup(head, data) != null;
+        } finally {
+            stopTimer(FADAFMetrics.Op.INSERT, start);
         }
-        if (!hashTable.lookup(key)) {
-            hashTable.insert(key);
+    }
+
+    /**
+     * Insert all given key-data pairs at once. With the DAFTree engine the
+     * stored pairs and the new ones are sorted together and the tree is
+     * rebuilt balanced in one pass, and the hash index is sized up front so
+     * it never resizes during the load. The rebuild replaces every node of
+     * the same DAFTree, keeping its balancing mode, so tree iterators opened
+     * before the load throw ConcurrentModificationException instead of
+     * walking the old nodes; the key views carry on by key. Other engines
+     * insert pair by pair.
+     * 
+     * @param entries pairs to insert
+     * @return number of pairs inserted, repeated pairs are skipped
+     * @throws NullPointerException if entries, or any key or data, is null
+     */
+    public int bulkLoad(Iterable<? extends Map.Entry<K, D>> entries) {
+        long start = startTimer();
+        try {
+            int before = store.size();
+            if (tree == null) {
+                for (Map.Entry<K, D> entry : entries) {
+                    insert(entry.getKey(), entry.getValue());
+                }
+                return store.size() - before;
+            }
+            Iterable<? extends Map.Entry<K, D>> all = entries;
+            if (before > 0) {
+                // stored pairs go first, so the stable sort keeps their chain order
+                ArrayList<Map.Entry<K, D>> merged = new ArrayList<>(before);
+                tree.iterator().forEachRemaining(merged::add);
+                for (Map.Entry<K, D> entry : entries) {
+                    merged.add(entry);
+                }
+                all = merged;
+            }
+            // the same tree is rebuilt, so its mode stays and open iterators fail fast
+            tree.rebuildFrom(all);
+            int capacity = (int) (tree.nUniqueKeys() / HashTable.MAX_LOAD_FACTOR) + 1;
+            hashTable = new HashIndex<>(Math.max(capacity, hashTable.capacity()));
+            Iterator<DAFTree<K, D>.DAFNode<K, D>> iter = tree.iterator();
+            while (iter.hasNext()) {
+                DAFTree<K, D>.DAFNode<K, D> node = iter.next();
+                if (node.par == null || node.par.dup != node) {
+                    hashTable.put(node.key, node);
+                }
+            }
+            return tree.size() - before;
+        } finally {
+            stopTimer(FADAFMetrics.Op.BULK_LOAD, start);
         }
-        return true;
+    }
 
+    /**
+     * Writes all pairs to a snapshot file that openSnapshot can load. The file
+     * holds a header (magic, version, key and pair counts) and then every key
+     * in ascending order followed by its chain length and its data in chain
+     * order. Records are encoded into one direct buffer that is handed to a
+     * FileChannel whenever it fills up. The file is written next to the
+     * target and moved over it once complete, so a crash never leaves a
+     * half-written snapshot behind; it is deleted if writing it fails. The
+     * directory is synced after the move so the move itself survives a crash.
+     * 
+     * @param path      file to write, replaced if it exists
+     * @param keyCodec  codec writing the keys
+     * @param dataCodec codec writing the data
+     * @throws IOException          if the file cannot be written
+     * @throws NullPointerException if any argument is null
+     */
+    public void writeSnapshot(Path path, Codec<? super K> keyCodec, Codec<? super D> dataCodec)
+            throws IOException {
+        long start = startTimer();
+        try {
+            if (keyCodec == null || dataCodec == null) {
+                throw new NullPointerException();
+            }
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buf = ByteBuffer.allocateDirect(SNAPSHOT_BUFFER);
+                // counts are patched in at the end, a concurrent engine may change meanwhile
+                buf.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(0).putInt(0);
+                int nKeys = 0;
+                int nPairs = 0;
+                K key = null;
+                ArrayList<D> chain = new ArrayList<>();
+                Iterator<? extends Map.Entry<K, D>> iter = store.iterator();
+                while (iter.hasNext()) {
+                    Map.Entry<K, D> entry = iter.next();
+                    if (key != null && key.compareTo(entry.getKey()) != 0) {
+                        buf = writeChain(channel, buf, key, chain, keyCodec, dataCodec);
+                        nKeys++;
+                        nPairs += chain.size();
+                        chain.clear();
+                    }
+                    key = entry.getKey();
+                    chain.add(entry.getValue());
+                }
+                if (key != null) {
+                    buf = writeChain(channel, buf, key, chain, keyCodec, dataCodec);
+                    nKeys++;
+                    nPairs += chain.size();
+                }
+                flush(channel, buf);
+                buf.putInt(nKeys).putInt(nPairs);
+                buf.flip();
+                channel.write(buf, 2 * Integer.BYTES);
+                channel.force(true);
+            } catch (Throwable e) {
+                // never leave a half-written file next to the snapshot
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            syncDirectory(path.toAbsolutePath().getParent());
+        } finally {
+            stopTimer(FADAFMetrics.Op.SNAPSHOT, start);
+        }
+    }
+
+    /**
+     * Loads a FADAF on a DAFTree engine from a file written by writeSnapshot.
+     * The file is memory-mapped and decoded in one sequential pass with no
+     * read call per record; keys arrive sorted, so each chain is built and
+     * put in the hash index, sized for all keys up front, as soon as it is
+     * decoded, and the chains are linked into a balanced tree at the end. No
+     * intermediate copy of the pairs is made.
+     * 
+     * @param path      snapshot file
+     * @param keyCodec  codec reading the keys, matching the one that wrote them
+     * @param dataCodec codec reading the data, matching the one that wrote them
+     * @param <K>       Generic type of key
+     * @param <D>       Generic type of data
+     * @return a new FADAF holding the snapshot's pairs
+     * @throws IOException          if the file cannot be read, is not a
+     *                              snapshot or is truncated
+     * @throws NullPointerException if any argument is null
+     */
+    public static <K extends Comparable<? super K>, D> FADAF<K, D> openSnapshot(Path path,
+            Codec<K> keyCodec, Codec<D> dataCodec) throws IOException {
+        if (keyCodec == null || dataCodec == null) {
+            throw new NullPointerException();
+        }
+        FADAF<K, D> fadaf;
+        try (SnapshotReader reader = new SnapshotReader(path)) {
+            if (reader.read(Codec.INTEGER) != SNAPSHOT_MAGIC
+                    || reader.read(Codec.INTEGER) != SNAPSHOT_VERSION) {
+                throw new IOException("not a FADAF snapshot: " + path);
+            }
+            int nKeys = reader.read(Codec.INTEGER);
+            int nPairs = reader.read(Codec.INTEGER);
+            // every key costs at least its chain count and every further pair
+            // at least one byte of data, since a chain never repeats a value
+            long left = reader.remaining();
+            if (nKeys < 0 || nPairs < nKeys || nKeys > left / Integer.BYTES
+                    || nPairs - nKeys > left - (long) Integer.BYTES * nKeys) {
+                throw new IOException("corrupt snapshot header: " + path);
+            }
+            int capacity = (int) (nKeys / HashTable.MAX_LOAD_FACTOR) + 1;
+            fadaf = new FADAF<>(Math.max(capacity, HashTable.MIN_CAPACITY));
+            DAFTree<K, D> tree = fadaf.tree;
+            ArrayList<DAFTree<K, D>.DAFNode<K, D>> heads = new ArrayList<>(nKeys);
+            K last = null;
+            int n = 0;
+            for (int i = 0; i < nKeys; i++) {
+                K key = reader.read(keyCodec);
+                int count = reader.read(Codec.INTEGER);
+                if (count <= 0 || count > nPairs - n) {
+                    throw new IOException("corrupt snapshot chain: " + path);
+                }
+                if (last != null && last.compareTo(key) >= 0) {
+                    throw new IOException("corrupt snapshot order: " + path);
+                }
+                // chains are built and indexed as they are decoded, then linked once
+                DAFTree<K, D>.DAFNode<K, D> head = tree.addHead(heads, key, reader.read(dataCodec));
+                for (int j = 1; j < count; j++) {
+                    tree.appendDup(head, reader.read(dataCodec));
+                }
+                fadaf.hashTable.put(key, head);
+                n += count;
+                last = key;
+            }
+            if (n != nPairs || !reader.atEnd()) {
+                throw new IOException("corrupt snapshot length: " + path);
+            }
+            tree.linkHeads(heads);
+        }
+        return fadaf;
     }
 
     /**
@@ -77,11 +331,21 @@ public class FADAF<K extends Comparable<? super K>, D> {
      * @throws NullPointerException if the key is null
      */
     public boolean removeAll(K key) {
-        if (hashTable.delete(key)) {
-            tree.removeAll(key);
+        long start = startTimer();
+        try {
+            if (tree == null) {
+                return store.removeAll(key);
+            }
+            DAFTree<K, D>.DAFNode<K, D> head = hashTable.get(key);
+            if (head == null) {
+                return false;
+            }
+            hashTable.delete(key);
+            tree.removeChain(head);
             return true;
+        } finally {
+            stopTimer(FADAFMetrics.Op.REMOVE_ALL, start);
         }
-        return false;
     }
 
     /**
@@ -93,16 +357,147 @@ public class FADAF<K extends Comparable<? super K>, D> {
      * @throws NullPointerException if key or data is null
      */
     public boolean remove(K key, D data) {
-        boolean removedFromTree = tree.remove(key, data);
-        if (!removedFromTree) {
-            return false;
+        long start = startTimer();
+        try {
+            if (tree == null) {
+                return store.remove(key, data);
+            }
+            if (key == null || data == null) {
+                throw new NullPointerException();
+            }
+            DAFTree<K, D>.DAFNode<K, D> head = hashTable.get(key);
+            DAFTree<K, D>.DAFNode<K, D> node = (head == null) ? null : tree.findInChain(head, data);
+            if (node == null) {
+                return false;
+            }
+            removeNode(key, head, node);
+            return true;
+        } finally {
+            stopTimer(FADAFMetrics.Op.REMOVE, start);
         }
-        if (!tree.lookupAny(key)) {
-            hashTable.delete(key);
+    }
+
+    /**
+     * Insert the given pair only if the key is not stored yet.
+     * 
+     * @param key  key to insert
+     * @param data data to insert
+     * @return the first data of the key if it was already stored, or null if
+     *         the pair was inserted
+     * @throws NullPointerException if key or data is null
+     */
+    public D putIfAbsent(K key, D data) {
+        long start = startTimer();
+        try {
+            if (key == null || data == null) {
+                throw new NullPointerException();
+            }
+            if (tree == null) {
+                return store.putIfAbsent(key, data);
+            }
+            int before = tree.size();
+            DAFTree<K, D>.DAFNode<K, D> head = hashTable.computeIfAbsent(key, k -> tree.insert(k, data));
+            return (tree.size() != before) ? null : head.data;
+        } finally {
+            stopTimer(FADAFMetrics.Op.PUT_IF_ABSENT, start);
+        }
+    }
+
+    /**
+     * Insert a pair for the key with data computed by the given function, only
+     * if the key is not stored yet. The function is not called for stored keys.
+     * 
+     * @param key     key to look up or insert
+     * @param mapping function computing the data of a new key
+     * @return the first data of the key, or null if the key was absent and the
+     *         function returned null
+     * @throws NullPointerException if key or mapping is null
+     */
+    public D computeIfAbsent(K key, Function<? super K, ? extends D> mapping) {
+        long start = startTimer();
+        try {
+            if (key == null || mapping == null) {
+                throw new NullPointerException();
+            }
+            if (tree == null) {
+                return store.computeIfAbsent(key, mapping);
+            }
+            DAFTree<K, D>.DAFNode<K, D> head = hashTable.computeIfAbsent(key, k -> {
+                D data = mapping.apply(k);
+                return (data == null) ? null : tree.insert(k, data);
+            });
+            return (head == null) ? null : head.data;
+        } finally {
+            stopTimer(FADAFMetrics.Op.COMPUTE_IF_ABSENT, start);
+        }
+    }
+
+    /**
+     * Replace the data of the given pair, keeping its place among the data of
+     * its key. If the new pair is already stored the old pair is just removed.
+     * 
+     * @param key     key of the pair
+     * @param oldData data to replace
+     * @param newData data to put in its place
+     * @return true if the old pair was found, false otherwise
+     * @throws NullPointerException if any argument is null
+     */
+    public boolean replace(K key, D oldData, D newData) {
+        long start = startTimer();
+        try {
+            if (key == null || oldData == null || newData == null) {
+                throw new NullPointerException();
+            }
+            if (tree == null) {
+                return store.replace(key, oldData, newData);
+            }
+            DAFTree<K, D>.DAFNode<K, D> head = hashTable.get(key);
+            DAFTree<K, D>.DAFNode<K, D> node = (head == null) ? null : tree.findInChain(head, oldData);
+            if (node == null) {
+                return false;
+            }
+            replaceNode(key, head, node, newData);
             return true;
+        } finally {
+            stopTimer(FADAFMetrics.Op.REPLACE, start);
+        }
+    }
 
+    /**
+     * Insert the given pair if the key is absent. Otherwise the first data of
+     * the key is replaced by the result of the given function applied to it and
+     * the given data, or removed if the function returns null.
+     * 
+     * @param key       key to merge into
+     * @param data      data to insert or merge
+     * @param remapping function combining the first data and the given data
+     * @return the new first data of the merged pair, or null if it was removed
+     * @throws NullPointerException if any argument is null
+     */
+    public D merge(K key, D data, BiFunction<? super D, ? super D, ? extends D> remapping) {
+        long start = startTimer();
+        try {
+            if (key == null || data == null || remapping == null) {
+                throw new NullPointerException();
+            }
+            if (tree == null) {
+                return store.merge(key, data, remapping);
+            }
+            int before = tree.size();
+            DAFTree<K, D>.DAFNode<K, D> head = hashTable.computeIfAbsent(key, k -> tree.insert(k, data));
+            if (tree.size() != before) {
+                return data;
+            }
+            D merged = remapping.apply(head.data, data);
+            if (merged == null) {
+                removeNode(key, head, head);
+            } else {
+                replaceNode(key, head, head, merged);
+            }
+            return merged;
+        } finally {
+            stopTimer(FADAFMetrics.Op.MERGE, start);
         }
-        return true;
     }
 
     /**
@@ -113,7 +508,15 @@ public class FADAF<K extends Comparable<? super K>, D> {
      * @throws NullPointerException if the key is null
      */
     public boolean lookupAny(K key) {
-        return hashTable.lookup(key);
+        long start = startTimer();
+        try {
+            if (tree == null) {
+                return store.lookupAny(key);
+            }
+            return hashTable.lookup(key);
+        } finally {
+            stopTimer(FADAFMetrics.Op.LOOKUP_ANY, start);
+        }
     }
 
     /**
@@ -125,7 +528,15 @@ public class FADAF<K extends Comparable<? super K>, D> {
      * @throws NullPointerException if key or data is null
      */
     public boolean lookup(K key, D data) {
-        return tree.lookup(key, data);
+        long start = startTimer();
+        try {
+            if (tree == null) {
+                return store.lookup(key, data);
+            }
+            return find(key, data) != null;
+        } finally {
+            stopTimer(FADAFMetrics.Op.LOOKUP, start);
+        }
     }
 
     /**
@@ -134,12 +545,82 @@ public class FADAF<K extends Comparable<? super K>, D> {
      * @return a list of all keys, empty list if no keys stored
      */
     public LinkedList<K> getAllKeys() {
-        LinkedList<K> keys = new LinkedList<>();
-        Iterator<DAFTree<K, D>.DAFNode<K, D>> iter = tree.iterator();
-        while (iter.hasNext()) {
-            keys.addFirst(iter.next().key);
+        long start = startTimer();
+        try {
+            LinkedList<K> keys = new LinkedList<>();
+            Iterator<? extends Map.Entry<K, D>> iter = store.iterator();
+            while (iter.hasNext()) {
+                keys.add(iter.next().getKey());
+            }
+            return keys;
+        } finally {
+            stopTimer(FADAFMetrics.Op.GET_ALL_KEYS, start);
         }
-        return keys;
+    }
+
+    /**
+     * Return a stream of all keys (including duplicates) in ascending order.
+     * Call parallel() on it to spread the work over the common ForkJoinPool.
+     * 
+     * @return stream of keys
+     */
+    public Stream<K> keyStream() {
+        return entryStream().map(Map.Entry::getKey);
+    }
+
+    /**
+     * Return a stream of all key-data pairs in ascending key order, each key's
+     * data in insertion order. The pairs are read-only. Call parallel() on it
+     * to spread the work over the common ForkJoinPool.
+     * 
+     * @return stream of pairs
+     */
+    @SuppressWarnings("unchecked")
+    public Stream<Map.Entry<K, D>> entryStream() {
+        return StreamSupport.stream((Spliterator<Map.Entry<K, D>>) store.spliterator(), false);
+    }
+
+    /**
+     * Return a stream of the data paired with the given key, in insertion
+     * order.
+     * 
+     * @param key target key
+     * @return stream of data, empty if the key is not stored
+     * @throws NullPointerException if the key is null
+     */
+    public Stream<D> dataStream(K key) {
+        if (tree == null) {
+            return store.getAllData(key).stream();
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(dataIterator(key),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Returns a live NavigableSet view of the unique keys in ascending order.
+     * Nothing is copied: every call walks the store, so the view always
+     * shows the current keys, and sub, head, tail and descending views are
+     * bounded walks of the same store. Removing a key from the view removes
+     * all its pairs; adding is not supported. Iterators step from key to
+     * key, so they never fail while the FADAF changes.
+     * 
+     * @return key set view
+     */
+    public NavigableSet<K> keySet() {
+        return new FADAFViews.KeySet<>(new FADAFViews.Nav<>(this));
+    }
+
+    /**
+     * Returns a live NavigableMap view from each unique key to the collection
+     * of its data, in ascending key order. The collections are live views of
+     * the dup chains: adding or removing data through them inserts or
+     * removes pairs. Removing a key removes all its pairs; put is not
+     * supported. Like keySet, nothing is copied.
+     * 
+     * @return multimap view
+     */
+    public NavigableMap<K, Collection<D>> asMultimap() {
+        return new FADAFViews.Multimap<>(new FADAFViews.Nav<>(this));
     }
 
     /**
@@ -150,30 +631,162 @@ public class FADAF<K extends Comparable<? super K>, D> {
      * @throws NullPointerException if the key is null
      */
     public LinkedList<D> getAllData(K key) {
-        return tree.getAllData(key);
+        long start = startTimer();
+        try {
+            if (tree == null) {
+                return store.getAllData(key);
+            }
+            LinkedList<D> dataList = new LinkedList<>();
+            for (DAFTree<K, D>.DAFNode<K, D> temp = hashTable.get(key); temp != null; temp = temp.dup) {
+                dataList.add(temp.data);
+            }
+            return dataList;
+        } finally {
+            stopTimer(FADAFMetrics.Op.GET_ALL_DATA, start);
+        }
     }
 
     /**
-     * Return the minimum key stored.
+     * Performs the given action on every key in ascending order, once per
+     * pair, without building a list. The action must not modify the FADAF.
      * 
-     * @return minimum key, or null if no keys stored
+     * @param action action to perform on each key
+     * @throws NullPointerException if the action is null
      */
-    public K getMinKey() {
-       
-        Iterator<DAFTree<K, D>.DAFNode<K, D>> iter = tree.iterator();
-        if (!iter.hasNext()) {
-            return null;
+    public void forEachKey(Consumer<? super K> action) {
+        long start = startTimer();
+        try {
+            store.forEachKey(action);
+        } finally {
+            stopTimer(FADAFMetrics.Op.GET_ALL_KEYS, start);
         }
-        K min = iter.next().key;
-        while (iter.hasNext()) {
-            K next = iter.next().key;
+    }
 
-            if (min.compareTo(next) > 0) {
-                min = next;
+    /**
+     * Performs the given action on every data paired with the given key, in
+     * insertion order, without building a list. The action must not modify
+     * the FADAF.
+     * 
+     * @param key    target key
+     * @param action action to perform on each data
+     * @throws NullPointerException if key or action is null
+     */
+    public void forEachData(K key, Consumer<? super D> action) {
+        long start = startTimer();
+        try {
+            if (tree == null) {
+                store.forEachData(key, action);
+                return;
             }
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            for (DAFTree<K, D>.DAFNode<K, D> temp = hashTable.get(key); temp != null; temp = temp.dup) {
+                action.accept(temp.data);
+            }
+        } finally {
+            stopTimer(FADAFMetrics.Op.GET_ALL_DATA, start);
         }
+    }
 
-        return min;
+    /**
+     * Performs the given action on every pair with a key in [lo, hi), in
+     * ascending key order, without building a list. The action must not
+     * modify the FADAF.
+     * 
+     * @param lo     inclusive lower bound
+     * @param hi     exclusive upper bound
+     * @param action action to perform on each key and data
+     * @throws NullPointerException     if lo, hi or action is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public void forEachInRange(K lo, K hi, BiConsumer<? super K, ? super D> action) {
+        long start = startTimer();
+        try {
+            store.forEachInRange(lo, hi, action);
+        } finally {
+            stopTimer(FADAFMetrics.Op.RANGE, start);
+        }
+    }
+
+    /**
+     * Copies keys (including duplicates) in ascending order into the given
+     * array, stopping when it is full.
+     * 
+     * @param buffer array to fill from index 0
+     * @return number of keys written
+     * @throws NullPointerException if the buffer is null
+     */
+    public int getAllKeys(K[] buffer) {
+        long start = startTimer();
+        try {
+            return store.getAllKeys(buffer);
+        } finally {
+            stopTimer(FADAFMetrics.Op.GET_ALL_KEYS, start);
+        }
+    }
+
+    /**
+     * Copies the data of the given key in insertion order into the given
+     * array, stopping when it is full.
+     * 
+     * @param key    target key
+     * @param buffer array to fill from index 0
+     * @return number of data written
+     * @throws NullPointerException if key or buffer is null
+     */
+    public int getAllData(K key, D[] buffer) {
+        long start = startTimer();
+        try {
+            if (tree == null) {
+                return store.getAllData(key, buffer);
+            }
+            if (buffer == null) {
+                throw new NullPointerException();
+            }
+            int n = 0;
+            for (DAFTree<K, D>.DAFNode<K, D> temp = hashTable.get(key); temp != null && n < buffer.length;
+                    temp = temp.dup) {
+                buffer[n++] = temp.data;
+            }
+            return n;
+        } finally {
+            stopTimer(FADAFMetrics.Op.GET_ALL_DATA, start);
+        }
+    }
+
+    /**
+     * Copies keys (including duplicates) in [lo, hi) in ascending order into
+     * the given array, stopping when it is full.
+     * 
+     * @param lo     inclusive lower bound
+     * @param hi     exclusive upper bound
+     * @param buffer array to fill from index 0
+     * @return number of keys written
+     * @throws NullPointerException     if lo, hi or buffer is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public int rangeKeys(K lo, K hi, K[] buffer) {
+        long start = startTimer();
+        try {
+            return store.rangeKeys(lo, hi, buffer);
+        } finally {
+            stopTimer(FADAFMetrics.Op.RANGE, start);
+        }
+    }
+
+    /**
+     * Return the minimum key stored.
+     * 
+     * @return minimum key, or null if no keys stored
+     */
+    public K getMinKey() {
+        long start = startTimer();
+        try {
+            return store.getMinKey();
+        } finally {
+            stopTimer(FADAFMetrics.Op.NAVIGATE, start);
+        }
     }
 
     /**
@@ -182,20 +795,620 @@ public class FADAF<K extends Comparable<? super K>, D> {
      * @return maximum key, or null if no keys stored
      */
     public K getMaxKey() {
+        long start = startTimer();
+        try {
+            return store.getMaxKey();
+        } finally {
+            stopTimer(FADAFMetrics.Op.NAVIGATE, start);
+        }
+    }
+
+    /**
+     * Return the largest stored key less than or equal to the given key.
+     * 
+     * @param key target key
+     * @return floor key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    public K floorKey(K key) {
+        long start = startTimer();
+        try {
+            return store.floorKey(key);
+        } finally {
+            stopTimer(FADAFMetrics.Op.NAVIGATE, start);
+        }
+    }
+
+    /**
+     * Return the smallest stored key greater than or equal to the given key.
+     * 
+     * @param key target key
+     * @return ceiling key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    public K ceilingKey(K key) {
+        long start = startTimer();
+        try {
+            return store.ceilingKey(key);
+        } finally {
+            stopTimer(FADAFMetrics.Op.NAVIGATE, start);
+        }
+    }
+
+    /**
+     * Return the largest stored key strictly less than the given key.
+     * 
+     * @param key target key
+     * @return lower key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    public K lowerKey(K key) {
+        long start = startTimer();
+        try {
+            return store.lowerKey(key);
+        } finally {
+            stopTimer(FADAFMetrics.Op.NAVIGATE, start);
+        }
+    }
+
+    /**
+     * Return the smallest stored key strictly greater than the given key.
+     * 
+     * @param key target key
+     * @return higher key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    public K higherKey(K key) {
+        long start = startTimer();
+        try {
+            return store.higherKey(key);
+        } finally {
+            stopTimer(FADAFMetrics.Op.NAVIGATE, start);
+        }
+    }
+
+    /**
+     * Return a LinkedList of all keys (including duplicates) in [lo, hi), in
+     * ascending order.
+     * 
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return a list of keys, empty list if none in range
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public LinkedList<K> rangeKeys(K lo, K hi) {
+        long start = startTimer();
+        try {
+            return store.rangeKeys(lo, hi);
+        } finally {
+            stopTimer(FADAFMetrics.Op.RANGE, start);
+        }
+    }
+
+    /**
+     * Return a LinkedList of all key-data pairs with keys in [lo, hi), in
+     * ascending key order.
+     * 
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return a list of pairs, empty list if none in range
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public LinkedList<Map.Entry<K, D>> rangeEntries(K lo, K hi) {
+        long start = startTimer();
+        try {
+            return store.rangeEntries(lo, hi);
+        } finally {
+            stopTimer(FADAFMetrics.Op.RANGE, start);
+        }
+    }
+
+    /**
+     * Remove all key-data pairs with keys in [lo, hi).
+     * 
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return number of pairs removed
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public int removeRange(K lo, K hi) {
+        long start = startTimer();
+        try {
+            int before = store.size();
+            for (K key : store.removeRange(lo, hi)) {
+                if (hashTable != null) {
+                    hashTable.delete(key);
+                }
+            }
+            return before - store.size();
+        } finally {
+            stopTimer(FADAFMetrics.Op.REMOVE_RANGE, start);
+        }
+    }
+
+    /**
+     * Return the number of pairs with keys strictly less than the given key.
+     * 
+     * @param key target key
+     * @return number of smaller pairs
+     * @throws NullPointerException          if the key is null
+     * @throws UnsupportedOperationException if the engine is not a DAFTree
+     */
+    public int rank(K key) {
+        long start = startTimer();
+        try {
+            return orderedTree().rank(key);
+        } finally {
+            stopTimer(FADAFMetrics.Op.ORDER_STATISTIC, start);
+        }
+    }
+
+    /**
+     * Return the key of the pair at the given position in ascending key order,
+     * counting duplicates.
+     * 
+     * @param index position, from 0 to size() - 1
+     * @return key at that position
+     * @throws IndexOutOfBoundsException     if index is out of range
+     * @throws UnsupportedOperationException if the engine is not a DAFTree
+     */
+    public K select(int index) {
+        long start = startTimer();
+        try {
+            return orderedTree().select(index);
+        } finally {
+            stopTimer(FADAFMetrics.Op.ORDER_STATISTIC, start);
+        }
+    }
+
+    /**
+     * Return the number of pairs with keys in [lo, hi).
+     * 
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return number of pairs in range
+     * @throws NullPointerException          if lo or hi is null
+     * @throws IllegalArgumentException      if lo is greater than hi
+     * @throws UnsupportedOperationException if the engine is not a DAFTree
+     */
+    public int countRange(K lo, K hi) {
+        long start = startTimer();
+        try {
+            return orderedTree().countRange(lo, hi);
+        } finally {
+            stopTimer(FADAFMetrics.Op.ORDER_STATISTIC, start);
+        }
+    }
+
+    /**
+     * Return the number of unique keys in [lo, hi).
+     * 
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return number of unique keys in range
+     * @throws NullPointerException          if lo or hi is null
+     * @throws IllegalArgumentException      if lo is greater than hi
+     * @throws UnsupportedOperationException if the engine is not a DAFTree
+     */
+    public int countKeysInRange(K lo, K hi) {
+        long start = startTimer();
+        try {
+            return orderedTree().countKeysInRange(lo, hi);
+        } finally {
+            stopTimer(FADAFMetrics.Op.ORDER_STATISTIC, start);
+        }
+    }
+
+    /**
+     * Return the lower median key over all pairs, counting duplicates.
+     * 
+     * @return median key, or null if no keys stored
+     * @throws UnsupportedOperationException if the engine is not a DAFTree
+     */
+    public K median() {
+        long start = startTimer();
+        try {
+            return orderedTree().median();
+        } finally {
+            stopTimer(FADAFMetrics.Op.ORDER_STATISTIC, start);
+        }
+    }
 
-        Iterator<DAFTree<K, D>.DAFNode<K, D>> iter = tree.iterator();
-        if (!iter.hasNext()) {
-            return null;
+    /**
+     * Starts counting calls and their latencies, per operation. Costs two
+     * clock reads and a few uncontended adds per call; without it each call
+     * only checks one field.
+     * 
+     * @return the live counters, the existing ones if already enabled
+     */
+    public synchronized FADAFMetrics enableMetrics() {
+        if (metrics == null) {
+            metrics = new FADAFMetrics();
         }
-        K max = iter.next().key;
+        return metrics;
+    }
+
+    /**
+     * Stops counting calls. Counters returned earlier keep their values.
+     */
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    /**
+     * Returns the live call counters.
+     * 
+     * @return counters, or null if metrics are not enabled
+     */
+    public FADAFMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the current shape of the FADAF: tree height, histograms of dup
+     * chain lengths and hash index probe lengths, and hash index load and
+     * resize totals. Walks every pair and index slot, so it runs in O(n);
+     * call it for diagnosis, not per operation.
+     * 
+     * @return stats at this moment
+     */
+    public FADAFStats stats() {
+        long[] chains = new long[Integer.SIZE];
+        int top = 0;
+        K key = null;
+        int length = 0;
+        Iterator<? extends Map.Entry<K, D>> iter = store.iterator();
         while (iter.hasNext()) {
-            K next = iter.next().key;
+            Map.Entry<K, D> entry = iter.next();
+            if (key != null && key.compareTo(entry.getKey()) != 0) {
+                top = Math.max(top, addToHistogram(chains, length));
+                length = 0;
+            }
+            key = entry.getKey();
+            length++;
+        }
+        if (key != null) {
+            top = Math.max(top, addToHistogram(chains, length));
+        }
+        chains = Arrays.copyOf(chains, top);
+        if (tree == null) {
+            return new FADAFStats(store.size(), store.nUniqueKeys(), 0, 0, chains, new long[0], 0, 0, 0, 0);
+        }
+        return new FADAFStats(tree.size(), tree.nUniqueKeys(), tree.height(), tree.maxHeight(), chains,
+                hashTable.probeHistogram(), hashTable.capacity(), hashTable.resizeCount(),
+                hashTable.resizeNanos(), hashTable.resizeMoved());
+    }
 
-            if (max.compareTo(next) < 0) {
-                max = next;
+    /**
+     * Helper to iterate the data of a key in chain order, straight from the
+     * dup chain for the DAFTree engine.
+     * 
+     * @param key target key
+     * @return iterator over the data, empty if the key is absent
+     */
+    Iterator<D> dataIterator(K key) {
+        if (tree == null) {
+            return store.getAllData(key).iterator();
+        }
+        DAFTree<K, D>.DAFNode<K, D> head = hashTable.get(key);
+        return new Iterator<D>() {
+            private DAFTree<K, D>.DAFNode<K, D> next = head;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
             }
+
+            @Override
+            public D next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                D data = next.data;
+                next = next.dup;
+                return data;
+            }
+        };
+    }
+
+    /**
+     * Helper to return the number of data of a key, read from the chain head
+     * for the DAFTree engine.
+     * 
+     * @param key target key
+     * @return chain length, 0 if the key is absent
+     */
+    int chainLength(K key) {
+        if (tree == null) {
+            return store.getAllData(key).size();
+        }
+        DAFTree<K, D>.DAFNode<K, D> head = hashTable.get(key);
+        return (head == null) ? 0 : head.count;
+    }
+
+    /**
+     * Helper to check if countKeysInRange is supported by the engine.
+     * 
+     * @return true for the DAFTree engine, false otherwise
+     */
+    boolean countsKeys() {
+        return tree != null;
+    }
+
+    /**
+     * Helper to return the tree for order statistics, which need its subtree
+     * counts.
+     * 
+     * @return the DAFTree engine
+     * @throws UnsupportedOperationException if the engine is not a DAFTree
+     */
+    private DAFTree<K, D> orderedTree() {
+        if (tree == null) {
+            throw new UnsupportedOperationException();
+        }
+        return tree;
+    }
+
+    /**
+     * Helper to read the clock at the start of a call if metrics are on.
+     * 
+     * @return start time, or 0 if metrics are off
+     */
+    private long startTimer() {
+        return (metrics == null) ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Helper to record a finished call if metrics are on.
+     * 
+     * @param op    operation of the call
+     * @param start value of startTimer at the start of the call
+     */
+    private void stopTimer(FADAFMetrics.Op op, long start) {
+        FADAFMetrics m = metrics;
+        if (m != null && start != 0) {
+            m.record(op, System.nanoTime() - start, store.size(), (tree == null) ? 0 : tree.height());
+        }
+    }
+
+    /**
+     * Helper to count one length in a power-of-two histogram.
+     * 
+     * @param histogram histogram to update
+     * @param length    length to count, at least 1
+     * @return number of slots in use up to this length's slot
+     */
+    private static int addToHistogram(long[] histogram, int length) {
+        int slot = 31 - Integer.numberOfLeadingZeros(length);
+        histogram[slot]++;
+        return slot + 1;
+    }
+
+    /**
+     * Helper to remove a node of the given key's chain, pointing the hash index
+     * at the promoted node if the first one leaves.
+     * 
+     * @param key  key of the chain
+     * @param head first node of the chain
+     * @param node node to remove
+     */
+    private void removeNode(K key, DAFTree<K, D>.DAFNode<K, D> head, DAFTree<K, D>.DAFNode<K, D> node) {
+        if (node == head) {
+            // the first node leaves; the tree promotes its dup in its place
+            if (node.dup == null) {
+                hashTable.delete(key);
+            } else {
+                hashTable.put(key, node.dup);
+            }
+        }
+        tree.removeFromChain(head, node);
+    }
+
+    /**
+     * Helper to replace the data of a node of the given key's chain, pointing
+     * the hash index at the new node if the first one is replaced. If the new
+     * data is already in the chain the node is removed instead.
+     * 
+     * @param key     key of the chain
+     * @param head    first node of the chain
+     * @param node    node to update
+     * @param newData data to put in the node
+     */
+    private void replaceNode(K key, DAFTree<K, D>.DAFNode<K, D> head, DAFTree<K, D>.DAFNode<K, D> node,
+            D newData) {
+        if (!newData.equals(node.data) && tree.findInChain(head, newData) != null) {
+            removeNode(key, head, node);
+        } else {
+            DAFTree<K, D>.DAFNode<K, D> fresh = tree.replaceInChain(head, node.data, newData);
+            if (node == head) {
+                hashTable.put(key, fresh);
+            }
+        }
+    }
+
+    /**
+     * Helper to find the node holding the given pair through the hash index.
+     * 
+     * @param key  key of the pair
+     * @param data data of the pair
+     * @return matching node, or null if the pair is not stored
+     * @throws NullPointerException if key or data is null
+     */
+    private DAFTree<K, D>.DAFNode<K, D> find(K key, D data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        DAFTree<K, D>.DAFNode<K, D> head = hashTable.get(key);
+        return (head == null) ? null : tree.findInChain(head, data);
+    }
+
+    /**
+     * Helper to encode one key with its chain into the snapshot buffer.
+     * 
+     * @param channel   snapshot file
+     * @param buf       buffer being filled
+     * @param key       key of the chain
+     * @param chain     data of the key, in chain order
+     * @param keyCodec  codec writing the key
+     * @param dataCodec codec writing the data
+     * @return the buffer to keep filling, a larger one if a record did not fit
+     * @throws IOException if the file cannot be written
+     */
+    private static <K, D> ByteBuffer writeChain(FileChannel channel, ByteBuffer buf, K key, List<D> chain,
+            Codec<? super K> keyCodec, Codec<? super D> dataCodec) throws IOException {
+        buf = reserve(channel, buf, keyCodec.size(key) + Integer.BYTES);
+        keyCodec.encode(key, buf);
+        buf.putInt(chain.size());
+        for (D data : chain) {
+            buf = reserve(channel, buf, dataCodec.size(data));
+            dataCodec.encode(data, buf);
+        }
+        return buf;
+    }
+
+    /**
+     * Helper to make room for the given number of bytes in the snapshot
+     * buffer, writing out what it holds first.
+     * 
+     * @param channel snapshot file
+     * @param buf     buffer being filled
+     * @param bytes   bytes needed
+     * @return a buffer with at least that many bytes left
+     * @throws IOException if the file cannot be written
+     */
+    private static ByteBuffer reserve(FileChannel channel, ByteBuffer buf, int bytes) throws IOException {
+        if (buf.remaining() >= bytes) {
+            return buf;
+        }
+        flush(channel, buf);
+        return (buf.capacity() >= bytes) ? buf : ByteBuffer.allocateDirect(bytes);
+    }
+
+    /**
+     * Helper to write out and clear the snapshot buffer.
+     * 
+     * @param channel snapshot file
+     * @param buf     buffer being filled
+     * @throws IOException if the file cannot be written
+     */
+    private static void flush(FileChannel channel, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    /**
+     * Helper to force a directory's entries to disk, making a file created or
+     * moved in it durable. Platforms that cannot open a directory as a
+     * channel are skipped.
+     * 
+     * @param dir directory to sync
+     * @throws IOException if the directory cannot be synced
+     */
+    private static void syncDirectory(Path dir) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Reads a snapshot through a read-only memory mapping. Files larger than
+     * one window are mapped a window at a time; a value that runs past the
+     * end of a window is decoded again from a window starting at the value.
+     */
+    private static final class SnapshotReader implements AutoCloseable {
+        private final FileChannel channel;
+        private final long length; // file size
+        private MappedByteBuffer buf; // current window
+        private long base; // file offset of the window
+        private int window; // bytes per window
+
+        /**
+         * Opens the given file and maps its first window.
+         * 
+         * @param path snapshot file
+         * @throws IOException if the file cannot be opened or mapped
+         */
+        SnapshotReader(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            length = channel.size();
+            window = SNAPSHOT_WINDOW;
+            map(0);
+        }
+
+        /**
+         * Decodes the next value.
+         * 
+         * @param codec codec of the value
+         * @return decoded value
+         * @throws IOException if the file ends before the value does or holds
+         *                     no valid encoding of it
+         */
+        <T> T read(Codec<T> codec) throws IOException {
+            int start = buf.position();
+            while (true) {
+                try {
+                    return codec.decode(buf);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("corrupt snapshot value", e);
+                } catch (BufferUnderflowException e) {
+                    if (base + buf.limit() == length) {
+                        throw new EOFException("truncated snapshot");
+                    }
+                    if (start == 0) {
+                        // one value is larger than a whole window
+                        window = (int) Math.min(Integer.MAX_VALUE, 2L * window);
+                    }
+                    map(base + start);
+                    start = 0;
+                }
+            }
+        }
+
+        /**
+         * Returns the number of bytes of the file not read yet.
+         * 
+         * @return bytes left
+         */
+        long remaining() {
+            return length - base - buf.position();
+        }
+
+        /**
+         * Checks if every byte of the file was read.
+         * 
+         * @return true if at the end of the file
+         */
+        boolean atEnd() {
+            return base + buf.position() == length;
+        }
+
+        /**
+         * Helper to map the window starting at the given file offset.
+         * 
+         * @param offset file offset
+         * @throws IOException if the file cannot be mapped
+         */
+        private void map(long offset) throws IOException {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(window, length - offset));
+            base = offset;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
         }
-        return max;
     }
 
 }
@@ -0,0 +1,113 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the FADAF queries that scan or summarize the whole structure:
+ * getAllKeys against forEachKey and a caller-supplied buffer, getMinKey and
+ * getMaxKey, a sum over entryStream run sequentially and in parallel, plus
+ * insert and lookupAny for scale. Every case runs with metrics off and on to
+ * show what counting costs.
+ *
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class FADAFBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean metrics;
+
+    Integer[] keys;
+    Integer[] keyBuffer;
+    FADAF<Integer, Integer> fadaf;
+    int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = BenchmarkData.distinctKeys(size, 42);
+        keyBuffer = new Integer[size];
+        fadaf = new FADAF<>(HashTable.MIN_CAPACITY);
+        for (int n = 0; n < keys.length; n++) {
+            fadaf.insert(keys[n], n);
+        }
+        if (metrics) {
+            fadaf.enableMetrics();
+        }
+    }
+
+    private Integer nextKey() {
+        Integer key = keys[cursor++];
+        if (cursor == size) {
+            cursor = 0;
+        }
+        return key;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public LinkedList<Integer> getAllKeys() {
+        return fadaf.getAllKeys();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long forEachKeySum() {
+        long[] sum = new long[1];
+        fadaf.forEachKey(key -> sum[0] += key);
+        return sum[0];
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int getAllKeysIntoBuffer() {
+        return fadaf.getAllKeys(keyBuffer);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long entryStreamSum() {
+        return fadaf.entryStream().mapToLong(entry -> entry.getValue()).sum();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long parallelEntryStreamSum() {
+        return fadaf.entryStream().parallel().mapToLong(entry -> entry.getValue()).sum();
+    }
+
+    @Benchmark
+    public Integer getMinKey() {
+        return fadaf.getMinKey();
+    }
+
+    @Benchmark
+    public Integer getMaxKey() {
+        return fadaf.getMaxKey();
+    }
+
+    @Benchmark
+    public boolean lookupAny() {
+        return fadaf.lookupAny(nextKey());
+    }
+
+    /**
+     * Adds and removes one extra pair under an existing key, so the size
+     * stays constant.
+     */
+    @Benchmark
+    public boolean insertRemove() {
+        Integer key = nextKey();
+        fadaf.insert(key, -1);
+        return fadaf.remove(key, -1);
+    }
+}
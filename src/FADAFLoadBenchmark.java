@@ -0,0 +1,75 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a cold start of FADAF from random, sorted and heavily duplicated
+ * key streams: one insert per pair against a single bulkLoad, and opening a
+ * snapshot of the same pairs. All report the time for the whole load.
+ *
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class FADAFLoadBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int size;
+
+    @Param({"random", "sorted", "duplicates"})
+    String distribution;
+
+    List<Map.Entry<Integer, Integer>> entries;
+    Path snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Integer[] keys = BenchmarkData.keys(distribution, size, 42);
+        entries = new ArrayList<>(size);
+        for (int n = 0; n < keys.length; n++) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(keys[n], n));
+        }
+        snapshot = Files.createTempFile("fadaf", ".snap");
+        FADAF<Integer, Integer> fadaf = new FADAF<>(HashTable.MIN_CAPACITY);
+        fadaf.bulkLoad(entries);
+        fadaf.writeSnapshot(snapshot, Codec.INTEGER, Codec.INTEGER);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public FADAF<Integer, Integer> insertAll() {
+        FADAF<Integer, Integer> fadaf = new FADAF<>(HashTable.MIN_CAPACITY);
+        for (Map.Entry<Integer, Integer> entry : entries) {
+            fadaf.insert(entry.getKey(), entry.getValue());
+        }
+        return fadaf;
+    }
+
+    @Benchmark
+    public FADAF<Integer, Integer> bulkLoad() {
+        FADAF<Integer, Integer> fadaf = new FADAF<>(HashTable.MIN_CAPACITY);
+        fadaf.bulkLoad(entries);
+        return fadaf;
+    }
+
+    @Benchmark
+    public FADAF<Integer, Integer> openSnapshot() throws IOException {
+        return FADAF.openSnapshot(snapshot, Codec.INTEGER, Codec.INTEGER);
+    }
+}
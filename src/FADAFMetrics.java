@@ -0,0 +1,154 @@
+/*
+ * Name: Yin Lam Lai
+ * PID: A15779757
+ */
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the calls of a FADAF and their latencies, per operation. Counters
+ * are LongAdders, so recording from many threads (e.g. on the SkipListStore
+ * engine) does not contend. Calls slower than the slow threshold also emit
+ * a FADAFOperationEvent to JFR.
+ *
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+public class FADAFMetrics {
+
+    /**
+     * Operations that are counted. Related queries share one operation.
+     */
+    public enum Op {
+        INSERT, BULK_LOAD, REMOVE, REMOVE_ALL, REMOVE_RANGE, PUT_IF_ABSENT, COMPUTE_IF_ABSENT, REPLACE,
+        MERGE, LOOKUP_ANY, LOOKUP, GET_ALL_DATA, GET_ALL_KEYS, NAVIGATE, RANGE, ORDER_STATISTIC, SNAPSHOT
+    }
+
+    // constants
+    public static final long DEFAULT_SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(1); // default slow threshold
+
+    // instance variables
+    private final LongAdder[] counts = new LongAdder[Op.values().length];
+    private final LongAdder[] nanos = new LongAdder[Op.values().length];
+    private final LongAccumulator[] maxNanos = new LongAccumulator[Op.values().length];
+    private volatile long slowNanos = DEFAULT_SLOW_NANOS; // latency that emits a JFR event
+
+    /**
+     * Constructor for FADAFMetrics with all counters at zero.
+     */
+    public FADAFMetrics() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+            nanos[i] = new LongAdder();
+            maxNanos[i] = new LongAccumulator(Math::max, 0);
+        }
+    }
+
+    /**
+     * Returns how often the given operation ran.
+     *
+     * @param op operation
+     * @return number of calls
+     */
+    public long count(Op op) {
+        return counts[op.ordinal()].sum();
+    }
+
+    /**
+     * Returns the total time spent in the given operation.
+     *
+     * @param op operation
+     * @return total latency in nanoseconds
+     */
+    public long totalNanos(Op op) {
+        return nanos[op.ordinal()].sum();
+    }
+
+    /**
+     * Returns the mean latency of the given operation.
+     *
+     * @param op operation
+     * @return mean latency in nanoseconds, 0 if it never ran
+     */
+    public double meanNanos(Op op) {
+        long count = count(op);
+        return (count == 0) ? 0 : (double) totalNanos(op) / count;
+    }
+
+    /**
+     * Returns the slowest call of the given operation.
+     *
+     * @param op operation
+     * @return maximum latency in nanoseconds
+     */
+    public long maxNanos(Op op) {
+        return maxNanos[op.ordinal()].get();
+    }
+
+    /**
+     * Sets the latency from which a call is reported to JFR.
+     *
+     * @param nanos slow threshold in nanoseconds
+     * @throws IllegalArgumentException if nanos is negative
+     */
+    public void setSlowNanos(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException();
+        }
+        slowNanos = nanos;
+    }
+
+    /**
+     * Sets all counters back to zero.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i].reset();
+            nanos[i].reset();
+            maxNanos[i].reset();
+        }
+    }
+
+    /**
+     * Records one call of the given operation.
+     *
+     * @param op         operation
+     * @param latency    latency of the call in nanoseconds
+     * @param size       pairs stored after the call
+     * @param treeHeight tree height after the call, 0 for other engines
+     */
+    void record(Op op, long latency, int size, int treeHeight) {
+        int i = op.ordinal();
+        counts[i].increment();
+        nanos[i].add(latency);
+        maxNanos[i].accumulate(latency);
+        if (latency >= slowNanos) {
+            FADAFOperationEvent event = new FADAFOperationEvent();
+            if (event.isEnabled()) {
+                event.operation = op.name();
+                event.latency = latency;
+                event.size = size;
+                event.treeHeight = treeHeight;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("FADAFMetrics{");
+        String sep = "";
+        for (Op op : Op.values()) {
+            long count = count(op);
+            if (count > 0) {
+                sb.append(sep).append(op).append("=[count=").append(count)
+                        .append(", meanNanos=").append(Math.round(meanNanos(op)))
+                        .append(", maxNanos=").append(maxNanos(op)).append(']');
+                sep = ", ";
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Name: Yin Lam Lai
+ * PID: A15779757
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event committed by FADAFMetrics for an operation slower than its slow
+ * threshold. Faster operations only update the counters, so recording stays
+ * cheap on hot paths.
+ *
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+@Name("fadaf.SlowOperation")
+@Label("Slow FADAF Operation")
+@Category("FADAF")
+@Description("FADAF call that took longer than the metrics slow threshold")
+class FADAFOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+
+    @Label("Size")
+    int size;
+
+    @Label("Tree Height")
+    int treeHeight;
+}
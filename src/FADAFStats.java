@@ -0,0 +1,159 @@
+/*
+ * Name: Yin Lam Lai
+ * PID: A15779757
+ */
+
+import java.util.Arrays;
+
+/**
+ * Shape of a FADAF at one moment, as returned by FADAF.stats: tree height,
+ * dup chain and probe length histograms, hash index load and resize totals.
+ * Histograms are bucketed by powers of two: slot i counts lengths from 2^i
+ * to 2^(i+1) - 1, so slot 0 holds chains of one pair and values found on
+ * the first probe.
+ *
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+public final class FADAFStats {
+
+    // instance variables
+    private final int size;
+    private final int nUniqueKeys;
+    private final int treeHeight;
+    private final int maxTreeHeight;
+    private final long[] chainHistogram;
+    private final long[] probeHistogram;
+    private final int indexCapacity;
+    private final int resizeCount;
+    private final long resizeNanos;
+    private final long resizeMoved;
+
+    /**
+     * Constructor for FADAFStats.
+     *
+     * @param size           pairs stored
+     * @param nUniqueKeys    unique keys stored
+     * @param treeHeight     current tree height
+     * @param maxTreeHeight  largest tree height reached
+     * @param chainHistogram dup chain length histogram
+     * @param probeHistogram hash index probe length histogram
+     * @param indexCapacity  hash index capacity
+     * @param resizeCount    hash index resizes
+     * @param resizeNanos    time spent in hash index resizes
+     * @param resizeMoved    keys moved by hash index resizes
+     */
+    FADAFStats(int size, int nUniqueKeys, int treeHeight, int maxTreeHeight, long[] chainHistogram,
+            long[] probeHistogram, int indexCapacity, int resizeCount, long resizeNanos, long resizeMoved) {
+        this.size = size;
+        this.nUniqueKeys = nUniqueKeys;
+        this.treeHeight = treeHeight;
+        this.maxTreeHeight = maxTreeHeight;
+        this.chainHistogram = chainHistogram;
+        this.probeHistogram = probeHistogram;
+        this.indexCapacity = indexCapacity;
+        this.resizeCount = resizeCount;
+        this.resizeNanos = resizeNanos;
+        this.resizeMoved = resizeMoved;
+    }
+
+    /**
+     * Returns the number of key-data pairs stored.
+     *
+     * @return count of key-data pairs
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of unique keys stored.
+     *
+     * @return count of unique keys
+     */
+    public int nUniqueKeys() {
+        return nUniqueKeys;
+    }
+
+    /**
+     * Returns the tree height, counting key nodes only.
+     *
+     * @return height, or 0 for engines other than DAFTree
+     */
+    public int treeHeight() {
+        return treeHeight;
+    }
+
+    /**
+     * Returns the largest height the tree has reached.
+     *
+     * @return maximum height, or 0 for engines other than DAFTree
+     */
+    public int maxTreeHeight() {
+        return maxTreeHeight;
+    }
+
+    /**
+     * Returns the histogram of dup chain lengths, one entry per key.
+     *
+     * @return chain length histogram, a copy
+     */
+    public long[] chainHistogram() {
+        return chainHistogram.clone();
+    }
+
+    /**
+     * Returns the histogram of probes needed to find each key in the hash
+     * index.
+     *
+     * @return probe length histogram, a copy, empty without a hash index
+     */
+    public long[] probeHistogram() {
+        return probeHistogram.clone();
+    }
+
+    /**
+     * Returns the load factor of the hash index.
+     *
+     * @return keys per slot, or 0 without a hash index
+     */
+    public double loadFactor() {
+        return (indexCapacity == 0) ? 0 : (double) nUniqueKeys / indexCapacity;
+    }
+
+    /**
+     * Returns the number of times the hash index has grown.
+     *
+     * @return resize count
+     */
+    public int resizeCount() {
+        return resizeCount;
+    }
+
+    /**
+     * Returns the total time spent growing the hash index.
+     *
+     * @return resize time in nanoseconds
+     */
+    public long resizeNanos() {
+        return resizeNanos;
+    }
+
+    /**
+     * Returns the total number of keys moved by hash index resizes.
+     *
+     * @return keys moved
+     */
+    public long resizeMoved() {
+        return resizeMoved;
+    }
+
+    @Override
+    public String toString() {
+        return "FADAFStats{size=" + size + ", nUniqueKeys=" + nUniqueKeys + ", treeHeight=" + treeHeight
+                + ", maxTreeHeight=" + maxTreeHeight + ", chainHistogram=" + Arrays.toString(chainHistogram)
+                + ", probeHistogram=" + Arrays.toString(probeHistogram) + ", loadFactor=" + loadFactor()
+                + ", resizeCount=" + resizeCount + ", resizeNanos=" + resizeNanos
+                + ", resizeMoved=" + resizeMoved + "}";
+    }
+}
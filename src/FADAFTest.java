@@ -1,5 +1,17 @@
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 public class FADAFTest {
     FADAF test;
 
@@ -20,4 +32,532 @@ public class FADAFTest {
 
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void navigation() {
+        FADAF<Integer, String> fadaf = new FADAF<>(10);
+        assertNull(fadaf.getMinKey());
+        assertNull(fadaf.getMaxKey());
+        for (int i = 10; i <= 50; i += 10) {
+            fadaf.insert(i, "a");
+            fadaf.insert(i, "b");
+        }
+        assertEquals(10, (int) fadaf.getMinKey());
+        assertEquals(50, (int) fadaf.getMaxKey());
+        assertEquals(20, (int) fadaf.floorKey(20));
+        assertEquals(20, (int) fadaf.floorKey(25));
+        assertNull(fadaf.floorKey(5));
+        assertEquals(30, (int) fadaf.ceilingKey(25));
+        assertNull(fadaf.ceilingKey(55));
+        assertEquals(10, (int) fadaf.lowerKey(20));
+        assertNull(fadaf.lowerKey(10));
+        assertEquals(30, (int) fadaf.higherKey(20));
+        assertNull(fadaf.higherKey(50));
+    }
+
+    @Test
+    public void rangeQueries() {
+        FADAF<Integer, String> fadaf = new FADAF<>(10);
+        for (int i = 0; i < 20; i++) {
+            fadaf.insert(i, "a");
+            if (i % 2 == 0) {
+                fadaf.insert(i, "b");
+            }
+        }
+        assertEquals(java.util.Arrays.asList(4, 4, 5, 6, 6), fadaf.rangeKeys(4, 7));
+        assertEquals(5, fadaf.rangeEntries(4, 7).size());
+        assertEquals("b", fadaf.rangeEntries(4, 7).get(1).getValue());
+        assertTrue(fadaf.rangeKeys(7, 7).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> fadaf.rangeKeys(7, 4));
+
+        assertEquals(5, fadaf.removeRange(4, 7));
+        assertEquals(25, fadaf.size());
+        assertEquals(17, fadaf.nUniqueKeys());
+        assertFalse(fadaf.lookupAny(4));
+        assertFalse(fadaf.lookupAny(6));
+        assertTrue(fadaf.lookupAny(7));
+        assertEquals(0, fadaf.removeRange(4, 7));
+    }
+
+    @Test
+    public void indexFollowsFirstNodeOfChain() {
+        FADAF<Integer, String> fadaf = new FADAF<>(10);
+        for (int i = 0; i < 64; i++) {
+            fadaf.insert(i, "a");
+            fadaf.insert(i, "b");
+            fadaf.insert(i, "c");
+        }
+        // removing first nodes promotes dups and swaps successors around
+        for (int i = 0; i < 64; i++) {
+            assertTrue(fadaf.remove(i, "a"));
+        }
+        for (int i = 0; i < 64; i += 2) {
+            assertTrue(fadaf.remove(i, "b"));
+        }
+        assertEquals(java.util.Arrays.asList("c"), fadaf.getAllData(10));
+        assertEquals(java.util.Arrays.asList("b", "c"), fadaf.getAllData(11));
+        assertTrue(fadaf.lookup(11, "b"));
+        assertFalse(fadaf.lookup(10, "b"));
+        assertTrue(fadaf.remove(10, "c"));
+        assertFalse(fadaf.lookupAny(10));
+        assertTrue(fadaf.insert(10, "d"));
+        assertEquals(java.util.Arrays.asList("d"), fadaf.getAllData(10));
+        assertTrue(fadaf.removeAll(11));
+        assertTrue(fadaf.getAllData(11).isEmpty());
+        assertEquals(94, fadaf.size());
+    }
+
+    @Test
+    public void skipListEngine() {
+        FADAF<Integer, String> fadaf = new FADAF<>(10, new SkipListStore<Integer, String>());
+        for (int i = 0; i < 20; i++) {
+            assertTrue(fadaf.insert(i, "a"));
+            assertTrue(fadaf.insert(i, "b"));
+        }
+        assertFalse(fadaf.insert(3, "a"));
+        assertEquals(40, fadaf.size());
+        assertEquals(java.util.Arrays.asList("a", "b"), fadaf.getAllData(3));
+        assertTrue(fadaf.remove(3, "a"));
+        assertTrue(fadaf.lookup(3, "b"));
+        assertTrue(fadaf.removeAll(4));
+        assertFalse(fadaf.lookupAny(4));
+        assertEquals(java.util.Arrays.asList(2, 2, 3, 5, 5), fadaf.rangeKeys(2, 6));
+        assertEquals(5, fadaf.removeRange(2, 6));
+        assertEquals(0, (int) fadaf.getMinKey());
+        assertEquals(32, fadaf.getAllKeys().size());
+    }
+
+    @Test
+    public void bulkLoadMergesWithStoredPairs() {
+        FADAF<Integer, String> fadaf = new FADAF<>(10);
+        fadaf.insert(5, "old");
+        List<Map.Entry<Integer, String>> entries = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(i % 10, "n" + i));
+        }
+        entries.add(new AbstractMap.SimpleImmutableEntry<>(5, "old"));
+        assertEquals(100, fadaf.bulkLoad(entries));
+        assertEquals(101, fadaf.size());
+        assertEquals(10, fadaf.nUniqueKeys());
+        assertEquals("old", fadaf.getAllData(5).getFirst());
+        assertEquals(11, fadaf.getAllData(5).size());
+        assertTrue(fadaf.remove(5, "old"));
+        assertEquals("n5", fadaf.getAllData(5).getFirst());
+        assertTrue(fadaf.insert(42, "x"));
+        assertTrue(fadaf.lookup(42, "x"));
+    }
+
+    @Test
+    public void bulkLoadKeepsTreeOfNonEmptyFADAF() {
+        DAFTree<Integer, Integer> tree = new DAFTree<>(false);
+        FADAF<Integer, Integer> fadaf = new FADAF<>(10, tree);
+        for (int i = 0; i < 100; i++) {
+            fadaf.insert(i, i);
+        }
+        assertEquals(100, tree.maxHeight());
+        Iterator<DAFTree<Integer, Integer>.DAFNode<Integer, Integer>> nodes = tree.iterator();
+        nodes.next();
+        Iterator<Integer> keys = fadaf.keySet().iterator();
+        keys.next();
+        List<Map.Entry<Integer, Integer>> entries = new ArrayList<>();
+        for (int i = 100; i < 200; i++) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(i, i));
+        }
+        assertEquals(100, fadaf.bulkLoad(entries));
+        assertEquals(200, tree.size());
+        assertTrue(tree.height() <= 8);
+        assertEquals(100, tree.maxHeight());
+        assertThrows(ConcurrentModificationException.class, nodes::next);
+        // views navigate by key, so they carry on over the rebuilt nodes
+        assertEquals(Integer.valueOf(1), keys.next());
+
+        // still a plain BST: ascending inserts grow the height one by one
+        int height = tree.height();
+        for (int i = 200; i < 210; i++) {
+            fadaf.insert(i, i);
+        }
+        assertEquals(height + 10, tree.height());
+        assertEquals(210, fadaf.nUniqueKeys());
+        assertTrue(fadaf.lookup(150, 150));
+    }
+
+    @Test
+    public void upserts() {
+        FADAF<String, Integer> fadaf = new FADAF<>(10);
+        assertNull(fadaf.putIfAbsent("a", 1));
+        assertEquals(1, (int) fadaf.putIfAbsent("a", 2));
+        assertEquals(1, (int) fadaf.computeIfAbsent("a", k -> 3));
+        assertNull(fadaf.computeIfAbsent("b", k -> null));
+        assertFalse(fadaf.lookupAny("b"));
+        fadaf.insert("a", 5);
+        assertTrue(fadaf.replace("a", 1, 10));
+        assertEquals(Arrays.asList(10, 5), fadaf.getAllData("a"));
+        // merging the first pair into an existing one promotes the next node
+        assertEquals(5, (int) fadaf.merge("a", 5, (x, y) -> y));
+        assertEquals(Arrays.asList(5), fadaf.getAllData("a"));
+        assertTrue(fadaf.lookup("a", 5));
+        assertNull(fadaf.merge("a", 0, (x, y) -> null));
+        assertFalse(fadaf.lookupAny("a"));
+        for (int i = 0; i < 100; i++) {
+            fadaf.merge("count", 1, Integer::sum);
+        }
+        assertEquals(Arrays.asList(100), fadaf.getAllData("count"));
+        assertEquals(1, fadaf.size());
+    }
+
+    @Test
+    public void replacedEntriesKeepTheirPair() {
+        FADAF<Integer, Integer> fadaf = new FADAF<>(10);
+        for (int i = 0; i < 20; i++) {
+            fadaf.insert(i % 2, i);
+        }
+        Set<Map.Entry<Integer, Integer>> held = fadaf.entryStream().collect(Collectors.toSet());
+        Map.Entry<Integer, Integer> first = fadaf.entryStream().findFirst().get();
+        // the key node, a middle node and the tail of a chain with a dup index
+        assertTrue(fadaf.replace(0, 0, 100));
+        assertTrue(fadaf.replace(0, 10, 110));
+        assertTrue(fadaf.replace(0, 18, 118));
+        assertEquals(101, (int) fadaf.merge(1, 100, (a, b) -> a + b));
+        assertEquals(Integer.valueOf(0), first.getValue());
+        assertEquals(20, held.size());
+        for (int i = 0; i < 20; i++) {
+            assertTrue(held.contains(new AbstractMap.SimpleImmutableEntry<>(i % 2, i)));
+        }
+        assertEquals(Arrays.asList(100, 2, 4, 6, 8, 110, 12, 14, 16, 118), fadaf.getAllData(0));
+        assertTrue(fadaf.lookup(0, 100));
+        assertTrue(fadaf.remove(0, 100));
+        assertTrue(fadaf.insert(0, 120));
+        assertEquals(Arrays.asList(2, 4, 6, 8, 110, 12, 14, 16, 118, 120), fadaf.getAllData(0));
+        assertEquals(Integer.valueOf(101), fadaf.getAllData(1).getFirst());
+        assertTrue(fadaf.remove(1, 101));
+        assertEquals(19, fadaf.size());
+    }
+
+    @Test
+    public void upsertsSkipTheTreeForStoredKeys() {
+        FADAF<DAFTreeTest.CountingKey, Integer> fadaf = new FADAF<>(10);
+        for (int i = 0; i < 1000; i++) {
+            fadaf.insert(new DAFTreeTest.CountingKey(i), i);
+        }
+        DAFTreeTest.CountingKey.comparisons = 0;
+        fadaf.insert(new DAFTreeTest.CountingKey(5), -1);
+        fadaf.putIfAbsent(new DAFTreeTest.CountingKey(6), -1);
+        fadaf.merge(new DAFTreeTest.CountingKey(7), 1, Integer::sum);
+        fadaf.replace(new DAFTreeTest.CountingKey(8), 8, 80);
+        assertEquals(0, DAFTreeTest.CountingKey.comparisons);
+        assertEquals(Arrays.asList(8), fadaf.getAllData(new DAFTreeTest.CountingKey(7)));
+    }
+
+    @Test
+    public void streams() {
+        for (FADAF<Integer, Integer> fadaf : Arrays.asList(new FADAF<Integer, Integer>(10),
+                new FADAF<>(10, new SkipListStore<Integer, Integer>()))) {
+            long expected = 0;
+            for (int i = 0; i < 3000; i++) {
+                fadaf.insert(i % 1000, i);
+                expected += i;
+            }
+            assertEquals(expected, fadaf.entryStream().parallel().mapToLong(Map.Entry::getValue).sum());
+            assertEquals(fadaf.getAllKeys(), fadaf.keyStream().parallel().collect(Collectors.toList()));
+            assertEquals(Arrays.asList(7, 1007, 2007), fadaf.dataStream(7).collect(Collectors.toList()));
+            assertEquals(0, fadaf.dataStream(5000).count());
+        }
+    }
+
+    @Test
+    public void orderStatistics() {
+        FADAF<Integer, String> fadaf = new FADAF<>(10);
+        for (int i = 0; i < 10; i++) {
+            fadaf.insert(i * 10, "a");
+            fadaf.insert(i * 10, "b");
+        }
+        assertEquals(6, fadaf.rank(25));
+        assertEquals(30, (int) fadaf.select(6));
+        assertEquals(40, (int) fadaf.median());
+        assertEquals(4, fadaf.countRange(20, 40));
+        assertEquals(2, fadaf.countKeysInRange(20, 40));
+        fadaf.remove(0, "a");
+        assertEquals(5, fadaf.rank(25));
+
+        FADAF<Integer, String> skipList = new FADAF<>(10, new SkipListStore<Integer, String>());
+        assertThrows(UnsupportedOperationException.class, () -> skipList.rank(1));
+    }
+
+    @Test
+    public void snapshotRoundTrip() throws IOException {
+        Path dir = Files.createTempDirectory("fadaf");
+        Path file = dir.resolve("fadaf.snap");
+        try {
+            FADAF<String, Long> fadaf = new FADAF<>(10);
+            for (long i = 0; i < 500; i++) {
+                fadaf.insert("k\u00e9y" + (i % 37), i);
+            }
+            fadaf.writeSnapshot(file, Codec.STRING, Codec.LONG);
+            FADAF<String, Long> loaded = FADAF.openSnapshot(file, Codec.STRING, Codec.LONG);
+            assertEquals(500, loaded.size());
+            assertEquals(37, loaded.nUniqueKeys());
+            assertEquals(fadaf.getAllKeys(), loaded.getAllKeys());
+            assertEquals(fadaf.getAllData("k\u00e9y5"), loaded.getAllData("k\u00e9y5"));
+            assertTrue(loaded.insert("k\u00e9y5", 1000L));
+            assertFalse(loaded.insert("k\u00e9y5", 5L));
+
+            // an empty FADAF writes a header only
+            new FADAF<Integer, Integer>(10).writeSnapshot(file, Codec.INTEGER, Codec.INTEGER);
+            assertEquals(0, FADAF.openSnapshot(file, Codec.INTEGER, Codec.INTEGER).size());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void snapshotRejectsBadFiles() throws IOException {
+        Path dir = Files.createTempDirectory("fadaf");
+        Path file = dir.resolve("fadaf.snap");
+        try {
+            FADAF<Integer, Integer> fadaf = new FADAF<>(10);
+            for (int i = 0; i < 100; i++) {
+                fadaf.insert(i, -i);
+            }
+            fadaf.writeSnapshot(file, Codec.INTEGER, Codec.INTEGER);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 2);
+            }
+            assertThrows(IOException.class, () -> FADAF.openSnapshot(file, Codec.INTEGER, Codec.INTEGER));
+            Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+            assertThrows(IOException.class, () -> FADAF.openSnapshot(file, Codec.INTEGER, Codec.INTEGER));
+            // keys out of order: 5 then 3, one data each
+            ByteBuffer unordered = ByteBuffer.allocate(40).putInt(FADAF.SNAPSHOT_MAGIC)
+                    .putInt(FADAF.SNAPSHOT_VERSION).putInt(2).putInt(2)
+                    .putInt(5).putInt(1).putInt(50).putInt(3).putInt(1).putInt(30);
+            Files.write(file, unordered.array());
+            assertThrows(IOException.class, () -> FADAF.openSnapshot(file, Codec.INTEGER, Codec.INTEGER));
+            // counts far beyond what the file can hold fail before anything is sized
+            unordered.putInt(2 * Integer.BYTES, Integer.MAX_VALUE).putInt(3 * Integer.BYTES, Integer.MAX_VALUE);
+            Files.write(file, unordered.array());
+            assertThrows(IOException.class, () -> FADAF.openSnapshot(file, Codec.INTEGER, Codec.INTEGER));
+            // a string whose length is negative or runs past the file
+            for (int length : new int[] {-1, Integer.MAX_VALUE}) {
+                ByteBuffer badString = ByteBuffer.allocate(32).putInt(FADAF.SNAPSHOT_MAGIC)
+                        .putInt(FADAF.SNAPSHOT_VERSION).putInt(1).putInt(1).putInt(length).putInt(1).putInt(7);
+                Files.write(file, badString.array());
+                assertThrows(IOException.class, () -> FADAF.openSnapshot(file, Codec.STRING, Codec.INTEGER));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void failedSnapshotLeavesNoTempFile() throws IOException {
+        Path dir = Files.createTempDirectory("fadaf");
+        Path file = dir.resolve("fadaf.snap");
+        Codec<Integer> failing = new Codec<Integer>() {
+            @Override
+            public int size(Integer value) {
+                return Integer.BYTES;
+            }
+
+            @Override
+            public void encode(Integer value, ByteBuffer out) {
+                if (value == 50) {
+                    throw new IllegalStateException();
+                }
+                out.putInt(value);
+            }
+
+            @Override
+            public Integer decode(ByteBuffer in) {
+                return in.getInt();
+            }
+        };
+        try {
+            FADAF<Integer, Integer> fadaf = new FADAF<>(10);
+            fadaf.insert(1, 1);
+            fadaf.writeSnapshot(file, Codec.INTEGER, Codec.INTEGER);
+            for (int i = 0; i < 100; i++) {
+                fadaf.insert(i, i);
+            }
+            assertThrows(IllegalStateException.class, () -> fadaf.writeSnapshot(file, failing, Codec.INTEGER));
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(Arrays.asList(file), files.collect(Collectors.toList()));
+            }
+            assertEquals(1, FADAF.openSnapshot(file, Codec.INTEGER, Codec.INTEGER).size());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void statsAndMetrics() {
+        FADAF<Integer, Integer> fadaf = new FADAF<>(10);
+        assertNull(fadaf.metrics());
+        FADAFMetrics metrics = fadaf.enableMetrics();
+        assertSame(metrics, fadaf.enableMetrics());
+        for (int i = 0; i < 64; i++) {
+            fadaf.insert(i % 16, i);
+        }
+        fadaf.lookupAny(3);
+        fadaf.getMinKey();
+        fadaf.getMaxKey();
+        fadaf.removeAll(15);
+        assertEquals(64, metrics.count(FADAFMetrics.Op.INSERT));
+        assertEquals(1, metrics.count(FADAFMetrics.Op.LOOKUP_ANY));
+        assertEquals(2, metrics.count(FADAFMetrics.Op.NAVIGATE));
+        assertEquals(1, metrics.count(FADAFMetrics.Op.REMOVE_ALL));
+        assertTrue(metrics.maxNanos(FADAFMetrics.Op.INSERT) > 0);
+
+        FADAFStats stats = fadaf.stats();
+        assertEquals(60, stats.size());
+        assertEquals(15, stats.nUniqueKeys());
+        assertEquals(fadaf.tree.height(), stats.treeHeight());
+        assertTrue(stats.maxTreeHeight() >= stats.treeHeight());
+        // every key has 4 data, slot 2 holds lengths 4 to 7
+        assertArrayEquals(new long[] {0, 0, 15}, stats.chainHistogram());
+        assertEquals(15, Arrays.stream(stats.probeHistogram()).sum());
+        assertEquals(15.0 / fadaf.hashTable.capacity(), stats.loadFactor(), 1e-9);
+
+        fadaf.disableMetrics();
+        fadaf.insert(100, 1);
+        assertEquals(64, metrics.count(FADAFMetrics.Op.INSERT));
+    }
+
+    @Test
+    public void visitorsOnBothEngines() {
+        List<FADAF<Integer, Integer>> engines = Arrays.asList(new FADAF<Integer, Integer>(10),
+                new FADAF<Integer, Integer>(10, new SkipListStore<Integer, Integer>()));
+        for (FADAF<Integer, Integer> fadaf : engines) {
+            for (int i = 0; i < 30; i++) {
+                fadaf.insert(i % 6, i);
+            }
+            List<Integer> keys = new ArrayList<>();
+            fadaf.forEachKey(keys::add);
+            assertEquals(fadaf.getAllKeys(), keys);
+            List<Integer> data = new ArrayList<>();
+            fadaf.forEachData(2, data::add);
+            assertEquals(fadaf.getAllData(2), data);
+            long[] sum = new long[1];
+            fadaf.forEachInRange(1, 3, (k, d) -> sum[0] += k * 1000 + d);
+            assertEquals(5 * 1000 + 5 * 2000 + (1 + 7 + 13 + 19 + 25) + (2 + 8 + 14 + 20 + 26), sum[0]);
+
+            Integer[] buffer = new Integer[4];
+            assertEquals(4, fadaf.getAllKeys(buffer));
+            assertArrayEquals(new Integer[] {0, 0, 0, 0}, buffer);
+            assertEquals(4, fadaf.getAllData(5, buffer));
+            assertArrayEquals(new Integer[] {5, 11, 17, 23}, buffer);
+            assertEquals(2, fadaf.rangeKeys(5, 6, new Integer[2]));
+            assertEquals(5, fadaf.rangeKeys(5, 6, new Integer[10]));
+        }
+    }
+
+    @Test
+    public void keySetView() {
+        List<FADAF<Integer, Integer>> engines = Arrays.asList(new FADAF<Integer, Integer>(10),
+                new FADAF<Integer, Integer>(10, new SkipListStore<Integer, Integer>()));
+        for (FADAF<Integer, Integer> fadaf : engines) {
+            NavigableSet<Integer> keys = fadaf.keySet();
+            assertTrue(keys.isEmpty());
+            for (int i = 0; i < 20; i++) {
+                fadaf.insert(i % 10, i);
+            }
+            assertEquals(10, keys.size());
+            assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), new ArrayList<>(keys));
+            assertTrue(keys.contains(3));
+            assertFalse(keys.contains(10));
+            assertEquals(Integer.valueOf(0), keys.first());
+            assertEquals(Integer.valueOf(9), keys.last());
+            assertEquals(Integer.valueOf(4), keys.ceiling(4));
+            assertEquals(Integer.valueOf(5), keys.higher(4));
+            assertNull(keys.higher(9));
+
+            NavigableSet<Integer> sub = keys.subSet(2, true, 6, false);
+            assertEquals(Arrays.asList(2, 3, 4, 5), new ArrayList<>(sub));
+            assertEquals(4, sub.size());
+            assertFalse(sub.contains(6));
+            assertNull(sub.higher(5));
+            assertEquals(Integer.valueOf(2), sub.ceiling(-5));
+            assertThrows(IllegalArgumentException.class, () -> sub.headSet(7, true));
+            assertThrows(IllegalArgumentException.class, () -> keys.subSet(6, 2));
+            assertEquals(Arrays.asList(9, 8, 7), new ArrayList<>(keys.descendingSet().headSet(6)));
+            assertEquals(Arrays.asList(5, 4, 3, 2), new ArrayList<>(sub.descendingSet()));
+            assertEquals(Arrays.asList(3, 2, 1, 0), new ArrayList<>(keys.descendingSet().tailSet(3)));
+
+            // live: changes to the FADAF show up, removing through the view
+            // removes whole chains
+            fadaf.insert(3, 100);
+            fadaf.removeAll(4);
+            assertEquals(Arrays.asList(2, 3, 5), new ArrayList<>(sub));
+            assertTrue(sub.remove(3));
+            assertFalse(fadaf.lookupAny(3));
+            assertFalse(sub.remove(8));
+            Iterator<Integer> it = keys.iterator();
+            while (it.hasNext()) {
+                int key = it.next();
+                if (key % 2 == 0) {
+                    it.remove();
+                    fadaf.insert(key + 21, key);
+                }
+            }
+            assertEquals(Arrays.asList(1, 5, 7, 9, 21, 23, 27, 29), new ArrayList<>(keys));
+            assertEquals(Integer.valueOf(29), keys.pollLast());
+            assertEquals(Integer.valueOf(1), keys.pollFirst());
+            assertEquals(6, keys.size());
+            assertEquals(fadaf.nUniqueKeys(), keys.size());
+            assertThrows(UnsupportedOperationException.class, () -> keys.add(1));
+            sub.clear();
+            assertEquals(Arrays.asList(7, 9, 21, 23, 27), new ArrayList<>(keys));
+        }
+    }
+
+    @Test
+    public void multimapView() {
+        List<FADAF<Integer, Integer>> engines = Arrays.asList(new FADAF<Integer, Integer>(10),
+                new FADAF<Integer, Integer>(10, new SkipListStore<Integer, Integer>()));
+        for (FADAF<Integer, Integer> fadaf : engines) {
+            NavigableMap<Integer, Collection<Integer>> map = fadaf.asMultimap();
+            for (int i = 0; i < 12; i++) {
+                fadaf.insert(i % 4, i);
+            }
+            assertEquals(4, map.size());
+            assertEquals(Arrays.asList(1, 5, 9), new ArrayList<>(map.get(1)));
+            assertNull(map.get(7));
+            assertTrue(map.containsKey(3));
+            assertEquals(Integer.valueOf(2), map.ceilingKey(2));
+            assertEquals(Integer.valueOf(3), map.lastEntry().getKey());
+            assertEquals(Arrays.asList(3, 7, 11), new ArrayList<>(map.lastEntry().getValue()));
+            assertEquals(Arrays.asList(3, 2, 1, 0), new ArrayList<>(map.descendingMap().keySet()));
+            assertEquals(Arrays.asList(1, 2), new ArrayList<>(map.subMap(1, 3).keySet()));
+
+            // chains are live views of the dup chains
+            Collection<Integer> chain = map.get(2);
+            assertEquals(3, chain.size());
+            assertTrue(chain.add(14));
+            assertTrue(fadaf.lookup(2, 14));
+            assertEquals(4, chain.size());
+            assertTrue(chain.contains(6));
+            Iterator<Integer> it = chain.iterator();
+            while (it.hasNext()) {
+                if (it.next() < 10) {
+                    it.remove();
+                }
+            }
+            assertEquals(Arrays.asList(10, 14), fadaf.getAllData(2));
+            assertTrue(chain.remove(10));
+            assertEquals(Arrays.asList(14), new ArrayList<>(chain));
+
+            Map.Entry<Integer, Collection<Integer>> polled = map.pollFirstEntry();
+            assertEquals(Integer.valueOf(0), polled.getKey());
+            assertEquals(Arrays.asList(0, 4, 8), new ArrayList<>(polled.getValue()));
+            assertFalse(fadaf.lookupAny(0));
+            assertEquals(Arrays.asList(3, 7, 11), new ArrayList<>(map.remove(3)));
+            assertNull(map.remove(3));
+            assertEquals(Arrays.asList(1, 2), new ArrayList<>(map.keySet()));
+            assertThrows(UnsupportedOperationException.class, () -> map.put(5, new ArrayList<>()));
+            map.headMap(2).clear();
+            assertEquals(Arrays.asList(14), fadaf.getAllData(2));
+            assertEquals(1, fadaf.nUniqueKeys());
+        }
+    }
+}
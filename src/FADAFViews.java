@@ -0,0 +1,964 @@
+/*
+ * Name: Yin Lam Lai
+ * PID: A15779757
+ */
+
+import java.util.*;
+
+/**
+ * Live views behind FADAF.keySet and FADAF.asMultimap. None of them copy the
+ * store: each step of an iteration is one bounded ceiling or floor search, so
+ * the views see every change made to the FADAF and iterators never fail
+ * while it changes.
+ *
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+final class FADAFViews {
+
+    /**
+     * Not instantiable.
+     */
+    private FADAFViews() {
+    }
+
+    /**
+     * Immutable key bounds of a view, in ascending key order. An unbounded
+     * side ignores its key.
+     *
+     * @param <K> Generic type of key
+     */
+    static final class Range<K extends Comparable<? super K>> {
+
+        // instance variables
+        final K lo;
+        final boolean loInclusive;
+        final boolean fromStart;
+        final K hi;
+        final boolean hiInclusive;
+        final boolean toEnd;
+
+        /**
+         * Range over all keys.
+         */
+        Range() {
+            this(null, false, true, null, false, true);
+        }
+
+        /**
+         * Range with the given bounds.
+         *
+         * @param lo          lower bound
+         * @param loInclusive if lo is in the range
+         * @param fromStart   if there is no lower bound
+         * @param hi          upper bound
+         * @param hiInclusive if hi is in the range
+         * @param toEnd       if there is no upper bound
+         */
+        Range(K lo, boolean loInclusive, boolean fromStart, K hi, boolean hiInclusive,
+              boolean toEnd) {
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.fromStart = fromStart;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.toEnd = toEnd;
+        }
+
+        /**
+         * Checks if the key is below the range.
+         *
+         * @param key key to check
+         * @return true if below, false otherwise
+         */
+        boolean tooLow(K key) {
+            if (fromStart) {
+                return false;
+            }
+            int c = key.compareTo(lo);
+            return c < 0 || (c == 0 && !loInclusive);
+        }
+
+        /**
+         * Checks if the key is above the range.
+         *
+         * @param key key to check
+         * @return true if above, false otherwise
+         */
+        boolean tooHigh(K key) {
+            if (toEnd) {
+                return false;
+            }
+            int c = key.compareTo(hi);
+            return c > 0 || (c == 0 && !hiInclusive);
+        }
+
+        /**
+         * Checks if the key is in the range.
+         *
+         * @param key key to check
+         * @return true if in range, false otherwise
+         */
+        boolean inRange(K key) {
+            return !tooLow(key) && !tooHigh(key);
+        }
+
+        /**
+         * Checks if the key is in the range with both bounds made inclusive.
+         *
+         * @param key key to check
+         * @return true if in the closed range, false otherwise
+         */
+        boolean inClosedRange(K key) {
+            return (fromStart || key.compareTo(lo) >= 0) && (toEnd || key.compareTo(hi) <= 0);
+        }
+
+        /**
+         * Returns this range with a new lower bound, which must lie within
+         * this range.
+         *
+         * @param key       new lower bound
+         * @param inclusive if the bound is in the new range
+         * @return narrowed range
+         * @throws NullPointerException     if the key is null
+         * @throws IllegalArgumentException if the key is out of range
+         */
+        Range<K> withLow(K key, boolean inclusive) {
+            checkBound(key, inclusive);
+            return new Range<>(key, inclusive, false, hi, hiInclusive, toEnd);
+        }
+
+        /**
+         * Returns this range with a new upper bound, which must lie within
+         * this range.
+         *
+         * @param key       new upper bound
+         * @param inclusive if the bound is in the new range
+         * @return narrowed range
+         * @throws NullPointerException     if the key is null
+         * @throws IllegalArgumentException if the key is out of range
+         */
+        Range<K> withHigh(K key, boolean inclusive) {
+            checkBound(key, inclusive);
+            return new Range<>(lo, loInclusive, fromStart, key, inclusive, false);
+        }
+
+        /**
+         * Helper to check a new bound the way TreeMap sub maps do.
+         *
+         * @param key       new bound
+         * @param inclusive if the bound is inclusive
+         */
+        private void checkBound(K key, boolean inclusive) {
+            if (key == null) {
+                throw new NullPointerException();
+            }
+            if (inclusive ? !inRange(key) : !inClosedRange(key)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+        }
+    }
+
+    /**
+     * Navigation over the unique keys of a FADAF within a range, in
+     * ascending or descending order. The abs methods work in ascending key
+     * order; the others follow the direction of the view.
+     *
+     * @param <K> Generic type of key
+     * @param <D> Generic type of data
+     */
+    static final class Nav<K extends Comparable<? super K>, D> {
+
+        // instance variables
+        final FADAF<K, D> fadaf;
+        final Range<K> range;
+        final boolean descending;
+
+        /**
+         * Ascending navigation over all keys.
+         *
+         * @param fadaf backing FADAF
+         */
+        Nav(FADAF<K, D> fadaf) {
+            this(fadaf, new Range<>(), false);
+        }
+
+        /**
+         * Navigation over the given range.
+         *
+         * @param fadaf      backing FADAF
+         * @param range      key bounds
+         * @param descending if keys go from largest to smallest
+         */
+        Nav(FADAF<K, D> fadaf, Range<K> range, boolean descending) {
+            this.fadaf = fadaf;
+            this.range = range;
+            this.descending = descending;
+        }
+
+        /**
+         * Returns the first key in view order.
+         *
+         * @return first key, or null if the view is empty
+         */
+        K first() {
+            return descending ? absHighest() : absLowest();
+        }
+
+        /**
+         * Returns the last key in view order.
+         *
+         * @return last key, or null if the view is empty
+         */
+        K last() {
+            return descending ? absLowest() : absHighest();
+        }
+
+        /**
+         * Returns the first key at or after the given key in view order.
+         *
+         * @param key target key
+         * @return ceiling key, or null if there is none
+         */
+        K ceiling(K key) {
+            return descending ? absFloor(key) : absCeiling(key);
+        }
+
+        /**
+         * Returns the first key strictly after the given key in view order.
+         *
+         * @param key target key
+         * @return higher key, or null if there is none
+         */
+        K higher(K key) {
+            return descending ? absLower(key) : absHigher(key);
+        }
+
+        /**
+         * Returns the last key at or before the given key in view order.
+         *
+         * @param key target key
+         * @return floor key, or null if there is none
+         */
+        K floor(K key) {
+            return descending ? absCeiling(key) : absFloor(key);
+        }
+
+        /**
+         * Returns the last key strictly before the given key in view order.
+         *
+         * @param key target key
+         * @return lower key, or null if there is none
+         */
+        K lower(K key) {
+            return descending ? absHigher(key) : absLower(key);
+        }
+
+        /**
+         * Returns the number of unique keys in the range, in O(log n) for the
+         * DAFTree engine.
+         *
+         * @return count of unique keys in range
+         */
+        int count() {
+            if (range.fromStart && range.toEnd) {
+                return fadaf.nUniqueKeys();
+            }
+            K lo = absLowest();
+            if (lo == null) {
+                return 0;
+            }
+            K hi = absHighest();
+            if (fadaf.countsKeys()) {
+                return fadaf.countKeysInRange(lo, hi) + 1;
+            }
+            int count = 1;
+            for (K key = lo; key.compareTo(hi) < 0; key = fadaf.higherKey(key)) {
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * Returns the view reversed.
+         *
+         * @return descending navigation
+         */
+        Nav<K, D> descending() {
+            return new Nav<>(fadaf, range, !descending);
+        }
+
+        /**
+         * Returns the view from one key to another in view order.
+         *
+         * @param from          first bound
+         * @param fromInclusive if from is in the view
+         * @param to            last bound
+         * @param toInclusive   if to is in the view
+         * @return narrowed navigation
+         * @throws NullPointerException     if from or to is null
+         * @throws IllegalArgumentException if from is after to or out of range
+         */
+        Nav<K, D> sub(K from, boolean fromInclusive, K to, boolean toInclusive) {
+            int c = from.compareTo(to);
+            if (descending ? c < 0 : c > 0) {
+                throw new IllegalArgumentException("fromKey > toKey");
+            }
+            return tail(from, fromInclusive).head(to, toInclusive);
+        }
+
+        /**
+         * Returns the view up to the given key in view order.
+         *
+         * @param to        last bound
+         * @param inclusive if to is in the view
+         * @return narrowed navigation
+         */
+        Nav<K, D> head(K to, boolean inclusive) {
+            Range<K> narrowed = descending ? range.withLow(to, inclusive) : range.withHigh(to, inclusive);
+            return new Nav<>(fadaf, narrowed, descending);
+        }
+
+        /**
+         * Returns the view from the given key in view order.
+         *
+         * @param from      first bound
+         * @param inclusive if from is in the view
+         * @return narrowed navigation
+         */
+        Nav<K, D> tail(K from, boolean inclusive) {
+            Range<K> narrowed = descending ? range.withHigh(from, inclusive) : range.withLow(from, inclusive);
+            return new Nav<>(fadaf, narrowed, descending);
+        }
+
+        /**
+         * Helper to return the smallest key in range.
+         *
+         * @return smallest key, or null if none
+         */
+        private K absLowest() {
+            K key;
+            if (range.fromStart) {
+                key = fadaf.getMinKey();
+            } else {
+                key = range.loInclusive ? fadaf.ceilingKey(range.lo) : fadaf.higherKey(range.lo);
+            }
+            return (key == null || range.tooHigh(key)) ? null : key;
+        }
+
+        /**
+         * Helper to return the largest key in range.
+         *
+         * @return largest key, or null if none
+         */
+        private K absHighest() {
+            K key;
+            if (range.toEnd) {
+                key = fadaf.getMaxKey();
+            } else {
+                key = range.hiInclusive ? fadaf.floorKey(range.hi) : fadaf.lowerKey(range.hi);
+            }
+            return (key == null || range.tooLow(key)) ? null : key;
+        }
+
+        /**
+         * Helper to return the smallest key in range at or above the given
+         * key.
+         *
+         * @param key target key
+         * @return ceiling key, or null if none
+         */
+        private K absCeiling(K key) {
+            if (range.tooLow(key)) {
+                return absLowest();
+            }
+            K found = fadaf.ceilingKey(key);
+            return (found == null || range.tooHigh(found)) ? null : found;
+        }
+
+        /**
+         * Helper to return the smallest key in range strictly above the given
+         * key.
+         *
+         * @param key target key
+         * @return higher key, or null if none
+         */
+        private K absHigher(K key) {
+            if (range.tooLow(key)) {
+                return absLowest();
+            }
+            K found = fadaf.higherKey(key);
+            return (found == null || range.tooHigh(found)) ? null : found;
+        }
+
+        /**
+         * Helper to return the largest key in range at or below the given
+         * key.
+         *
+         * @param key target key
+         * @return floor key, or null if none
+         */
+        private K absFloor(K key) {
+            if (range.tooHigh(key)) {
+                return absHighest();
+            }
+            K found = fadaf.floorKey(key);
+            return (found == null || range.tooLow(found)) ? null : found;
+        }
+
+        /**
+         * Helper to return the largest key in range strictly below the given
+         * key.
+         *
+         * @param key target key
+         * @return lower key, or null if none
+         */
+        private K absLower(K key) {
+            if (range.tooHigh(key)) {
+                return absHighest();
+            }
+            K found = fadaf.lowerKey(key);
+            return (found == null || range.tooLow(found)) ? null : found;
+        }
+    }
+
+    /**
+     * Iterator over the keys of a Nav. Each step searches for the key after
+     * the last one returned, so it never fails when the FADAF changes.
+     * Removing a key removes all its pairs.
+     *
+     * @param <K> Generic type of key
+     * @param <D> Generic type of data
+     */
+    static class KeyIterator<K extends Comparable<? super K>, D> implements Iterator<K> {
+
+        // instance variables
+        private final Nav<K, D> nav;
+        private K next;
+        private K last;
+
+        /**
+         * Starts at the first key of the view.
+         *
+         * @param nav navigation to walk
+         */
+        KeyIterator(Nav<K, D> nav) {
+            this.nav = nav;
+            this.next = nav.first();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public K next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = nav.higher(last);
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            nav.fadaf.removeAll(last);
+            last = null;
+        }
+    }
+
+    /**
+     * NavigableSet view of the unique keys of a FADAF.
+     *
+     * @param <K> Generic type of key
+     * @param <D> Generic type of data
+     */
+    static final class KeySet<K extends Comparable<? super K>, D> extends AbstractSet<K>
+            implements NavigableSet<K> {
+
+        // instance variables
+        private final Nav<K, D> nav;
+
+        /**
+         * View over the given navigation.
+         *
+         * @param nav key navigation
+         */
+        KeySet(Nav<K, D> nav) {
+            this.nav = nav;
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return new KeyIterator<>(nav);
+        }
+
+        @Override
+        public Iterator<K> descendingIterator() {
+            return new KeyIterator<>(nav.descending());
+        }
+
+        @Override
+        public int size() {
+            return nav.count();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return nav.first() == null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            K key = (K) o;
+            return nav.range.inRange(key) && nav.fadaf.lookupAny(key);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            K key = (K) o;
+            return nav.range.inRange(key) && nav.fadaf.removeAll(key);
+        }
+
+        @Override
+        public K lower(K key) {
+            return nav.lower(key);
+        }
+
+        @Override
+        public K floor(K key) {
+            return nav.floor(key);
+        }
+
+        @Override
+        public K ceiling(K key) {
+            return nav.ceiling(key);
+        }
+
+        @Override
+        public K higher(K key) {
+            return nav.higher(key);
+        }
+
+        @Override
+        public K pollFirst() {
+            K key = nav.first();
+            if (key != null) {
+                nav.fadaf.removeAll(key);
+            }
+            return key;
+        }
+
+        @Override
+        public K pollLast() {
+            K key = nav.last();
+            if (key != null) {
+                nav.fadaf.removeAll(key);
+            }
+            return key;
+        }
+
+        @Override
+        public K first() {
+            return orThrow(nav.first());
+        }
+
+        @Override
+        public K last() {
+            return orThrow(nav.last());
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return nav.descending ? Collections.reverseOrder() : null;
+        }
+
+        @Override
+        public NavigableSet<K> descendingSet() {
+            return new KeySet<>(nav.descending());
+        }
+
+        @Override
+        public NavigableSet<K> subSet(K fromElement, boolean fromInclusive, K toElement,
+                                      boolean toInclusive) {
+            return new KeySet<>(nav.sub(fromElement, fromInclusive, toElement, toInclusive));
+        }
+
+        @Override
+        public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+            return new KeySet<>(nav.head(toElement, inclusive));
+        }
+
+        @Override
+        public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+            return new KeySet<>(nav.tail(fromElement, inclusive));
+        }
+
+        @Override
+        public SortedSet<K> subSet(K fromElement, K toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> headSet(K toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> tailSet(K fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+
+    /**
+     * NavigableMap view from each unique key of a FADAF to a live collection
+     * of its data.
+     *
+     * @param <K> Generic type of key
+     * @param <D> Generic type of data
+     */
+    static final class Multimap<K extends Comparable<? super K>, D>
+            extends AbstractMap<K, Collection<D>> implements NavigableMap<K, Collection<D>> {
+
+        // instance variables
+        private final Nav<K, D> nav;
+
+        /**
+         * View over the given navigation.
+         *
+         * @param nav key navigation
+         */
+        Multimap(Nav<K, D> nav) {
+            this.nav = nav;
+        }
+
+        @Override
+        public Set<Entry<K, Collection<D>>> entrySet() {
+            return new AbstractSet<Entry<K, Collection<D>>>() {
+                @Override
+                public Iterator<Entry<K, Collection<D>>> iterator() {
+                    KeyIterator<K, D> keys = new KeyIterator<>(nav);
+                    return new Iterator<Entry<K, Collection<D>>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return keys.hasNext();
+                        }
+
+                        @Override
+                        public Entry<K, Collection<D>> next() {
+                            return entry(keys.next());
+                        }
+
+                        @Override
+                        public void remove() {
+                            keys.remove();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return nav.count();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return nav.count();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return nav.first() == null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean containsKey(Object key) {
+            K k = (K) key;
+            return nav.range.inRange(k) && nav.fadaf.lookupAny(k);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Collection<D> get(Object key) {
+            return containsKey(key) ? new ChainView<>(nav.fadaf, (K) key) : null;
+        }
+
+        @Override
+        public Collection<D> put(K key, Collection<D> value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Collection<D> remove(Object key) {
+            K k = (K) key;
+            return nav.range.inRange(k) ? detach(k) : null;
+        }
+
+        @Override
+        public Entry<K, Collection<D>> lowerEntry(K key) {
+            return entry(nav.lower(key));
+        }
+
+        @Override
+        public K lowerKey(K key) {
+            return nav.lower(key);
+        }
+
+        @Override
+        public Entry<K, Collection<D>> floorEntry(K key) {
+            return entry(nav.floor(key));
+        }
+
+        @Override
+        public K floorKey(K key) {
+            return nav.floor(key);
+        }
+
+        @Override
+        public Entry<K, Collection<D>> ceilingEntry(K key) {
+            return entry(nav.ceiling(key));
+        }
+
+        @Override
+        public K ceilingKey(K key) {
+            return nav.ceiling(key);
+        }
+
+        @Override
+        public Entry<K, Collection<D>> higherEntry(K key) {
+            return entry(nav.higher(key));
+        }
+
+        @Override
+        public K higherKey(K key) {
+            return nav.higher(key);
+        }
+
+        @Override
+        public Entry<K, Collection<D>> firstEntry() {
+            return entry(nav.first());
+        }
+
+        @Override
+        public Entry<K, Collection<D>> lastEntry() {
+            return entry(nav.last());
+        }
+
+        @Override
+        public K firstKey() {
+            return orThrow(nav.first());
+        }
+
+        @Override
+        public K lastKey() {
+            return orThrow(nav.last());
+        }
+
+        @Override
+        public Entry<K, Collection<D>> pollFirstEntry() {
+            return poll(nav.first());
+        }
+
+        @Override
+        public Entry<K, Collection<D>> pollLastEntry() {
+            return poll(nav.last());
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return nav.descending ? Collections.reverseOrder() : null;
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> navigableKeySet() {
+            return new KeySet<>(nav);
+        }
+
+        @Override
+        public NavigableSet<K> descendingKeySet() {
+            return new KeySet<>(nav.descending());
+        }
+
+        @Override
+        public NavigableMap<K, Collection<D>> descendingMap() {
+            return new Multimap<>(nav.descending());
+        }
+
+        @Override
+        public NavigableMap<K, Collection<D>> subMap(K fromKey, boolean fromInclusive, K toKey,
+                                                     boolean toInclusive) {
+            return new Multimap<>(nav.sub(fromKey, fromInclusive, toKey, toInclusive));
+        }
+
+        @Override
+        public NavigableMap<K, Collection<D>> headMap(K toKey, boolean inclusive) {
+            return new Multimap<>(nav.head(toKey, inclusive));
+        }
+
+        @Override
+        public NavigableMap<K, Collection<D>> tailMap(K fromKey, boolean inclusive) {
+            return new Multimap<>(nav.tail(fromKey, inclusive));
+        }
+
+        @Override
+        public SortedMap<K, Collection<D>> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, Collection<D>> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, Collection<D>> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+
+        /**
+         * Helper to make a live entry for a key.
+         *
+         * @param key key of the entry
+         * @return entry, or null if the key is null
+         */
+        private Entry<K, Collection<D>> entry(K key) {
+            return (key == null) ? null : new SimpleImmutableEntry<>(key, new ChainView<>(nav.fadaf, key));
+        }
+
+        /**
+         * Helper to remove a key and return an entry of its former data.
+         *
+         * @param key key to remove
+         * @return entry with a copy of the data, or null if the key is null
+         */
+        private Entry<K, Collection<D>> poll(K key) {
+            return (key == null) ? null : new SimpleImmutableEntry<>(key, detach(key));
+        }
+
+        /**
+         * Helper to remove a key and return a copy of its former data.
+         *
+         * @param key key to remove
+         * @return the data, or null if the key was absent
+         */
+        private Collection<D> detach(K key) {
+            LinkedList<D> data = nav.fadaf.getAllData(key);
+            if (data.isEmpty()) {
+                return null;
+            }
+            nav.fadaf.removeAll(key);
+            return data;
+        }
+    }
+
+    /**
+     * Live collection of the data of one key, in chain order. Adding inserts
+     * a pair and removing removes one.
+     *
+     * @param <K> Generic type of key
+     * @param <D> Generic type of data
+     */
+    static final class ChainView<K extends Comparable<? super K>, D> extends AbstractCollection<D> {
+
+        // instance variables
+        private final FADAF<K, D> fadaf;
+        private final K key;
+
+        /**
+         * View of the chain of the given key.
+         *
+         * @param fadaf backing FADAF
+         * @param key   key of the chain
+         */
+        ChainView(FADAF<K, D> fadaf, K key) {
+            this.fadaf = fadaf;
+            this.key = key;
+        }
+
+        @Override
+        public Iterator<D> iterator() {
+            Iterator<D> chain = fadaf.dataIterator(key);
+            return new Iterator<D>() {
+                private D last;
+
+                @Override
+                public boolean hasNext() {
+                    return chain.hasNext();
+                }
+
+                @Override
+                public D next() {
+                    last = chain.next();
+                    return last;
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    fadaf.remove(key, last);
+                    last = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return fadaf.chainLength(key);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return !fadaf.lookupAny(key);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            return fadaf.lookup(key, (D) o);
+        }
+
+        @Override
+        public boolean add(D data) {
+            return fadaf.insert(key, data);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            return fadaf.remove(key, (D) o);
+        }
+    }
+
+    /**
+     * Helper to return a key or throw if there is none.
+     *
+     * @param key key found
+     * @param <K> Generic type of key
+     * @return the key
+     * @throws NoSuchElementException if the key is null
+     */
+    private static <K> K orThrow(K key) {
+        if (key == null) {
+            throw new NoSuchElementException();
+        }
+        return key;
+    }
+}
@@ -0,0 +1,106 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares FADAF on the DAFTree engine against the struct-of-arrays
+ * CompactDAFTree and against OffHeapFADAF: building it, point lookups, and a
+ * full GC while it is live, which is dominated by tracing one object per pair
+ * for the DAFTree engine. Setup also prints the retained heap per pair
+ * measured after a full GC. The offHeap engine needs
+ * --add-modules jdk.incubator.foreign.
+ *
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g", "-XX:+UseParallelGC",
+        "--add-modules", "jdk.incubator.foreign"})
+public class FootprintBenchmark {
+
+    @Param({"1000000", "10000000"})
+    int size;
+
+    @Param({"dafTree", "compact", "offHeap"})
+    String engine;
+
+    Integer[] keys;
+    FADAF<Integer, Integer> fadaf; // null for the offHeap engine
+    OffHeapFADAF<Integer, Integer> offHeap; // null for the others
+    int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = BenchmarkData.keys("random", size, 42);
+        long before = usedHeap();
+        if (engine.equals("offHeap")) {
+            offHeap = buildOffHeap();
+        } else {
+            fadaf = build();
+        }
+        long after = usedHeap();
+        System.out.printf("%n%s: %.1f retained bytes per pair%n", engine, (after - before) / (double) size);
+    }
+
+    private FADAF<Integer, Integer> build() {
+        FADAF<Integer, Integer> result = engine.equals("compact")
+                ? new FADAF<Integer, Integer>(HashTable.MIN_CAPACITY, new CompactDAFTree<Integer, Integer>())
+                : new FADAF<Integer, Integer>(HashTable.MIN_CAPACITY);
+        for (int n = 0; n < keys.length; n++) {
+            result.insert(keys[n], keys[n]);
+        }
+        return result;
+    }
+
+    private OffHeapFADAF<Integer, Integer> buildOffHeap() {
+        OffHeapFADAF<Integer, Integer> result = new OffHeapFADAF<>(size, Codec.INTEGER, Codec.INTEGER);
+        for (int n = 0; n < keys.length; n++) {
+            result.insert(keys[n], keys[n]);
+        }
+        return result;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (offHeap != null) {
+            offHeap.close();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int n = 0; n < 3; n++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public int insertAll() {
+        if (offHeap != null) {
+            try (OffHeapFADAF<Integer, Integer> built = buildOffHeap()) {
+                return built.size();
+            }
+        }
+        return build().size();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean lookupAny() {
+        Integer key = keys[cursor++];
+        if (cursor == size) {
+            cursor = 0;
+        }
+        return (offHeap != null) ? offHeap.lookupAny(key) : fadaf.lookupAny(key);
+    }
+
+    @Benchmark
+    public void fullGc() {
+        System.gc();
+    }
+}
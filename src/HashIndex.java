@@ -0,0 +1,98 @@
+/*
+ * Name: Yin Lam Lai
+ * PID: A15779757
+ */
+
+import java.util.function.Function;
+
+/**
+ * Creates a HashTable that maps every key it stores to a value, such as a
+ * handle into another structure. Keys follow the HashTable contract; the
+ * value travels with its key through probing, deletes and resizes.
+ *
+ * @param <K> Generic type of key
+ * @param <V> Generic type of value
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+public class HashIndex<K, V> extends HashTable<K> {
+
+    /**
+     * Constructor for hash index.
+     *
+     * @param capacity initial capacity
+     * @throws IllegalArgumentException if capacity is less than the minimum
+     *                                  threshold
+     */
+    public HashIndex(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * Constructor for hash index with a choice of resizing mode.
+     *
+     * @param capacity    initial capacity
+     * @param incremental true to spread resizes over later calls
+     * @throws IllegalArgumentException if capacity is less than the minimum
+     *                                  threshold
+     */
+    public HashIndex(int capacity, boolean incremental) {
+        super(capacity, incremental, true);
+    }
+
+    /**
+     * Returns the value mapped to the given key.
+     *
+     * @param key key to look up
+     * @return its value, or null if the key is not stored or maps to null
+     * @throws NullPointerException if the key is null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        return (V) getPayload(key);
+    }
+
+    /**
+     * Returns the value mapped to the given key for a reader that holds no
+     * lock and validates afterwards, as HashTable.peekPayload describes.
+     *
+     * @param key key to look up
+     * @return its value, null if the key is not stored, or HashTable.UNKNOWN
+     *         if only a locked read can tell
+     * @throws NullPointerException if the key is null
+     */
+    Object peek(K key) {
+        return peekPayload(key);
+    }
+
+    /**
+     * Maps the given key to the given value, inserting the key if needed.
+     *
+     * @param key   key to insert or update
+     * @param value value to map it to
+     * @return the previous value, or null if the key was inserted
+     * @throws NullPointerException if the key is null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        return (V) putPayload(key, value);
+    }
+
+    /**
+     * Returns the value mapped to the given key, first mapping it to the value
+     * computed by the given function if the key is not stored. The table is
+     * probed once either way. The function must not modify this table.
+     *
+     * @param key     key to look up or insert
+     * @param mapping function computing the value of a new key
+     * @return the stored or new value, or null if the function returned null
+     * @throws NullPointerException if key or mapping is null
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mapping) {
+        if (mapping == null) {
+            throw new NullPointerException();
+        }
+        return (V) payloadIfAbsent(key, mapping);
+    }
+}
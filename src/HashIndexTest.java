@@ -0,0 +1,25 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashIndexTest {
+
+    @Test
+    public void valuesFollowKeysThroughResizes() {
+        for (boolean incremental : new boolean[] {false, true}) {
+            HashIndex<Integer, String> index = new HashIndex<>(10, incremental);
+            for (int i = 0; i < 1000; i++) {
+                assertNull(index.put(i, "v" + i));
+            }
+            assertEquals("v7", index.put(7, "w7"));
+            for (int i = 0; i < 1000; i += 2) {
+                assertTrue(index.delete(i));
+            }
+            for (int i = 0; i < 1000; i++) {
+                String expected = (i % 2 == 0) ? null : (i == 7 ? "w7" : "v" + i);
+                assertEquals(expected, index.get(i));
+            }
+            assertEquals(500, index.size());
+        }
+    }
+}
@@ -3,10 +3,31 @@
  * PID: A15779757
  */
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.TreeMap;
+import java.util.function.Function;
 
 /**
- * Creates a Hashtable that takes a takes in one input
+ * Creates a Hashtable that takes a takes in one input. Values live directly in
+ * a flat array and collisions are resolved by linear probing; deletes shift
+ * the rest of the probe run back so no tombstones are needed.
+ *
+ * In incremental mode a resize does not move everything at once: the old
+ * array stays alive next to the new one and every insert, delete and lookup
+ * migrates a few more of its slots, so no single call pays for the whole
+ * table.
+ *
+ * Hash codes are spread before masking them to the power-of-two capacity,
+ * so patterned codes do not pile up in one probe run. If a run still grows
+ * past TREEIFY_THRESHOLD, e.g. under a flood of colliding codes, Comparable
+ * values that would land beyond it go to an overflow tree instead, keeping
+ * every operation O(TREEIFY_THRESHOLD + log n). As in HashMap's tree bins,
+ * compareTo only orders the overflow tree: values that compare equal share
+ * one tree entry and are told apart by equals.
+ *
+ * Subclasses such as HashIndex can attach a payload to every value; payloads
+ * sit in a parallel array that is only allocated for them.
  *
  * @param <T> Generic type of value
  * @author Yin lam Lai
@@ -18,28 +39,69 @@ public class HashTable<T> {
     public static final int RESIZE_FACTOR = 2; // resize factor
     public static final int MIN_CAPACITY = 10; // minimum initial capacity
     public static final double MAX_LOAD_FACTOR = (double) 2 / 3; // maximum load factor
+    public static final int MIGRATION_STEP = 8; // old slots moved per call while resizing
+    public static final int TREEIFY_THRESHOLD = 64; // probes after which Comparable values overflow
+    static final int MAX_CAPACITY = 1 << 30; // largest power-of-two array
+
+    static final Object UNKNOWN = new Object(); // peekPayload result when only a locked read can tell
+    private static final Object MIGRATED = new Object(); // marks a drained old slot
+    private static final Comparator<Object> OVERFLOW_ORDER = HashTable::compareOverflow; // overflow tree order
 
     // instance variables
-    private LinkedList<T>[] table; // data storage
-    private int nElems; // number of elements stored
+    private Object[] table; // data storage, null marks an empty slot
+    private Object[] payloads; // payload of each slot of table, null for plain sets
+    private int nElems; // number of elements stored, in both arrays
+    private final boolean incremental; // whether resizes are spread over calls
+    private Object[] oldTable; // array being drained, null when not resizing
+    private Object[] oldPayloads; // payloads of oldTable, null for plain sets
+    private int migrateIndex; // next slot of oldTable to move
+    private TreeMap<Object, Overflowed> overflow; // values past a long probe run, null until needed
+    private int overflowed; // number of values in the overflow tree
+    private int resizes; // number of resizes so far
+    private long resizeNanos; // time spent resizing and migrating
+    private long moved; // values moved to a new array by resizes
 
     /**
      * Constructor for hash table.
-     * 
+     *
      * @throws IllegalArgumentException if capacity is less than the minimum
      *                                  threshold
      */
-    @SuppressWarnings("unchecked")
     public HashTable(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * Constructor for hash table with a choice of resizing mode.
+     *
+     * @param capacity    initial capacity
+     * @param incremental true to migrate to the resized array a few slots per
+     *                    call instead of all at once
+     * @throws IllegalArgumentException if capacity is less than the minimum
+     *                                  threshold
+     */
+    public HashTable(int capacity, boolean incremental) {
+        this(capacity, incremental, false);
+    }
+
+    /**
+     * Constructor for subclasses that attach a payload to each value.
+     *
+     * @param capacity     initial capacity, rounded up to a power of two
+     * @param incremental  true to spread resizes over later calls
+     * @param withPayloads true to allocate payload storage
+     * @throws IllegalArgumentException if capacity is less than the minimum
+     *                                  threshold
+     */
+    protected HashTable(int capacity, boolean incremental, boolean withPayloads) {
         if (capacity < MIN_CAPACITY) {
             throw new IllegalArgumentException();
         }
-        table = new LinkedList[capacity];
+        int length = (capacity >= MAX_CAPACITY) ? MAX_CAPACITY : Integer.highestOneBit(capacity - 1) << 1;
+        table = new Object[length];
+        payloads = withPayloads ? new Object[length] : null;
         nElems = 0;
-        for (int n = 0; n < table.length; n++) {
-            table[n] = new LinkedList<>();
-        }
-
+        this.incremental = incremental;
     }
 
     /**
@@ -54,16 +116,12 @@ public class HashTable<T> {
         if (value == null) {
             throw new NullPointerException();
         }
-        if (lookup(value)) {
+        migrateStep();
+        int slot = probe(value);
+        if (slot >= 0 || (oldTable != null && indexOf(oldTable, value) >= 0) || inOverflow(value)) {
             return false;
         }
-        double rehash1 = (double) nElems / capacity();
-
-        if (rehash1 > MAX_LOAD_FACTOR) {
-            rehash();
-        }
-        table[hashValue(value)].add(value);
-        nElems++;
+        addAt(value, null, -slot - 1);
         return true;
 
     }
@@ -79,12 +137,41 @@ public class HashTable<T> {
         if (value == null) {
             throw new NullPointerException();
         }
-        if (!lookup(value)) {
-            return false;
+        migrateStep();
+        int index = indexOf(table, value);
+        if (index < 0) {
+            if (oldTable != null && (index = indexOf(oldTable, value)) >= 0) {
+                // the old array only drains, so a marker cannot break a probe run
+                oldTable[index] = MIGRATED;
+                if (oldPayloads != null) {
+                    oldPayloads[index] = null;
+                }
+            } else if (!removeOverflow(value)) {
+                return false;
+            }
+            nElems--;
+            return true;
         }
 
-        LinkedList<T> list = table[hashValue(value)];
-        list.remove(value);
+        // backward-shift: pull later members of the probe run into the hole
+        // whenever the hole lies on their path from their home slot
+        int hole = index;
+        int cur = nextIndex(hole, table.length);
+        while (table[cur] != null) {
+            int home = hashValue(table[cur], table.length);
+            if (distance(home, cur, table.length) >= distance(hole, cur, table.length)) {
+                table[hole] = table[cur];
+                if (payloads != null) {
+                    payloads[hole] = payloads[cur];
+                }
+                hole = cur;
+            }
+            cur = nextIndex(cur, table.length);
+        }
+        table[hole] = null;
+        if (payloads != null) {
+            payloads[hole] = null;
+        }
         nElems--;
         return true;
     }
@@ -100,11 +187,9 @@ public class HashTable<T> {
         if (value == null) {
             throw new NullPointerException();
         }
-        LinkedList list = table[hashValue(value)];
-        if (list.contains(value)) {
-            return true;
-        }
-        return false;
+        migrateStep();
+        return indexOf(table, value) >= 0
+                || (oldTable != null && indexOf(oldTable, value) >= 0) || inOverflow(value);
     }
 
     /**
@@ -126,37 +211,572 @@ public class HashTable<T> {
     }
 
     /**
-     * Hash function calculated by the hash code of value.
+     * Check if the table is in the middle of an incremental resize.
      *
-     * @param value input
+     * @return true if an old array is still being drained
+     */
+    public boolean isResizing() {
+        return oldTable != null;
+    }
+
+    /**
+     * Returns the number of times the table has grown.
+     *
+     * @return resize count
+     */
+    public int resizeCount() {
+        return resizes;
+    }
+
+    /**
+     * Returns the total time spent growing the table, including the slots
+     * migrated by later calls in incremental mode.
+     *
+     * @return resize time in nanoseconds
+     */
+    public long resizeNanos() {
+        return resizeNanos;
+    }
+
+    /**
+     * Returns the total number of values moved to a new array by resizes.
+     *
+     * @return values moved
+     */
+    public long resizeMoved() {
+        return moved;
+    }
+
+    /**
+     * Returns the number of values kept in the overflow tree because their
+     * probe run was too long.
+     *
+     * @return overflow size, 0 when hashing spreads well
+     */
+    public int overflowSize() {
+        return overflowed;
+    }
+
+    /**
+     * Returns how many probes a lookup of each stored value takes, bucketed
+     * by powers of two: slot i counts the values found after 2^i to
+     * 2^(i+1) - 1 probes. Long probe runs are the linear-probing analog of
+     * long buckets; values in the overflow tree are not counted. Runs in
+     * O(capacity).
+     *
+     * @return probe length histogram
+     */
+    public long[] probeHistogram() {
+        long[] histogram = new long[Integer.SIZE];
+        int top = 0;
+        for (Object[] tab : new Object[][] {table, oldTable}) {
+            if (tab == null) {
+                continue;
+            }
+            for (int n = 0; n < tab.length; n++) {
+                if (tab[n] != null && tab[n] != MIGRATED) {
+                    int probes = distance(hashValue(tab[n], tab.length), n, tab.length) + 1;
+                    int bucket = 31 - Integer.numberOfLeadingZeros(probes);
+                    histogram[bucket]++;
+                    top = Math.max(top, bucket + 1);
+                }
+            }
+        }
+        return Arrays.copyOf(histogram, top);
+    }
+
+    /**
+     * Returns the payload attached to the given value.
+     *
+     * @param value value to look up
+     * @return its payload, or null if the value is not stored
+     * @throws NullPointerException if the value is null
+     */
+    protected Object getPayload(T value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        migrateStep();
+        int index = indexOf(table, value);
+        if (index >= 0) {
+            return payloads[index];
+        }
+        if (oldTable != null && (index = indexOf(oldTable, value)) >= 0) {
+            return oldPayloads[index];
+        }
+        Overflowed node = findOverflow(value);
+        return (node == null) ? null : node.payload;
+    }
+
+    /**
+     * Returns the payload attached to the given value for a reader that holds
+     * no lock and validates what it read afterwards. Only the current array
+     * is probed and nothing is migrated; the old array and the overflow tree,
+     * which a writer may be restructuring, are never touched. If the value
+     * is not in the array but could be in either of them, UNKNOWN is
+     * returned and the caller has to read again under its lock.
+     *
+     * @param value value to look up
+     * @return its payload, null if the value is not stored, or UNKNOWN
+     * @throws NullPointerException if the value is null
+     */
+    protected Object peekPayload(T value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        Object[] tab = table;
+        Object[] pays = payloads;
+        int index = hashValue(value, tab.length);
+        int limit = probeLimit(value);
+        for (int probes = 0; probes < limit && tab[index] != null; probes++) {
+            if (tab[index].equals(value)) {
+                return pays[index];
+            }
+            index = nextIndex(index, tab.length);
+        }
+        return (oldTable == null && overflowed == 0) ? null : UNKNOWN;
+    }
+
+    /**
+     * Attaches a payload to the given value, inserting the value if it is not
+     * stored yet.
+     *
+     * @param value   value to insert or update
+     * @param payload payload to attach
+     * @return the previous payload, or null if the value was inserted
+     * @throws NullPointerException if the value is null
+     */
+    protected Object putPayload(T value, Object payload) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        migrateStep();
+        Object previous;
+        int index = probe(value);
+        if (index >= 0) {
+            previous = payloads[index];
+            payloads[index] = payload;
+            return previous;
+        }
+        int free = -index - 1;
+        if (oldTable != null && (index = indexOf(oldTable, value)) >= 0) {
+            previous = oldPayloads[index];
+            oldPayloads[index] = payload;
+            return previous;
+        }
+        Overflowed node = findOverflow(value);
+        if (node != null) {
+            previous = node.payload;
+            node.payload = payload;
+            return previous;
+        }
+        addAt(value, payload, free);
+        return null;
+    }
+
+    /**
+     * Returns the payload attached to the given value, first inserting the
+     * value with the payload computed by the given function if it is not
+     * stored. The current array is probed once either way. The function
+     * must not modify this table.
+     *
+     * @param value   value to look up or insert
+     * @param mapping function computing the payload of a new value
+     * @return the stored or new payload, or null if the function returned null
+     *         (nothing is inserted then)
+     * @throws NullPointerException if the value is null
+     */
+    protected Object payloadIfAbsent(T value, Function<? super T, ?> mapping) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        migrateStep();
+        int index = probe(value);
+        if (index >= 0) {
+            return payloads[index];
+        }
+        int free = -index - 1;
+        if (oldTable != null && (index = indexOf(oldTable, value)) >= 0) {
+            return oldPayloads[index];
+        }
+        Overflowed node = findOverflow(value);
+        if (node != null) {
+            return node.payload;
+        }
+        Object payload = mapping.apply(value);
+        if (payload != null) {
+            addAt(value, payload, free);
+        }
+        return payload;
+    }
+
+    /**
+     * Hash function calculated by the hash code of value, spread and masked
+     * to the power-of-two length.
+     *
+     * @param value  input
+     * @param length length of the array being indexed
      * @return hash value (index)
      */
-    private int hashValue(T value) {
-        return value.hashCode() % table.length;
+    private int hashValue(Object value, int length) {
+        return spread(value.hashCode()) & (length - 1);
     }
 
     /**
-     * Double the capacity of the array and rehash all values.
+     * Mixes every bit of a hash code into every other (the MurmurHash3
+     * finalizer), so codes that differ only in high bits, or are multiples
+     * of the capacity, still land far apart.
+     *
+     * @param h hash code
+     * @return spread hash
+     */
+    static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Helper to return how many probes may be spent on a value in the
+     * arrays. Comparable values never sit further than TREEIFY_THRESHOLD from
+     * their home slot, so their search can stop there.
+     *
+     * @param value value to search or place
+     * @return probe limit
+     */
+    private int probeLimit(Object value) {
+        return (value instanceof Comparable) ? TREEIFY_THRESHOLD : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Helper to check if the given value sits in the overflow tree.
+     *
+     * @param value value to find
+     * @return true if the value overflowed
+     */
+    private boolean inOverflow(Object value) {
+        return findOverflow(value) != null;
+    }
+
+    /**
+     * Helper to find the overflow node holding the given value. The tree
+     * finds the values that compare equal to it, equals picks the value.
+     *
+     * @param value value to find
+     * @return its node, or null if the value did not overflow
+     */
+    private Overflowed findOverflow(Object value) {
+        if (overflow == null) {
+            return null;
+        }
+        for (Overflowed node = overflow.get(value); node != null; node = node.next) {
+            if (node.value.equals(value)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper to remove the given value from the overflow tree.
+     *
+     * @param value value to remove
+     * @return true if the value had overflowed, false otherwise
+     */
+    private boolean removeOverflow(Object value) {
+        if (overflow == null) {
+            return false;
+        }
+        Overflowed prev = null;
+        for (Overflowed node = overflow.get(value); node != null; node = node.next) {
+            if (node.value.equals(value)) {
+                if (prev != null) {
+                    prev.next = node.next;
+                } else if (node.next != null) {
+                    // the next value of the chain now keys the tree entry
+                    overflow.remove(value);
+                    overflow.put(node.next.value, node.next);
+                } else {
+                    overflow.remove(value);
+                }
+                overflowed--;
+                return true;
+            }
+            prev = node;
+        }
+        return false;
+    }
+
+    /**
+     * Helper to order the overflow tree: by class name first, so values of
+     * different classes never meet, then by compareTo.
+     *
+     * @param a first value
+     * @param b second value
+     * @return comparison result
      */
     @SuppressWarnings("unchecked")
+    private static int compareOverflow(Object a, Object b) {
+        if (a.getClass() != b.getClass()) {
+            return a.getClass().getName().compareTo(b.getClass().getName());
+        }
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    /**
+     * Helper to find the slot of the given array holding the given value.
+     *
+     * @param tab   array to search
+     * @param value value to find
+     * @return slot index, or -1 if the value is not stored there
+     */
+    private int indexOf(Object[] tab, Object value) {
+        int index = hashValue(value, tab.length);
+        int limit = probeLimit(value);
+        for (int probes = 0; probes < limit && tab[index] != null; probes++) {
+            if (tab[index].equals(value)) {
+                return index;
+            }
+            index = nextIndex(index, tab.length);
+        }
+        return -1;
+    }
+
+    /**
+     * Helper to probe the current array once for the given value.
+     *
+     * @param value value to find
+     * @return slot holding the value, or -(slot + 1) for the free slot that
+     *         ended the probe, where slot is the array length if the value
+     *         would overflow
+     */
+    private int probe(Object value) {
+        int index = hashValue(value, table.length);
+        int limit = probeLimit(value);
+        for (int probes = 0; probes < limit; probes++) {
+            if (table[index] == null) {
+                return -index - 1;
+            }
+            if (table[index].equals(value)) {
+                return index;
+            }
+            index = nextIndex(index, table.length);
+        }
+        return -table.length - 1;
+    }
+
+    /**
+     * Helper to add a value known to be absent into the free slot found by
+     * probe, unless the load factor is exceeded; then the table is resized
+     * and the value placed again.
+     *
+     * @param value   value to add
+     * @param payload payload to attach, ignored for plain sets
+     * @param free    free slot returned by probe
+     */
+    private void addAt(Object value, Object payload, int free) {
+        double rehash1 = (double) nElems / capacity();
+
+        if (rehash1 > MAX_LOAD_FACTOR && capacity() < MAX_CAPACITY) {
+            rehash();
+            place(table, payloads, value, payload);
+        } else if (free == table.length) {
+            overflow(value, payload);
+        } else {
+            table[free] = value;
+            if (payloads != null) {
+                payloads[free] = payload;
+            }
+        }
+        nElems++;
+    }
+
+    /**
+     * Helper to put a value known to be absent into the first free slot of its
+     * probe sequence, or into the overflow tree if that slot is too far. No
+     * duplicate or load factor check is done.
+     *
+     * @param tab     array to place into
+     * @param pays    payload array matching tab, may be null
+     * @param value   value to place
+     * @param payload payload to attach
+     */
+    private void place(Object[] tab, Object[] pays, Object value, Object payload) {
+        int index = hashValue(value, tab.length);
+        int limit = probeLimit(value);
+        for (int probes = 0; tab[index] != null; probes++) {
+            if (probes + 1 == limit) {
+                overflow(value, payload);
+                return;
+            }
+            index = nextIndex(index, tab.length);
+        }
+        tab[index] = value;
+        if (pays != null) {
+            pays[index] = payload;
+        }
+    }
+
+    /**
+     * Helper to put a value into the overflow tree, creating it on first use.
+     *
+     * @param value   value to add
+     * @param payload payload to attach
+     */
+    private void overflow(Object value, Object payload) {
+        if (overflow == null) {
+            overflow = new TreeMap<>(OVERFLOW_ORDER);
+        }
+        Overflowed head = overflow.get(value);
+        if (head == null) {
+            overflow.put(value, new Overflowed(value, payload));
+        } else {
+            // compares equal to a stored value without being equal to it
+            Overflowed node = new Overflowed(value, payload);
+            node.next = head.next;
+            head.next = node;
+        }
+        overflowed++;
+    }
+
+    /**
+     * Helper to return the slot after the given one, wrapping around.
+     *
+     * @param index  current slot
+     * @param length length of the array
+     * @return next slot in the probe sequence
+     */
+    private int nextIndex(int index, int length) {
+        return (index + 1 == length) ? 0 : index + 1;
+    }
+
+    /**
+     * Helper to return how many probes it takes to get from one slot to another.
+     *
+     * @param from   start slot
+     * @param to     end slot
+     * @param length length of the array
+     * @return forward distance between the slots
+     */
+    private int distance(int from, int to, int length) {
+        return (to >= from) ? to - from : to + length - from;
+    }
+
+    /**
+     * Double the capacity of the array and rehash all values. Values move
+     * straight into the new array in one pass; they are already unique, so
+     * the lookup and load check of insert are skipped. In incremental mode
+     * only the new array is set up here and the values follow over later
+     * calls.
+     */
     private void rehash() {
-        LinkedList<T> listOG = new LinkedList<>();
-        for (LinkedList<T> n : table) {
-            if (n.isEmpty()) {
-                continue;
-            } else {
-                listOG.addAll(n);
+        HashTableResizeEvent event = new HashTableResizeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long movedBefore = moved;
+        if (oldTable != null) {
+            // still draining the previous resize, finish it first
+            migrate(oldTable.length);
+        }
+        Object[] old = table;
+        Object[] oldPays = payloads;
+        // the array stops growing at MAX_CAPACITY, longer runs overflow instead
+        int length = (capacity() > MAX_CAPACITY / RESIZE_FACTOR) ? MAX_CAPACITY : capacity() * RESIZE_FACTOR;
+        table = new Object[length];
+        payloads = (oldPays != null) ? new Object[table.length] : null;
+        resizes++;
+        if (incremental) {
+            oldTable = old;
+            oldPayloads = oldPays;
+            migrateIndex = 0;
+        } else {
+            for (int n = 0; n < old.length; n++) {
+                if (old[n] != null) {
+                    place(table, payloads, old[n], (oldPays != null) ? oldPays[n] : null);
+                }
+            }
+            // overflowed values get another chance in the larger array
+            TreeMap<Object, Overflowed> spilled = overflow;
+            overflow = null;
+            overflowed = 0;
+            if (spilled != null) {
+                for (Overflowed head : spilled.values()) {
+                    for (Overflowed node = head; node != null; node = node.next) {
+                        place(table, payloads, node.value, node.payload);
+                    }
+                }
             }
+            moved += nElems;
         }
-        table = new LinkedList[capacity() * RESIZE_FACTOR];
-        for (int n = 0; n < table.length; n++) {
-            table[n] = new LinkedList<>();
+        resizeNanos += System.nanoTime() - start;
+        if (event.shouldCommit()) {
+            event.oldCapacity = old.length;
+            event.newCapacity = table.length;
+            event.elements = nElems;
+            event.moved = moved - movedBefore;
+            event.incremental = incremental;
+            event.commit();
         }
-        nElems = 0;
-        for (int n = 0; n < listOG.size(); n++) {
-            insert(listOG.get(n));
+    }
+
+    /**
+     * Helper to move the next few slots of the old array while resizing.
+     */
+    private void migrateStep() {
+        if (oldTable != null) {
+            long start = System.nanoTime();
+            migrate(MIGRATION_STEP);
+            resizeNanos += System.nanoTime() - start;
+        }
+    }
 
+    /**
+     * Helper to move up to the given number of old slots into the current
+     * array, dropping the old array once it is drained.
+     *
+     * @param slots number of old slots to visit
+     */
+    private void migrate(int slots) {
+        int end = Math.min(oldTable.length, migrateIndex + slots);
+        for (; migrateIndex < end; migrateIndex++) {
+            Object value = oldTable[migrateIndex];
+            if (value != null && value != MIGRATED) {
+                if (oldPayloads != null) {
+                    place(table, payloads, value, oldPayloads[migrateIndex]);
+                    oldPayloads[migrateIndex] = null;
+                } else {
+                    place(table, null, value, null);
+                }
+                oldTable[migrateIndex] = MIGRATED;
+                moved++;
+            }
+        }
+        if (migrateIndex == oldTable.length) {
+            oldTable = null;
+            oldPayloads = null;
         }
     }
 
+    /**
+     * Creates an entry of the overflow tree: a value with its payload, chained
+     * to the other values that compare equal to it but are not equal.
+     */
+    private static final class Overflowed {
+        final Object value;
+        Object payload;
+        Overflowed next; // next value that compares equal, null at the end
+
+        /**
+         * Constructor for Overflowed.
+         *
+         * @param value   overflowed value
+         * @param payload its payload
+         */
+        Overflowed(Object value, Object payload) {
+            this.value = value;
+            this.payload = payload;
+        }
+    }
 }
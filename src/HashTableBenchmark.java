@@ -0,0 +1,75 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures HashTable.insert, lookup and delete on a table filled to a fixed
+ * load factor, from 1e3 to 1e7 elements. The capacity is picked so the table
+ * never resizes during a run; HashTableResizeBenchmark covers resizing.
+ *
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class HashTableBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"0.25", "0.5", "0.66"})
+    double load;
+
+    HashTable<Integer> table;
+    Integer[] present; // values stored in the table
+    Integer[] absent; // values never stored
+    int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        present = BenchmarkData.distinctKeys(size, 42);
+        absent = BenchmarkData.distinctKeys(size, 43);
+        table = new HashTable<>(Math.max(HashTable.MIN_CAPACITY, (int) (size / load) + 1));
+        for (Integer value : present) {
+            table.insert(value);
+        }
+        // a value can only be a miss if the first seed did not produce it too
+        for (int n = 0; n < absent.length; n++) {
+            while (table.lookup(absent[n])) {
+                absent[n] = absent[n] + 1;
+            }
+        }
+    }
+
+    private int next() {
+        int n = cursor++;
+        if (cursor == size) {
+            cursor = 0;
+        }
+        return n;
+    }
+
+    @Benchmark
+    public boolean lookupHit() {
+        return table.lookup(present[next()]);
+    }
+
+    @Benchmark
+    public boolean lookupMiss() {
+        return table.lookup(absent[next()]);
+    }
+
+    /**
+     * Deletes a stored value and puts it back, so the load stays constant.
+     */
+    @Benchmark
+    public boolean deleteInsert() {
+        Integer value = present[next()];
+        table.delete(value);
+        return table.insert(value);
+    }
+}
@@ -0,0 +1,50 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the single insert that crosses HashTable.MAX_LOAD_FACTOR, in both
+ * resizing modes. Every iteration refills a table right up to the threshold
+ * and times one insert: with a full rehash that insert moves every element,
+ * with incremental resizing it only allocates the new array and moves
+ * MIGRATION_STEP slots. Allocation still zeroes the new array, so run with
+ * -XX:+AlwaysPreTouch to keep page faults out of the numbers.
+ *
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 20, batchSize = 1)
+@Measurement(iterations = 20, batchSize = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-XX:+AlwaysPreTouch"})
+public class HashTableResizeBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int capacity;
+
+    @Param({"false", "true"})
+    boolean incremental;
+
+    HashTable<Integer> table;
+    Integer next;
+
+    /**
+     * Fills a fresh table until the next insert has to resize it.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        table = new HashTable<>(capacity, incremental);
+        int value = 0;
+        while ((double) table.size() / table.capacity() <= HashTable.MAX_LOAD_FACTOR) {
+            table.insert(value++);
+        }
+        next = value;
+    }
+
+    @Benchmark
+    public boolean resizingInsert() {
+        return table.insert(next);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Name: Yin Lam Lai
+ * PID: A15779757
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event committed by every HashTable resize. Its duration covers the
+ * work done inside the resizing call: the whole rehash for a plain table,
+ * only finishing an earlier drain and allocating the new array in
+ * incremental mode.
+ *
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+@Name("fadaf.HashTableResize")
+@Label("HashTable Resize")
+@Category("FADAF")
+@Description("Growth of a HashTable or HashIndex array")
+class HashTableResizeEvent extends Event {
+
+    @Label("Old Capacity")
+    int oldCapacity;
+
+    @Label("New Capacity")
+    int newCapacity;
+
+    @Label("Elements")
+    int elements;
+
+    @Label("Moved")
+    @Description("Values moved to a new array during the call")
+    long moved;
+
+    @Label("Incremental")
+    boolean incremental;
+}
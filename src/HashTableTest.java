@@ -1,5 +1,9 @@
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 
 public class HashTableTest {
     HashTable test = new HashTable(10);
@@ -16,4 +20,198 @@ public class HashTableTest {
         test.insert(100);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void collidingDeletesKeepProbeRuns() {
+        HashTable<Integer> table = new HashTable<>(10);
+        // a, b and c share a home slot of the 16, d's home is right behind it
+        int[] keys = new int[4];
+        int found = 0;
+        int home = HashTable.spread(Integer.hashCode(0)) & 15;
+        for (int i = 0; found < 4; i++) {
+            int slot = HashTable.spread(Integer.hashCode(i)) & 15;
+            if ((found < 3 && slot == home) || (found == 3 && slot == ((home + 1) & 15))) {
+                keys[found++] = i;
+            }
+        }
+        int a = keys[0];
+        int b = keys[1];
+        int c = keys[2];
+        int d = keys[3];
+        table.insert(a);
+        table.insert(b);
+        table.insert(d);
+        table.insert(c);
+        // d sits in c's way, so deleting b must still find c behind it
+        assertTrue(table.delete(b));
+        assertFalse(table.delete(b));
+        assertTrue(table.lookup(a));
+        assertTrue(table.lookup(d));
+        assertTrue(table.lookup(c));
+        assertFalse(table.lookup(b));
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    public void growsPastMaxLoadFactor() {
+        HashTable<Integer> table = new HashTable<>(10);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(table.insert(i));
+        }
+        assertFalse(table.insert(500));
+        assertEquals(1000, table.size());
+        // the load check runs before each insert, so one element may overshoot
+        assertTrue((double) (table.size() - 1) / table.capacity() <= HashTable.MAX_LOAD_FACTOR);
+        for (int i = 0; i < 1000; i += 2) {
+            assertTrue(table.delete(i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 1, table.lookup(i));
+        }
+    }
+
+    @Test
+    public void incrementalResizeMigratesGradually() {
+        HashTable<Integer> table = new HashTable<>(10, true);
+        assertEquals(16, table.capacity());
+        for (int i = 0; i < 12; i++) {
+            table.insert(i);
+        }
+        // the twelfth insert crossed the load factor and started a resize
+        assertTrue(table.isResizing());
+        assertEquals(32, table.capacity());
+        assertTrue(table.delete(3));
+        assertFalse(table.lookup(3));
+        for (int i = 12; i < 5000; i++) {
+            assertTrue(table.insert(i));
+        }
+        assertFalse(table.insert(100));
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i != 3, table.lookup(i));
+        }
+        assertEquals(4999, table.size());
+    }
+
+    @Test
+    public void negativeHashCodes() {
+        HashTable<Integer> table = new HashTable<>(10);
+        for (int i = -50; i < 50; i++) {
+            assertTrue(table.insert(i));
+        }
+        assertTrue(table.lookup(-17));
+        assertTrue(table.delete(-17));
+        assertFalse(table.lookup(-17));
+        assertEquals(99, table.size());
+    }
+
+    @Test
+    public void resizeStatsAndProbes() {
+        HashTable<Integer> table = new HashTable<>(10);
+        assertEquals(0, table.resizeCount());
+        for (int i = 0; i < 100; i++) {
+            table.insert(i);
+        }
+        // 16 -> 32 -> 64 -> 128 -> 256
+        assertEquals(4, table.resizeCount());
+        assertEquals(11 + 22 + 43 + 86, table.resizeMoved());
+        long[] probes = table.probeHistogram();
+        assertEquals(100, Arrays.stream(probes).sum());
+
+        HashTable<Integer> incremental = new HashTable<>(10, true);
+        for (int i = 0; i < 100; i++) {
+            incremental.insert(i);
+        }
+        assertEquals(4, incremental.resizeCount());
+        assertEquals(100, Arrays.stream(incremental.probeHistogram()).sum());
+    }
+
+    @Test
+    public void collisionFloodOverflows() {
+        HashTable<CollidingKey> table = new HashTable<>(10);
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(table.insert(new CollidingKey(i)));
+        }
+        assertFalse(table.insert(new CollidingKey(1500)));
+        assertEquals(2000, table.size());
+        // only one probe run's worth stays in the array
+        assertEquals(2000 - HashTable.TREEIFY_THRESHOLD, table.overflowSize());
+        for (int i = 0; i < 2000; i += 2) {
+            assertTrue(table.delete(new CollidingKey(i)));
+        }
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(i % 2 == 1, table.lookup(new CollidingKey(i)));
+        }
+        assertEquals(1000, table.size());
+    }
+
+    @Test
+    public void patternedHashCodesSpread() {
+        HashTable<Integer> table = new HashTable<>(1024);
+        for (int i = 0; i < 600; i++) {
+            assertTrue(table.insert(i * 1024));
+        }
+        assertEquals(0, table.overflowSize());
+        // spreading keeps multiples of the capacity out of one long run:
+        // every value is found within 63 probes instead of up to 600
+        assertTrue(table.probeHistogram().length <= 6);
+    }
+
+    @Test
+    public void overflowMatchesByEquals() {
+        HashIndex<CollidingKey, Integer> index = new HashIndex<>(10);
+        // past the probe limit, ids 2k and 2k + 1 compare equal but are not equal
+        for (int i = 0; i < 200; i++) {
+            assertNull(index.put(new CollidingKey(i, i / 2), i));
+        }
+        assertEquals(200 - HashTable.TREEIFY_THRESHOLD, index.overflowSize());
+        assertTrue(index.lookup(new CollidingKey(101, 50)));
+        assertFalse(index.lookup(new CollidingKey(201, 100)));
+        assertEquals(Integer.valueOf(101), index.get(new CollidingKey(101, 50)));
+        assertEquals(Integer.valueOf(100), index.put(new CollidingKey(100, 50), -100));
+        assertEquals(Integer.valueOf(101), index.get(new CollidingKey(101, 50)));
+        // deleting the value that keys the tree entry keeps its equal partner
+        assertTrue(index.delete(new CollidingKey(100, 50)));
+        assertFalse(index.delete(new CollidingKey(100, 50)));
+        assertTrue(index.lookup(new CollidingKey(101, 50)));
+        assertTrue(index.delete(new CollidingKey(101, 50)));
+        assertFalse(index.lookup(new CollidingKey(101, 50)));
+        assertEquals(198, index.size());
+        assertEquals(198 - HashTable.TREEIFY_THRESHOLD, index.overflowSize());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i / 2 != 50, index.lookup(new CollidingKey(i, i / 2)));
+        }
+    }
+
+    /**
+     * Key whose hash codes all collide, ordered by its rank, which is its id
+     * unless given.
+     */
+    private static class CollidingKey implements Comparable<CollidingKey> {
+        final int id;
+        final int rank;
+
+        CollidingKey(int id) {
+            this(id, id);
+        }
+
+        CollidingKey(int id, int rank) {
+            this.id = id;
+            this.rank = rank;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof CollidingKey && ((CollidingKey) other).id == id;
+        }
+
+        @Override
+        public int compareTo(CollidingKey other) {
+            return Integer.compare(rank, other.rank);
+        }
+    }
+}
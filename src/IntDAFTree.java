@@ -0,0 +1,597 @@
+/*
+ * Name: Yin Lam Lai
+ * PID: A15779757
+ */
+import java.util.*;
+
+/**
+ * Creates an AVL balanced DAF tree keyed by primitive int values. Works like
+ * DAFTree, but keys are compared with primitive operators and never boxed.
+ *
+ * @param <D> Generic type of data
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+public class IntDAFTree<D> {
+
+    // instance variables
+    private DAFNode<D> root; // root node
+    private int nElems; // number of elements stored
+    private int nKeys; // number of unique keys stored
+    private DAFNode<D> rebalanceFrom; // lowest key node touched by a removal
+
+    /**
+     * Creates a DAF Node that takes a key-data pair.
+     *
+     * @param <D> Generic type of data
+     */
+    protected static class DAFNode<D> {
+        int key;
+        D data;
+        DAFNode<D> left, dup, right; // children
+        DAFNode<D> par; // parent
+        int height; // height of the subtree, only meaningful for the first node of a key
+
+        /**
+         * Initializes a DAFNode object.
+         *
+         * @param key  key of the node
+         * @param data data of the node
+         */
+        public DAFNode(int key, D data) {
+            this.key = key;
+            this.data = data;
+            height = 1;
+        }
+
+        /**
+         * Public helper to swap all DAFNode references of this and the given node.
+         * See DAFTree.DAFNode.swapReferencesWith.
+         *
+         * @param other Node to swap with this
+         */
+        public void swapReferencesWith(DAFNode<D> other) {
+            DAFNode<D> temp = this.left;
+            this.left = other.left;
+            other.left = temp;
+            if (this.left != null) {
+                this.left.par = this;
+            }
+            if (other.left != null) {
+                other.left.par = other;
+            }
+
+            temp = this.right;
+            this.right = other.right;
+            other.right = temp;
+            if (this.right != null) {
+                this.right.par = this;
+            }
+            if (other.right != null) {
+                other.right.par = other;
+            }
+
+            int tempHeight = this.height;
+            this.height = other.height;
+            other.height = tempHeight;
+
+            temp = this.par;
+            this.changeParentTo(other, other.par);
+            other.changeParentTo(this, temp);
+        }
+
+        /**
+         * Public helper to change this node's par to the given parent. See
+         * DAFTree.DAFNode.changeParentTo.
+         *
+         * @param child  Old child of the given parent
+         * @param parent New parent of this node
+         */
+        public void changeParentTo(DAFNode<D> child, DAFNode<D> parent) {
+            if (parent == null) {
+                this.par = null;
+                return;
+            }
+
+            if (parent.left == child) {
+                parent.left = this;
+                this.par = parent;
+            } else if (parent.right == child) {
+                parent.right = this;
+                this.par = parent;
+            } else if (parent.dup == child) {
+                parent.dup = this;
+                this.par = parent;
+            }
+        }
+    }
+
+    /**
+     * Initializes an empty IntDAFTree.
+     */
+    public IntDAFTree() {
+        root = null;
+        nElems = 0;
+        nKeys = 0;
+    }
+
+    /**
+     * Returns the total number of elements stored in the tree.
+     *
+     * @return total number of elements stored
+     */
+    public int size() {
+        return nElems;
+    }
+
+    /**
+     * Returns the total number of unique keys stored in the tree.
+     *
+     * @return total number of unique keys stored
+     */
+    public int nUniqueKeys() {
+        return nKeys;
+    }
+
+    /**
+     * Returns the height of the tree, counting only key nodes (not duplicates).
+     *
+     * @return height of the tree, 0 if empty
+     */
+    public int height() {
+        return height(root);
+    }
+
+    /**
+     * Inserts a new node that has given key and data to the tree.
+     *
+     * @param key  key to insert
+     * @param data data to insert
+     * @return the inserted node object, or null if already exist
+     * @throws NullPointerException if data is null
+     */
+    public DAFNode<D> insert(int key, D data) {
+        if (data == null) {
+            throw new NullPointerException();
+        }
+        if (root == null) {
+            root = new DAFNode<>(key, data);
+            nElems++;
+            nKeys++;
+            return root;
+        }
+
+        DAFNode<D> temp = root;
+        while (true) {
+            if (key < temp.key) {
+                if (temp.left == null) {
+                    return attach(temp, true, key, data);
+                }
+                temp = temp.left;
+            } else if (key > temp.key) {
+                if (temp.right == null) {
+                    return attach(temp, false, key, data);
+                }
+                temp = temp.right;
+            } else {
+                // one pass over the chain both checks for the pair and finds the tail
+                while (true) {
+                    if (data.equals(temp.data)) {
+                        return null;
+                    }
+                    if (temp.dup == null) {
+                        break;
+                    }
+                    temp = temp.dup;
+                }
+                DAFNode<D> node = new DAFNode<>(key, data);
+                temp.dup = node;
+                node.par = temp;
+                nElems++;
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Checks if the key is stored in the tree.
+     *
+     * @param key key to search
+     * @return true if found, false otherwise
+     */
+    public boolean lookupAny(int key) {
+        return findKeyNode(key) != null;
+    }
+
+    /**
+     * Checks if the specified key-data pair is stored in the tree.
+     *
+     * @param key  key to search
+     * @param data data to search
+     * @return true if found, false otherwise
+     * @throws NullPointerException if data is null
+     */
+    public boolean lookup(int key, D data) {
+        return findPair(key, data) != null;
+    }
+
+    /**
+     * Returns a LinkedList of all data associated with the given key.
+     *
+     * @param key key to search
+     * @return list of data (empty if no data found)
+     */
+    public LinkedList<D> getAllData(int key) {
+        LinkedList<D> dataList = new LinkedList<>();
+        for (DAFNode<D> temp = findKeyNode(key); temp != null; temp = temp.dup) {
+            dataList.add(temp.data);
+        }
+        return dataList;
+    }
+
+    /**
+     * Returns all keys (including duplicates) in ascending order.
+     *
+     * @return array of keys, empty if the tree is empty
+     */
+    public int[] getAllKeys() {
+        int[] keys = new int[nElems];
+        int n = 0;
+        ArrayDeque<DAFNode<D>> stack = new ArrayDeque<>();
+        DAFNode<D> node = root;
+        while (node != null || !stack.isEmpty()) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+            node = stack.pop();
+            for (DAFNode<D> cur = node; cur != null; cur = cur.dup) {
+                keys[n++] = cur.key;
+            }
+            node = node.right;
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the smallest key stored in the tree.
+     *
+     * @return minimum key
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public int getMinKey() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        return findMin(root).key;
+    }
+
+    /**
+     * Returns the largest key stored in the tree.
+     *
+     * @return maximum key
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public int getMaxKey() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        DAFNode<D> cur = root;
+        while (cur.right != null) {
+            cur = cur.right;
+        }
+        return cur.key;
+    }
+
+    /**
+     * Removes the node with given key and data from the tree.
+     *
+     * @param key  key to remove
+     * @param data data to remove
+     * @return true if removed, false if this node was not found
+     * @throws NullPointerException if data is null
+     */
+    public boolean remove(int key, D data) {
+        DAFNode<D> node = findPair(key, data);
+        if (node == null) {
+            return false;
+        }
+        return remove(node);
+    }
+
+    /**
+     * Removes all nodes with given key from the tree.
+     *
+     * @param key key to remove
+     * @return true if any node is removed, false otherwise
+     */
+    public boolean removeAll(int key) {
+        DAFNode<D> temp = findKeyNode(key);
+        if (temp == null) {
+            return false;
+        }
+        while (temp.dup != null) {
+            remove(temp.dup);
+        }
+        remove(temp);
+        return true;
+    }
+
+    /* PROVIDED HELPERS, MODIFY WITH CAUTION! */
+
+    /**
+     * Public helper to remove the given node in BST's remove style.
+     *
+     * @param cur Node to remove
+     * @return true always
+     */
+    public boolean remove(DAFNode<D> cur) {
+        if (cur.dup == null && (cur.par == null || cur.par.dup != cur))
+            nKeys--;
+
+        rebalanceFrom = null;
+        if (cur == root) {
+            root = removeHelper(cur, cur.key, cur.data);
+            if (root != null) {
+                root.par = null;
+            }
+        } else {
+            removeHelper(cur.par, cur.key, cur.data);
+        }
+        rebalanceUp(rebalanceFrom);
+        rebalanceFrom = null;
+
+        nElems--;
+        return true;
+    }
+
+    /**
+     * Helper to remove node recursively, see DAFTree.removeHelper.
+     *
+     * @param root Root
+     * @param key  To be removed
+     * @param data To be removed
+     * @return The node that replaces the node to be removed
+     */
+    private DAFNode<D> removeHelper(DAFNode<D> root, int key, D data) {
+        if (root == null)
+            return null;
+
+        DAFNode<D> replacedChild = null;
+        if (key < root.key) {
+            root.left = replacedChild = removeHelper(root.left, key, data);
+        } else if (key > root.key) {
+            root.right = replacedChild = removeHelper(root.right, key, data);
+        } else if (!data.equals(root.data)) {
+            root.dup = replacedChild = removeHelper(root.dup, key, data);
+        } else if (root.dup != null) {
+            root.dup.left = root.left;
+            root.dup.right = root.right;
+            root.dup.height = root.height;
+            if (root.left != null) {
+                root.left.par = root.dup;
+            }
+            if (root.right != null) {
+                root.right.par = root.dup;
+            }
+
+            root = root.dup;
+        } else if (root.left != null && root.right != null) {
+            DAFNode<D> successor = findMin(root.right);
+            DAFNode<D> nextRoot = root.right;
+            DAFNode<D> temp;
+
+            root.swapReferencesWith(successor);
+            temp = root;
+            root = successor;
+            successor = temp;
+
+            if (nextRoot == root)
+                nextRoot = successor;
+
+            root.right = replacedChild = removeHelper(nextRoot, successor.key, successor.data);
+        } else {
+            if (root.par == null || root.par.dup != root) {
+                rebalanceFrom = root.par;
+            }
+            root = (root.left != null) ? root.left : root.right;
+        }
+
+        if (replacedChild != null)
+            replacedChild.par = root;
+
+        return root;
+    }
+
+    /**
+     * Helper to find the first node stored under the given key.
+     *
+     * @param key key to search
+     * @return key node, or null if the key is not stored
+     */
+    private DAFNode<D> findKeyNode(int key) {
+        DAFNode<D> temp = root;
+        while (temp != null) {
+            if (key < temp.key) {
+                temp = temp.left;
+            } else if (key > temp.key) {
+                temp = temp.right;
+            } else {
+                return temp;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper to find the node holding the given key-data pair.
+     *
+     * @param key  key to search
+     * @param data data to search
+     * @return matching node, or null if the pair is not stored
+     * @throws NullPointerException if data is null
+     */
+    private DAFNode<D> findPair(int key, D data) {
+        if (data == null) {
+            throw new NullPointerException();
+        }
+        for (DAFNode<D> temp = findKeyNode(key); temp != null; temp = temp.dup) {
+            if (data.equals(temp.data)) {
+                return temp;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper to hang a new key node under the given parent and rebalance.
+     *
+     * @param parent Key node that gets the new child
+     * @param left   true to attach as the left child, false for the right
+     * @param key    key of the new node
+     * @param data   data of the new node
+     * @return the new node
+     */
+    private DAFNode<D> attach(DAFNode<D> parent, boolean left, int key, D data) {
+        DAFNode<D> node = new DAFNode<>(key, data);
+        if (left) {
+            parent.left = node;
+        } else {
+            parent.right = node;
+        }
+        node.par = parent;
+        nElems++;
+        nKeys++;
+        rebalanceUp(parent);
+        return node;
+    }
+
+    /**
+     * Helper to update heights from the given key node up to the root, rotating
+     * every node that became unbalanced on the way.
+     *
+     * @param node Lowest key node whose subtree changed, may be null
+     */
+    private void rebalanceUp(DAFNode<D> node) {
+        while (node != null) {
+            updateHeight(node);
+            node = rebalance(node);
+            node = node.par;
+        }
+    }
+
+    /**
+     * Helper to restore the AVL property at the given key node.
+     *
+     * @param node Key node to rebalance
+     * @return The node that now roots this subtree
+     */
+    private DAFNode<D> rebalance(DAFNode<D> node) {
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    /**
+     * Helper to rotate the subtree at the given key node to the left.
+     *
+     * @param node Key node whose right child moves up
+     * @return The new root of this subtree
+     */
+    private DAFNode<D> rotateLeft(DAFNode<D> node) {
+        DAFNode<D> child = node.right;
+        node.right = child.left;
+        if (node.right != null) {
+            node.right.par = node;
+        }
+        replaceChild(node, child);
+        child.left = node;
+        node.par = child;
+        updateHeight(node);
+        updateHeight(child);
+        return child;
+    }
+
+    /**
+     * Helper to rotate the subtree at the given key node to the right.
+     *
+     * @param node Key node whose left child moves up
+     * @return The new root of this subtree
+     */
+    private DAFNode<D> rotateRight(DAFNode<D> node) {
+        DAFNode<D> child = node.left;
+        node.left = child.right;
+        if (node.left != null) {
+            node.left.par = node;
+        }
+        replaceChild(node, child);
+        child.right = node;
+        node.par = child;
+        updateHeight(node);
+        updateHeight(child);
+        return child;
+    }
+
+    /**
+     * Helper to hang the replacement in place of the given key node under its
+     * parent, or make it the root.
+     *
+     * @param node        Key node being replaced
+     * @param replacement Node taking its place
+     */
+    private void replaceChild(DAFNode<D> node, DAFNode<D> replacement) {
+        DAFNode<D> parent = node.par;
+        replacement.par = parent;
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.left == node) {
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
+        }
+    }
+
+    /**
+     * Helper to recompute the height of a key node from its children.
+     *
+     * @param node Key node to update
+     */
+    private void updateHeight(DAFNode<D> node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+    }
+
+    /**
+     * Helper to return the height of a subtree.
+     *
+     * @param node Subtree root, may be null
+     * @return height of the subtree, 0 if null
+     */
+    private int height(DAFNode<D> node) {
+        return (node == null) ? 0 : node.height;
+    }
+
+    /**
+     * Helper to return the smallest node from a given subroot.
+     *
+     * @param root Smallest node will be found from this node
+     * @return The smallest node from the 'root' node
+     */
+    private DAFNode<D> findMin(DAFNode<D> root) {
+        DAFNode<D> cur = root;
+        while (cur.left != null)
+            cur = cur.left;
+        return cur;
+    }
+
+}
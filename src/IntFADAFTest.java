@@ -0,0 +1,85 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntFADAFTest {
+
+    @Test
+    public void insertRemoveAndLookup() {
+        IntFADAF<String> fadaf = new IntFADAF<>(10);
+        assertTrue(fadaf.insert(5, "a"));
+        assertTrue(fadaf.insert(5, "b"));
+        assertFalse(fadaf.insert(5, "a"));
+        assertTrue(fadaf.insert(-3, "a"));
+        assertTrue(fadaf.insert(Integer.valueOf(9), "c"));
+        assertEquals(4, fadaf.size());
+        assertEquals(3, fadaf.nUniqueKeys());
+        assertTrue(fadaf.lookupAny(-3));
+        assertTrue(fadaf.lookup(5, "b"));
+        assertEquals(Arrays.asList("a", "b"), fadaf.getAllData(5));
+        assertArrayEquals(new int[] {-3, 5, 5, 9}, fadaf.getAllKeys());
+        assertEquals(-3, fadaf.getMinKey());
+        assertEquals(9, fadaf.getMaxKey());
+
+        assertTrue(fadaf.remove(5, "a"));
+        assertTrue(fadaf.lookupAny(5));
+        assertTrue(fadaf.remove(5, "b"));
+        assertFalse(fadaf.lookupAny(5));
+        assertTrue(fadaf.removeAll(Integer.valueOf(-3)));
+        assertFalse(fadaf.removeAll(-3));
+        assertEquals(1, fadaf.size());
+    }
+
+    @Test
+    public void sortedKeysStayBalanced() {
+        IntFADAF<String> fadaf = new IntFADAF<>(10);
+        for (int i = 0; i < 100000; i++) {
+            fadaf.insert(i, "v");
+        }
+        for (int i = 0; i < 100000; i += 3) {
+            assertTrue(fadaf.removeAll(i));
+        }
+        assertTrue(fadaf.tree.height() <= 25);
+        for (int i = 0; i < 100000; i++) {
+            assertEquals(i % 3 != 0, fadaf.lookupAny(i));
+        }
+    }
+
+    @Test
+    public void lastPairLeavesWithItsKey() {
+        IntFADAF<String> fadaf = new IntFADAF<>(10);
+        int[] keys = {Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE};
+        for (int key : keys) {
+            fadaf.insert(key, "a");
+            fadaf.insert(key, "b");
+        }
+        for (int key : keys) {
+            assertTrue(fadaf.remove(key, "a"));
+            assertTrue(fadaf.lookupAny(key));
+            assertFalse(fadaf.remove(key, "a"));
+            assertTrue(fadaf.remove(key, "b"));
+            // the key set drops the key together with its last pair
+            assertFalse(fadaf.lookupAny(key));
+            assertTrue(fadaf.insert(key, "c"));
+        }
+        assertEquals(4, fadaf.size());
+        assertEquals(Integer.MIN_VALUE, fadaf.getMinKey());
+        assertEquals(Integer.MAX_VALUE, fadaf.getMaxKey());
+    }
+
+    @Test
+    public void literalsOnIntegerData() {
+        IntFADAF<Integer> fadaf = new IntFADAF<>(10);
+        assertTrue(fadaf.insert(5, 7));
+        assertTrue(fadaf.insert(5, 8));
+        assertFalse(fadaf.insert(5, 7));
+        assertTrue(fadaf.lookup(5, 8));
+        assertTrue(fadaf.lookupAny(5));
+        assertEquals(Arrays.asList(7, 8), fadaf.getAllData(5));
+        assertTrue(fadaf.remove(5, 7));
+        assertTrue(fadaf.removeAll(5));
+        assertEquals(0, fadaf.size());
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Name: Yin Lam Lai
+ * PID: A15779757
+ */
+
+/**
+ * Creates a Hashtable of int values. Same open-addressing layout as HashTable,
+ * but values sit in an int[] so nothing is boxed; a parallel boolean[] marks
+ * which slots are in use.
+ *
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+public class IntHashTable {
+
+    // instance variables
+    private int[] table; // data storage
+    private boolean[] used; // whether the matching slot of table holds a value
+    private int nElems; // number of elements stored
+
+    /**
+     * Constructor for hash table.
+     *
+     * @param capacity initial capacity, rounded up to a power of two
+     * @throws IllegalArgumentException if capacity is less than the minimum
+     *                                  threshold
+     */
+    public IntHashTable(int capacity) {
+        if (capacity < HashTable.MIN_CAPACITY) {
+            throw new IllegalArgumentException();
+        }
+        int length = Integer.highestOneBit(Math.min(capacity, HashTable.MAX_CAPACITY) - 1) << 1;
+        table = new int[length];
+        used = new boolean[length];
+        nElems = 0;
+    }
+
+    /**
+     * Insert the value into the hash table.
+     *
+     * @param value value to insert
+     * @return true if the value was inserted, false if the value was already
+     *         present
+     * @throws IllegalStateException if the table is at its largest capacity
+     *                               and full
+     */
+    public boolean insert(int value) {
+        if (lookup(value)) {
+            return false;
+        }
+        if ((double) nElems / capacity() > HashTable.MAX_LOAD_FACTOR) {
+            if (capacity() < HashTable.MAX_CAPACITY) {
+                rehash();
+            } else if (nElems + 1 == capacity()) {
+                // one slot stays empty so every probe ends
+                throw new IllegalStateException("hash table is full");
+            }
+        }
+        place(value);
+        nElems++;
+        return true;
+    }
+
+    /**
+     * Delete the given value from the hash table.
+     *
+     * @param value value to delete
+     * @return true if the value was deleted, false if the value was not found
+     */
+    public boolean delete(int value) {
+        int index = indexOf(value);
+        if (index < 0) {
+            return false;
+        }
+
+        // backward-shift, see HashTable.delete
+        int hole = index;
+        int cur = nextIndex(hole);
+        while (used[cur]) {
+            int home = hashValue(table[cur]);
+            if (distance(home, cur) >= distance(hole, cur)) {
+                table[hole] = table[cur];
+                hole = cur;
+            }
+            cur = nextIndex(cur);
+        }
+        used[hole] = false;
+        nElems--;
+        return true;
+    }
+
+    /**
+     * Check if the given value is present in the hash table.
+     *
+     * @param value value to look up
+     * @return true if the value was found, false if the value was not found
+     */
+    public boolean lookup(int value) {
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * Get the total number of elements stored in the hash table.
+     *
+     * @return total number of elements
+     */
+    public int size() {
+        return nElems;
+    }
+
+    /**
+     * Get the capacity of the hash table.
+     *
+     * @return capacity
+     */
+    public int capacity() {
+        return table.length;
+    }
+
+    /**
+     * Hash function, see HashTable.spread. Sequential or strided keys would
+     * otherwise fill one long probe run.
+     *
+     * @param value input
+     * @return hash value (index)
+     */
+    private int hashValue(int value) {
+        return HashTable.spread(value) & (table.length - 1);
+    }
+
+    /**
+     * Helper to find the slot holding the given value.
+     *
+     * @param value value to find
+     * @return slot index, or -1 if the value is not stored
+     */
+    private int indexOf(int value) {
+        int index = hashValue(value);
+        while (used[index]) {
+            if (table[index] == value) {
+                return index;
+            }
+            index = nextIndex(index);
+        }
+        return -1;
+    }
+
+    /**
+     * Helper to put a value known to be absent into the first free slot of its
+     * probe sequence.
+     *
+     * @param value value to place
+     */
+    private void place(int value) {
+        int index = hashValue(value);
+        while (used[index]) {
+            index = nextIndex(index);
+        }
+        table[index] = value;
+        used[index] = true;
+    }
+
+    /**
+     * Helper to return the slot after the given one, wrapping around.
+     *
+     * @param index current slot
+     * @return next slot in the probe sequence
+     */
+    private int nextIndex(int index) {
+        return (index + 1) & (table.length - 1);
+    }
+
+    /**
+     * Helper to return how many probes it takes to get from one slot to another.
+     *
+     * @param from start slot
+     * @param to   end slot
+     * @return forward distance between the slots
+     */
+    private int distance(int from, int to) {
+        return (to - from) & (table.length - 1);
+    }
+
+    /**
+     * Grow the arrays by HashTable.RESIZE_FACTOR, up to
+     * HashTable.MAX_CAPACITY, and rehash all values in one pass.
+     */
+    private void rehash() {
+        int[] oldTable = table;
+        boolean[] oldUsed = used;
+        table = new int[Math.min(oldTable.length, HashTable.MAX_CAPACITY / HashTable.RESIZE_FACTOR)
+                * HashTable.RESIZE_FACTOR];
+        used = new boolean[table.length];
+        for (int n = 0; n < oldTable.length; n++) {
+            if (oldUsed[n]) {
+                place(oldTable[n]);
+            }
+        }
+    }
+
+}
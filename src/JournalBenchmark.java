@@ -0,0 +1,101 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures writer throughput of a FADAF behind one lock against
+ * JournaledFADAF, returning before the commit and waiting for it, for a
+ * range of commit windows. Run it with -t 1, -t 4, ... to see more writers
+ * share each group commit.
+ *
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class JournalBenchmark {
+
+    @Param({"100000"})
+    int size;
+
+    @Param({"200", "2000"})
+    long commitMicros;
+
+    Integer[] keys;
+    FADAF<Integer, Integer> inMemory;
+    JournaledFADAF<Integer, Integer> async;
+    JournaledFADAF<Integer, Integer> sync;
+    Path dir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        keys = BenchmarkData.distinctKeys(size, 42);
+        dir = Files.createTempDirectory("journal");
+        long commitNanos = TimeUnit.MICROSECONDS.toNanos(commitMicros);
+        inMemory = new FADAF<>(size);
+        async = new JournaledFADAF<>(dir.resolve("async"), Codec.INTEGER, Codec.INTEGER, commitNanos, false);
+        sync = new JournaledFADAF<>(dir.resolve("sync"), Codec.INTEGER, Codec.INTEGER, commitNanos, true);
+        for (int n = 0; n < keys.length; n++) {
+            inMemory.insert(keys[n], n);
+            async.insert(keys[n], n);
+            sync.insert(keys[n], n);
+        }
+        async.checkpoint();
+        sync.checkpoint();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        async.close();
+        sync.close();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private Integer randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(size)];
+    }
+
+    /**
+     * Adds and removes one extra pair under an existing key, so the size
+     * stays constant.
+     */
+    @Benchmark
+    public boolean inMemoryInsertRemove() {
+        Integer key = randomKey();
+        int data = -1 - ThreadLocalRandom.current().nextInt(1 << 20);
+        synchronized (inMemory) {
+            inMemory.insert(key, data);
+            return inMemory.remove(key, data);
+        }
+    }
+
+    @Benchmark
+    public boolean journaledInsertRemove() {
+        Integer key = randomKey();
+        int data = -1 - ThreadLocalRandom.current().nextInt(1 << 20);
+        async.insert(key, data);
+        return async.remove(key, data);
+    }
+
+    @Benchmark
+    public boolean syncJournaledInsertRemove() {
+        Integer key = randomKey();
+        int data = -1 - ThreadLocalRandom.current().nextInt(1 << 20);
+        sync.insert(key, data);
+        return sync.remove(key, data);
+    }
+}
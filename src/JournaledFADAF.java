@@ -0,0 +1,556 @@
+/*
+ * Name: Yin Lam Lai
+ * PID: A15779757
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * Creates a FADAF whose insert, remove and removeAll survive a crash. It keeps
+ * a snapshot and a write-ahead journal in one directory. Every mutation that
+ * changes the FADAF appends a small record to an in-memory buffer. A
+ * background thread writes the buffer to the journal and fsyncs it in one
+ * group commit per commit window, so many mutations share one fsync.
+ *
+ * By default a mutation returns as soon as its record is buffered and is
+ * durable within one commit window; flush waits for everything so far. With
+ * syncWrites every mutation waits for its own group commit instead.
+ * checkpoint writes a new snapshot and empties the journal. Opening the
+ * directory loads the last snapshot and replays the journal over it, up to
+ * the first torn or corrupt record.
+ *
+ * All methods are synchronized on this object; a mutation waiting for its
+ * commit does not hold the lock.
+ *
+ * @param <K> Generic type of key
+ * @param <D> Generic type of data
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+public class JournaledFADAF<K extends Comparable<? super K>, D> implements AutoCloseable {
+
+    // constants
+    public static final String SNAPSHOT_FILE = "fadaf.snapshot"; // snapshot name in the directory
+    public static final String JOURNAL_FILE = "fadaf.journal"; // journal name in the directory
+    public static final long DEFAULT_COMMIT_NANOS = TimeUnit.MILLISECONDS.toNanos(2); // default commit window
+    private static final int JOURNAL_BUFFER = 1 << 16; // initial bytes of the record buffers
+    private static final int RECORD_HEADER = 2 * Integer.BYTES; // record length and CRC32
+    private static final byte INSERT = 1; // record type of insert
+    private static final byte REMOVE = 2; // record type of remove
+    private static final byte REMOVE_ALL = 3; // record type of removeAll
+
+    // instance variables
+    private final FADAF<K, D> fadaf;
+    private final Path dir;
+    private final Codec<K> keyCodec;
+    private final Codec<D> dataCodec;
+    private final long commitNanos; // how long a group gathers before its fsync
+    private final boolean syncWrites; // whether each mutation waits for its commit
+    private final FileChannel journal;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer pending; // records not handed to the commit thread yet
+    private ByteBuffer spare; // buffer the commit thread returns, reused for pending
+    private long appendedSeq; // number of records appended
+    private long durableSeq; // number of records known to be on disk
+    private boolean committing; // whether the commit thread is writing a group
+    private boolean closed;
+    private IOException failure; // first error of the commit thread
+    private final Thread committer;
+
+    /**
+     * Opens the journaled FADAF in the given directory with the default commit
+     * window, returning from mutations before their commit.
+     *
+     * @param dir       directory of the snapshot and journal, created if needed
+     * @param keyCodec  codec of the keys
+     * @param dataCodec codec of the data
+     * @throws IOException          if the directory cannot be read or written
+     * @throws NullPointerException if any argument is null
+     */
+    public JournaledFADAF(Path dir, Codec<K> keyCodec, Codec<D> dataCodec) throws IOException {
+        this(dir, keyCodec, dataCodec, DEFAULT_COMMIT_NANOS, false);
+    }
+
+    /**
+     * Opens the journaled FADAF in the given directory. The last snapshot is
+     * loaded, if any, and the journal is replayed over it; a torn record at
+     * the end of the journal is cut off.
+     *
+     * @param dir         directory of the snapshot and journal, created if
+     *                    needed
+     * @param keyCodec    codec of the keys
+     * @param dataCodec   codec of the data
+     * @param commitNanos commit window, the longest a record waits before its
+     *                    group is written and fsynced
+     * @param syncWrites  true to make every mutation wait for its commit
+     * @throws IOException              if the directory cannot be read or
+     *                                  written, or the snapshot is corrupt
+     * @throws NullPointerException     if any argument is null
+     * @throws IllegalArgumentException if commitNanos is negative
+     */
+    public JournaledFADAF(Path dir, Codec<K> keyCodec, Codec<D> dataCodec, long commitNanos,
+            boolean syncWrites) throws IOException {
+        if (keyCodec == null || dataCodec == null) {
+            throw new NullPointerException();
+        }
+        if (commitNanos < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.dir = Files.createDirectories(dir);
+        this.keyCodec = keyCodec;
+        this.dataCodec = dataCodec;
+        this.commitNanos = commitNanos;
+        this.syncWrites = syncWrites;
+        Path snapshot = dir.resolve(SNAPSHOT_FILE);
+        fadaf = Files.exists(snapshot) ? FADAF.openSnapshot(snapshot, keyCodec, dataCodec)
+                : new FADAF<>(HashTable.MIN_CAPACITY);
+        journal = FileChannel.open(dir.resolve(JOURNAL_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long valid = replay();
+            journal.truncate(valid);
+            journal.position(valid);
+        } catch (IOException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+        pending = ByteBuffer.allocate(JOURNAL_BUFFER);
+        spare = ByteBuffer.allocate(JOURNAL_BUFFER);
+        committer = new Thread(this::commitLoop, "fadaf-journal");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Returns the total number of key-data pairs stored.
+     *
+     * @return count of key-data pairs
+     */
+    public synchronized int size() {
+        return fadaf.size();
+    }
+
+    /**
+     * Returns the total number of unique keys stored.
+     *
+     * @return count of unique keys
+     */
+    public synchronized int nUniqueKeys() {
+        return fadaf.nUniqueKeys();
+    }
+
+    /**
+     * Insert the given key-data pair and journal it.
+     *
+     * @param key  key to insert
+     * @param data data to insert
+     * @return true if the pair is inserted, false if the pair was already present
+     * @throws NullPointerException  if key or data is null
+     * @throws IllegalStateException if the journal is closed
+     * @throws UncheckedIOException  if the journal failed to write
+     */
+    public boolean insert(K key, D data) {
+        long seq;
+        synchronized (this) {
+            checkWritable();
+            if (!fadaf.insert(key, data)) {
+                return false;
+            }
+            seq = append(INSERT, key, data);
+        }
+        if (syncWrites) {
+            awaitDurable(seq);
+        }
+        return true;
+    }
+
+    /**
+     * Remove the specified pair and journal it.
+     *
+     * @param key  key of the pair to remove
+     * @param data data of the pair to remove
+     * @return true if this pair is removed, false if this pair is not present
+     * @throws NullPointerException  if key or data is null
+     * @throws IllegalStateException if the journal is closed
+     * @throws UncheckedIOException  if the journal failed to write
+     */
+    public boolean remove(K key, D data) {
+        long seq;
+        synchronized (this) {
+            checkWritable();
+            if (!fadaf.remove(key, data)) {
+                return false;
+            }
+            seq = append(REMOVE, key, data);
+        }
+        if (syncWrites) {
+            awaitDurable(seq);
+        }
+        return true;
+    }
+
+    /**
+     * Remove all key-data pairs that share the given key and journal it.
+     *
+     * @param key key to remove
+     * @return true if at least 1 pair is removed, false otherwise
+     * @throws NullPointerException  if the key is null
+     * @throws IllegalStateException if the journal is closed
+     * @throws UncheckedIOException  if the journal failed to write
+     */
+    public boolean removeAll(K key) {
+        long seq;
+        synchronized (this) {
+            checkWritable();
+            if (!fadaf.removeAll(key)) {
+                return false;
+            }
+            seq = append(REMOVE_ALL, key, null);
+        }
+        if (syncWrites) {
+            awaitDurable(seq);
+        }
+        return true;
+    }
+
+    /**
+     * Check if any pair with the given key is stored.
+     *
+     * @param key key to lookup
+     * @return true if any pair is found, false otherwise
+     * @throws NullPointerException if the key is null
+     */
+    public synchronized boolean lookupAny(K key) {
+        return fadaf.lookupAny(key);
+    }
+
+    /**
+     * Check if a pair with the given key and data is stored.
+     *
+     * @param key  key of the pair to lookup
+     * @param data data of the pair to lookup
+     * @return true if the pair is found, false otherwise
+     * @throws NullPointerException if key or data is null
+     */
+    public synchronized boolean lookup(K key, D data) {
+        return fadaf.lookup(key, data);
+    }
+
+    /**
+     * Return a LinkedList of data paired with the given key.
+     *
+     * @param key target key
+     * @return a list of data
+     * @throws NullPointerException if the key is null
+     */
+    public synchronized LinkedList<D> getAllData(K key) {
+        return fadaf.getAllData(key);
+    }
+
+    /**
+     * Return a LinkedList of all keys (including duplicates) in ascending order.
+     *
+     * @return a list of all keys, empty list if no keys stored
+     */
+    public synchronized LinkedList<K> getAllKeys() {
+        return fadaf.getAllKeys();
+    }
+
+    /**
+     * Waits until every mutation made so far is on disk.
+     *
+     * @throws IllegalStateException if the journal is closed
+     * @throws UncheckedIOException  if the journal failed to write
+     */
+    public void flush() {
+        long seq;
+        synchronized (this) {
+            checkWritable();
+            seq = appendedSeq;
+        }
+        awaitDurable(seq);
+    }
+
+    /**
+     * Writes a snapshot of the current pairs and empties the journal, so the
+     * next open has nothing to replay. The journal is only truncated once the
+     * snapshot and its directory entry are on disk. Mutations wait while it
+     * runs. Replay is idempotent, so a crash between the two steps only
+     * replays records the snapshot already holds.
+     *
+     * @throws IOException           if the snapshot or journal cannot be
+     *                               written
+     * @throws IllegalStateException if the journal is closed
+     * @throws UncheckedIOException  if the journal failed to write earlier
+     */
+    public synchronized void checkpoint() throws IOException {
+        checkWritable();
+        boolean interrupted = false;
+        while (committing) {
+            interrupted |= waitForChange();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        fadaf.writeSnapshot(dir.resolve(SNAPSHOT_FILE), keyCodec, dataCodec);
+        // buffered records are in the snapshot now, drop them with the journal
+        journal.truncate(0);
+        journal.force(true);
+        pending.clear();
+        durableSeq = appendedSeq;
+        notifyAll();
+    }
+
+    /**
+     * Commits every buffered record, stops the commit thread and closes the
+     * journal. Further mutations throw IllegalStateException.
+     *
+     * @throws IOException if the last commit or closing the journal fails
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        boolean interrupted = false;
+        while (committer.isAlive()) {
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        journal.close();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Helper to replay the journal over the loaded snapshot, stopping at the
+     * first record that is cut short, claims more bytes than the journal has
+     * left or fails its checksum.
+     *
+     * @return length of the valid prefix of the journal
+     * @throws IOException if the journal cannot be read
+     */
+    private long replay() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(JOURNAL_BUFFER);
+        buf.flip();
+        long valid = 0;
+        while (true) {
+            buf = fill(buf, RECORD_HEADER);
+            if (buf == null) {
+                break;
+            }
+            int length = buf.getInt(buf.position());
+            int checksum = buf.getInt(buf.position() + Integer.BYTES);
+            // a length running past the end of the journal is a torn or corrupt tail
+            if (length <= 0 || length > journal.size() - valid - RECORD_HEADER
+                    || (buf = fill(buf, RECORD_HEADER + length)) == null) {
+                break;
+            }
+            crc.reset();
+            crc.update(buf.array(), buf.position() + RECORD_HEADER, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            buf.position(buf.position() + RECORD_HEADER);
+            ByteBuffer record = buf.slice(buf.position(), length);
+            byte type = record.get();
+            K key = keyCodec.decode(record);
+            if (type == INSERT) {
+                fadaf.insert(key, dataCodec.decode(record));
+            } else if (type == REMOVE) {
+                fadaf.remove(key, dataCodec.decode(record));
+            } else if (type == REMOVE_ALL) {
+                fadaf.removeAll(key);
+            } else {
+                break;
+            }
+            buf.position(buf.position() + length);
+            valid += RECORD_HEADER + length;
+        }
+        return valid;
+    }
+
+    /**
+     * Helper to make the given number of journal bytes readable from the
+     * replay buffer, reading more of the journal as needed.
+     *
+     * @param buf   replay buffer, in read mode
+     * @param bytes bytes needed
+     * @return a buffer with that many bytes left, or null if the journal ends
+     *         first
+     * @throws IOException if the journal cannot be read
+     */
+    private ByteBuffer fill(ByteBuffer buf, int bytes) throws IOException {
+        if (buf.remaining() >= bytes) {
+            return buf;
+        }
+        if (bytes > journal.size()) {
+            return null;
+        }
+        if (buf.capacity() < bytes) {
+            buf = ByteBuffer.allocate(bytes).put(buf);
+        } else {
+            buf.compact();
+        }
+        while (buf.position() < bytes) {
+            if (journal.read(buf) < 0) {
+                return null;
+            }
+        }
+        return buf.flip();
+    }
+
+    /**
+     * Helper to append a record to the pending buffer, waking the commit
+     * thread if the buffer was empty. Called with the lock held.
+     *
+     * @param type record type
+     * @param key  key of the mutation
+     * @param data data of the mutation, or null for removeAll
+     * @return sequence number of the record
+     */
+    private long append(byte type, K key, D data) {
+        int size = RECORD_HEADER + 1 + keyCodec.size(key) + ((data == null) ? 0 : dataCodec.size(data));
+        if (pending.remaining() < size) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(2 * pending.capacity(), pending.position() + size));
+            pending.flip();
+            pending = grown.put(pending);
+        }
+        int start = pending.position();
+        boolean wasEmpty = start == 0;
+        pending.position(start + RECORD_HEADER);
+        pending.put(type);
+        keyCodec.encode(key, pending);
+        if (data != null) {
+            dataCodec.encode(data, pending);
+        }
+        int length = pending.position() - start - RECORD_HEADER;
+        crc.reset();
+        crc.update(pending.array(), start + RECORD_HEADER, length);
+        pending.putInt(start, length).putInt(start + Integer.BYTES, (int) crc.getValue());
+        if (wasEmpty) {
+            notifyAll();
+        }
+        return ++appendedSeq;
+    }
+
+    /**
+     * Body of the commit thread. Once records are pending it lets the group
+     * gather for one commit window, then writes and fsyncs it outside the
+     * lock while mutations keep filling the other buffer.
+     */
+    private void commitLoop() {
+        while (true) {
+            synchronized (this) {
+                while (pending.position() == 0 && !closed) {
+                    waitForChange();
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+            }
+            if (commitNanos > 0) {
+                LockSupport.parkNanos(commitNanos);
+            }
+            ByteBuffer group;
+            long seq;
+            synchronized (this) {
+                group = pending;
+                pending = spare;
+                seq = appendedSeq;
+                committing = true;
+            }
+            IOException error = null;
+            try {
+                group.flip();
+                while (group.hasRemaining()) {
+                    journal.write(group);
+                }
+                journal.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (this) {
+                committing = false;
+                spare = group.clear();
+                if (error != null) {
+                    failure = error;
+                    notifyAll();
+                    return;
+                }
+                durableSeq = Math.max(durableSeq, seq);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Helper to wait until the given record is on disk.
+     *
+     * @param seq sequence number of the record
+     * @throws UncheckedIOException if the journal failed to write
+     */
+    private synchronized void awaitDurable(long seq) {
+        boolean interrupted = false;
+        while (durableSeq < seq && failure == null) {
+            interrupted |= waitForChange();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (durableSeq < seq) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * Helper to reject mutations once the journal is closed or broken. Called
+     * with the lock held.
+     *
+     * @throws IllegalStateException if the journal is closed
+     * @throws UncheckedIOException  if the journal failed to write
+     */
+    private void checkWritable() {
+        if (closed) {
+            throw new IllegalStateException();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * Helper to wait on this object until notified. Called with the lock held.
+     *
+     * @return true if the wait was interrupted
+     */
+    private boolean waitForChange() {
+        try {
+            wait();
+            return false;
+        } catch (InterruptedException e) {
+            return true;
+        }
+    }
+}
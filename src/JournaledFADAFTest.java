@@ -0,0 +1,123 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournaledFADAFTest {
+
+    @Test
+    public void replayAfterReopen() throws IOException {
+        Path dir = Files.createTempDirectory("journal");
+        try {
+            try (JournaledFADAF<Integer, String> journaled =
+                         new JournaledFADAF<>(dir, Codec.INTEGER, Codec.STRING)) {
+                for (int i = 0; i < 100; i++) {
+                    assertTrue(journaled.insert(i % 10, "d" + i));
+                }
+                assertFalse(journaled.insert(1, "d1"));
+                assertTrue(journaled.remove(1, "d11"));
+                assertTrue(journaled.removeAll(2));
+                assertFalse(journaled.removeAll(2));
+            }
+            try (JournaledFADAF<Integer, String> reopened =
+                         new JournaledFADAF<>(dir, Codec.INTEGER, Codec.STRING)) {
+                assertEquals(89, reopened.size());
+                assertEquals(9, reopened.nUniqueKeys());
+                assertFalse(reopened.lookupAny(2));
+                assertFalse(reopened.lookup(1, "d11"));
+                assertEquals(Arrays.asList("d1", "d21", "d31", "d41", "d51", "d61", "d71", "d81", "d91"),
+                        reopened.getAllData(1));
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    public void tornTailIsCutOff() throws IOException {
+        Path dir = Files.createTempDirectory("journal");
+        try {
+            try (JournaledFADAF<Long, Long> journaled =
+                         new JournaledFADAF<>(dir, Codec.LONG, Codec.LONG, 0, true)) {
+                journaled.insert(1L, 10L);
+                journaled.insert(2L, 20L);
+            }
+            Path log = dir.resolve(JournaledFADAF.JOURNAL_FILE);
+            long length = Files.size(log);
+            // half a record, as if the process died mid-write
+            Files.write(log, new byte[] {0, 0, 0, 17, 1, 2}, StandardOpenOption.APPEND);
+            try (JournaledFADAF<Long, Long> reopened = new JournaledFADAF<>(dir, Codec.LONG, Codec.LONG)) {
+                assertEquals(2, reopened.size());
+                assertEquals(length, Files.size(log));
+                assertTrue(reopened.insert(3L, 30L));
+            }
+            try (JournaledFADAF<Long, Long> reopened = new JournaledFADAF<>(dir, Codec.LONG, Codec.LONG)) {
+                assertTrue(reopened.lookup(3L, 30L));
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    public void corruptLengthIsCutOff() throws IOException {
+        Path dir = Files.createTempDirectory("journal");
+        try {
+            try (JournaledFADAF<Long, Long> journaled = new JournaledFADAF<>(dir, Codec.LONG, Codec.LONG)) {
+                journaled.insert(1L, 10L);
+            }
+            Path log = dir.resolve(JournaledFADAF.JOURNAL_FILE);
+            long length = Files.size(log);
+            // a header whose length would overflow RECORD_HEADER + length
+            Files.write(log, new byte[] {0x7F, -1, -1, -4, 0, 0, 0, 0}, StandardOpenOption.APPEND);
+            try (JournaledFADAF<Long, Long> reopened = new JournaledFADAF<>(dir, Codec.LONG, Codec.LONG)) {
+                assertEquals(1, reopened.size());
+                assertEquals(length, Files.size(log));
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    public void checkpointEmptiesJournal() throws IOException {
+        Path dir = Files.createTempDirectory("journal");
+        try {
+            JournaledFADAF<String, Integer> journaled = new JournaledFADAF<>(dir, Codec.STRING, Codec.INTEGER);
+            for (int i = 0; i < 1000; i++) {
+                journaled.insert("key" + (i % 50), i);
+            }
+            journaled.checkpoint();
+            assertEquals(0, Files.size(dir.resolve(JournaledFADAF.JOURNAL_FILE)));
+            journaled.removeAll("key7");
+            journaled.flush();
+            assertTrue(Files.size(dir.resolve(JournaledFADAF.JOURNAL_FILE)) > 0);
+            journaled.close();
+            assertThrows(IllegalStateException.class, () -> journaled.insert("key7", 1));
+
+            try (JournaledFADAF<String, Integer> reopened =
+                         new JournaledFADAF<>(dir, Codec.STRING, Codec.INTEGER)) {
+                assertEquals(980, reopened.size());
+                assertEquals(49, reopened.nUniqueKeys());
+                assertFalse(reopened.lookupAny("key7"));
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    private static void deleteAll(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Name: Yin Lam Lai
+ * PID: A15779757
+ */
+
+import java.util.*;
+
+/**
+ * Creates a FADAF structure keyed by primitive long values, using a
+ * LongHashTable and a LongDAFTree so keys are never boxed on the hot path.
+ * A Long key is unboxed by the caller; there are no boxed overloads, so
+ * calls with long literals are never ambiguous.
+ *
+ * @param <D> Generic type of data
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+public class LongFADAF<D> {
+
+    LongDAFTree<D> tree;
+    LongHashTable hashTable;
+
+    /**
+     * Constructor for LongFADAF.
+     * 
+     * @param capacity initial capacity
+     * @throws IllegalArgumentException if capacity is less than the minimum
+     *                                  threshold
+     */
+    public LongFADAF(int capacity) {
+        tree = new LongDAFTree<>();
+        hashTable = new LongHashTable(capacity);
+    }
+
+    /**
+     * Returns the total number of key-data pairs stored.
+     * 
+     * @return count of key-data pairs
+     */
+    public int size() {
+        return tree.size();
+    }
+
+    /**
+     * Returns the total number of unique keys stored.
+     * 
+     * @return count of unique keys
+     */
+    public int nUniqueKeys() {
+        return tree.nUniqueKeys();
+    }
+
+    /**
+     * Insert the given key-data pair.
+     * 
+     * @param key  key to insert
+     * @param data data to insert
+     * @return true if the pair is inserted, false if the pair was already present
+     * @throws NullPointerException if data is null
+     */
+    public boolean insert(long key, D data) {
+        int keys = tree.nUniqueKeys();
+        if (tree.insert(key, data) == null) {
+            return false;
+        }
+        if (tree.nUniqueKeys() != keys) {
+            // only a new key needs the hash set, and is known to be absent
+            hashTable.insert(key);
+        }
+        return true;
+    }
+
+    /**
+     * Remove all key-data pairs that share the given key.
+     * 
+     * @param key key to remove
+     * @return true if at least 1 pair is removed, false otherwise
+     */
+    public boolean removeAll(long key) {
+        if (hashTable.delete(key)) {
+            tree.removeAll(key);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove the specified pair.
+     * 
+     * @param key  key of the pair to remove
+     * @param data data of the pair to remove
+     * @return true if this pair is removed, false if this pair is not present
+     * @throws NullPointerException if data is null
+     */
+    public boolean remove(long key, D data) {
+        int keys = tree.nUniqueKeys();
+        if (!tree.remove(key, data)) {
+            return false;
+        }
+        if (tree.nUniqueKeys() != keys) {
+            // the last pair of the key left, no second descent needed
+            hashTable.delete(key);
+        }
+        return true;
+    }
+
+    /**
+     * Check if any pair with the given key is stored.
+     * 
+     * @param key key to lookup
+     * @return true if any pair is found, false otherwise
+     */
+    public boolean lookupAny(long key) {
+        return hashTable.lookup(key);
+    }
+
+    /**
+     * Check if a pair with the given key and data is stored.
+     * 
+     * @param key  key of the pair to lookup
+     * @param data data of the pair to lookup
+     * @return true if the pair is found, false otherwise
+     * @throws NullPointerException if data is null
+     */
+    public boolean lookup(long key, D data) {
+        return tree.lookup(key, data);
+    }
+
+    /**
+     * Return all keys (including duplicates) in ascending order.
+     * 
+     * @return array of all keys, empty if no keys stored
+     */
+    public long[] getAllKeys() {
+        return tree.getAllKeys();
+    }
+
+    /**
+     * Return a LinkedList of data paired with the given key.
+     * 
+     * @param key target key
+     * @return a list of data
+     */
+    public LinkedList<D> getAllData(long key) {
+        return tree.getAllData(key);
+    }
+
+    /**
+     * Return the minimum key stored.
+     * 
+     * @return minimum key
+     * @throws NoSuchElementException if no keys stored
+     */
+    public long getMinKey() {
+        return tree.getMinKey();
+    }
+
+    /**
+     * Return the maximum key stored.
+     * 
+     * @return maximum key
+     * @throws NoSuchElementException if no keys stored
+     */
+    public long getMaxKey() {
+        return tree.getMaxKey();
+    }
+
+}
@@ -0,0 +1,81 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongFADAFTest {
+
+    @Test
+    public void insertRemoveAndLookup() {
+        LongFADAF<String> fadaf = new LongFADAF<>(10);
+        assertTrue(fadaf.insert(5, "a"));
+        assertTrue(fadaf.insert(5, "b"));
+        assertFalse(fadaf.insert(5, "a"));
+        assertTrue(fadaf.insert(-3, "a"));
+        assertTrue(fadaf.insert(Long.valueOf(9), "c"));
+        assertEquals(4, fadaf.size());
+        assertEquals(3, fadaf.nUniqueKeys());
+        assertTrue(fadaf.lookupAny(-3));
+        assertTrue(fadaf.lookup(5, "b"));
+        assertEquals(Arrays.asList("a", "b"), fadaf.getAllData(5));
+        assertArrayEquals(new long[] {-3, 5, 5, 9}, fadaf.getAllKeys());
+        assertEquals(-3, fadaf.getMinKey());
+        assertEquals(9, fadaf.getMaxKey());
+
+        assertTrue(fadaf.remove(5, "a"));
+        assertTrue(fadaf.lookupAny(5));
+        assertTrue(fadaf.remove(5, "b"));
+        assertFalse(fadaf.lookupAny(5));
+        assertTrue(fadaf.removeAll(Long.valueOf(-3)));
+        assertFalse(fadaf.removeAll(-3));
+        assertEquals(1, fadaf.size());
+    }
+
+    @Test
+    public void keysSharingOneHashCode() {
+        // Long.hashCode folds the halves together, so all of these hash to 0
+        LongFADAF<Integer> fadaf = new LongFADAF<>(10);
+        for (int k = 0; k < 1000; k++) {
+            assertTrue(fadaf.insert(k | ((long) k << 32), k));
+        }
+        assertEquals(1000, fadaf.nUniqueKeys());
+        for (int k = 0; k < 1000; k += 2) {
+            assertTrue(fadaf.remove(k | ((long) k << 32), k));
+        }
+        for (int k = 0; k < 1000; k++) {
+            assertEquals(k % 2 == 1, fadaf.lookupAny(k | ((long) k << 32)));
+        }
+        assertFalse(fadaf.lookupAny(1L << 32));
+        assertEquals(500, fadaf.size());
+    }
+
+    @Test
+    public void sortedKeysStayBalanced() {
+        LongFADAF<String> fadaf = new LongFADAF<>(10);
+        for (int i = 0; i < 100000; i++) {
+            fadaf.insert(i * 1_000_000_007L, "v");
+        }
+        for (int i = 0; i < 100000; i += 3) {
+            assertTrue(fadaf.removeAll(i * 1_000_000_007L));
+        }
+        assertTrue(fadaf.tree.height() <= 25);
+        for (int i = 0; i < 100000; i++) {
+            assertEquals(i % 3 != 0, fadaf.lookupAny(i * 1_000_000_007L));
+        }
+    }
+
+    @Test
+    public void literalsOnLongData() {
+        LongFADAF<Long> fadaf = new LongFADAF<>(10);
+        assertTrue(fadaf.insert(5L, 7L));
+        assertTrue(fadaf.insert(5L, 8L));
+        assertFalse(fadaf.insert(5L, 7L));
+        assertTrue(fadaf.lookup(5L, 8L));
+        assertTrue(fadaf.lookupAny(5L));
+        assertEquals(Arrays.asList(7L, 8L), fadaf.getAllData(5L));
+        assertTrue(fadaf.remove(5L, 7L));
+        assertTrue(fadaf.removeAll(5L));
+        assertEquals(0, fadaf.size());
+    }
+}
@@ -0,0 +1,894 @@
+/*
+ * Name: Yin Lam Lai
+ * PID: A15779757
+ */
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+/**
+ * Creates a FADAF that keeps its tree links, dup chains, hash index, keys and
+ * data in native memory, so a large instance adds almost nothing for the GC
+ * to trace. Only a few handles live on the Java heap.
+ *
+ * Every pair is a 40 byte node slot in one native segment: left, right and
+ * dup links, the subtree height, and references to its encoded key and data.
+ * Keys and data are written by the given codecs into an arena of native
+ * chunks; the hash index is an open addressing table of (hash, key slot)
+ * pairs in its own segment. Freed slots are reused through a free list, and
+ * the arena is compacted once more than half of it is dead.
+ *
+ * Keys are decoded for every comparison, so operations cost more CPU than on
+ * FADAF. close releases all native memory at once; any call after that
+ * throws IllegalStateException. Not thread-safe.
+ *
+ * Uses the incubating Foreign Memory API of JDK 17: compile and run with
+ * --add-modules jdk.incubator.foreign.
+ *
+ * @param <K> Generic type of key
+ * @param <D> Generic type of data
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+public class OffHeapFADAF<K extends Comparable<? super K>, D> implements AutoCloseable {
+
+    // constants
+    public static final int NODE_BYTES = 40; // native bytes per pair
+    private static final int LEFT = 0; // offsets of the node fields
+    private static final int RIGHT = 4;
+    private static final int DUP = 8; // next slot of the chain, or next free slot
+    private static final int HEIGHT = 12;
+    private static final int KEY_REF = 16;
+    private static final int DATA_REF = 24;
+    private static final int KEY_LEN = 32;
+    private static final int DATA_LEN = 36;
+    private static final int BUCKET_BYTES = 8; // hash, then key slot + 1 (0 if empty)
+    private static final int MIN_CHUNK = 1 << 16; // bytes of the first arena chunk
+    private static final int ARENA_CHUNK = 1 << 26; // largest bytes of an arena chunk
+    private static final int NIL = -1; // no slot
+    private static final int MAX_HEIGHT = 64; // bound on AVL height for int slot counts
+
+    // instance variables
+    private final Codec<K> keyCodec;
+    private final Codec<D> dataCodec;
+    private ResourceScope nodeScope; // owns nodes
+    private MemorySegment nodes; // node slots
+    private int nodeCapacity; // slots nodes has room for
+    private int used; // slots handed out so far, freed or not
+    private int free; // first free slot
+    private ResourceScope indexScope; // owns index
+    private MemorySegment index; // hash index buckets
+    private int buckets; // number of buckets, a power of two
+    private ResourceScope arenaScope; // owns the arena chunks
+    private ArrayList<ByteBuffer> chunks; // arena chunks, the last one is written
+    private int chunkPos; // next free byte of the last chunk
+    private long arenaBytes; // bytes of all chunks
+    private long writtenBytes; // bytes written to the arena since its last compaction
+    private long liveBytes; // bytes of the arena still referenced
+    private int root; // root slot
+    private int nElems; // number of elements stored
+    private int nKeys; // number of unique keys stored
+    private boolean closed;
+    private final int[] path = new int[MAX_HEIGHT]; // slots on the last descent
+
+    /**
+     * Constructor for OffHeapFADAF.
+     *
+     * @param capacity  initial number of pairs before the node slots grow
+     * @param keyCodec  codec of the keys
+     * @param dataCodec codec of the data
+     * @throws NullPointerException     if a codec is null
+     * @throws IllegalArgumentException if capacity is less than the minimum
+     *                                  threshold
+     */
+    public OffHeapFADAF(int capacity, Codec<K> keyCodec, Codec<D> dataCodec) {
+        if (keyCodec == null || dataCodec == null) {
+            throw new NullPointerException();
+        }
+        if (capacity < HashTable.MIN_CAPACITY) {
+            throw new IllegalArgumentException();
+        }
+        this.keyCodec = keyCodec;
+        this.dataCodec = dataCodec;
+        nodeScope = ResourceScope.newSharedScope();
+        nodes = MemorySegment.allocateNative((long) capacity * NODE_BYTES, 8, nodeScope);
+        nodeCapacity = capacity;
+        free = NIL;
+        buckets = Integer.highestOneBit(capacity - 1) << 2;
+        indexScope = ResourceScope.newSharedScope();
+        index = MemorySegment.allocateNative((long) buckets * BUCKET_BYTES, 8, indexScope);
+        arenaScope = ResourceScope.newSharedScope();
+        chunks = new ArrayList<>();
+        root = NIL;
+    }
+
+    /**
+     * Returns the total number of key-data pairs stored.
+     *
+     * @return count of key-data pairs
+     */
+    public int size() {
+        return nElems;
+    }
+
+    /**
+     * Returns the total number of unique keys stored.
+     *
+     * @return count of unique keys
+     */
+    public int nUniqueKeys() {
+        return nKeys;
+    }
+
+    /**
+     * Returns the native memory held for node slots, the hash index and the
+     * arena, in bytes.
+     *
+     * @return native bytes allocated
+     */
+    public long offHeapBytes() {
+        return (long) nodeCapacity * NODE_BYTES + (long) buckets * BUCKET_BYTES + arenaBytes;
+    }
+
+    /**
+     * Inserts the given key-data pair at the end of its key's dup chain.
+     *
+     * @param key  key to insert
+     * @param data data to insert
+     * @return true if inserted, false if the pair already exists
+     * @throws NullPointerException  if key or data is null
+     * @throws IllegalStateException if closed
+     */
+    public boolean insert(K key, D data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        checkOpen();
+        int hash = HashTable.spread(key.hashCode());
+        int keySlot = indexFind(key, hash);
+        if (keySlot == NIL) {
+            keySlot = attach(key, data);
+            indexPut(hash, keySlot);
+            return true;
+        }
+        int slot = keySlot;
+        while (true) {
+            if (data.equals(dataOf(slot))) {
+                return false;
+            }
+            if (getInt(slot, DUP) == NIL) {
+                break;
+            }
+            slot = getInt(slot, DUP);
+        }
+        int added = allocate(data);
+        setInt(slot, DUP, added);
+        nElems++;
+        return true;
+    }
+
+    /**
+     * Checks if any pair with the given key is stored.
+     *
+     * @param key key to search
+     * @return true if found, false otherwise
+     * @throws NullPointerException  if the key is null
+     * @throws IllegalStateException if closed
+     */
+    public boolean lookupAny(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        checkOpen();
+        return indexFind(key, HashTable.spread(key.hashCode())) != NIL;
+    }
+
+    /**
+     * Checks if the given key-data pair is stored.
+     *
+     * @param key  key to search
+     * @param data data to search
+     * @return true if found, false otherwise
+     * @throws NullPointerException  if key or data is null
+     * @throws IllegalStateException if closed
+     */
+    public boolean lookup(K key, D data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        checkOpen();
+        for (int slot = indexFind(key, HashTable.spread(key.hashCode())); slot != NIL;
+             slot = getInt(slot, DUP)) {
+            if (data.equals(dataOf(slot))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a LinkedList of all data paired with the given key, in insertion
+     * order, decoded from native memory.
+     *
+     * @param key target key
+     * @return list of data (empty if no data found)
+     * @throws NullPointerException  if the key is null
+     * @throws IllegalStateException if closed
+     */
+    public LinkedList<D> getAllData(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        checkOpen();
+        LinkedList<D> dataList = new LinkedList<>();
+        for (int slot = indexFind(key, HashTable.spread(key.hashCode())); slot != NIL;
+             slot = getInt(slot, DUP)) {
+            dataList.add(dataOf(slot));
+        }
+        return dataList;
+    }
+
+    /**
+     * Returns a LinkedList of all keys (including duplicates) in ascending
+     * order, decoded from native memory.
+     *
+     * @return a list of all keys, empty list if no keys stored
+     * @throws IllegalStateException if closed
+     */
+    public LinkedList<K> getAllKeys() {
+        checkOpen();
+        LinkedList<K> keys = new LinkedList<>();
+        int[] stack = new int[MAX_HEIGHT];
+        int top = 0;
+        int slot = root;
+        while (slot != NIL || top > 0) {
+            while (slot != NIL) {
+                stack[top++] = slot;
+                slot = getInt(slot, LEFT);
+            }
+            slot = stack[--top];
+            K key = keyOf(slot);
+            for (int chain = slot; chain != NIL; chain = getInt(chain, DUP)) {
+                keys.add(key);
+            }
+            slot = getInt(slot, RIGHT);
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the smallest key stored.
+     *
+     * @return minimum key, or null if empty
+     * @throws IllegalStateException if closed
+     */
+    public K getMinKey() {
+        checkOpen();
+        if (root == NIL) {
+            return null;
+        }
+        int slot = root;
+        while (getInt(slot, LEFT) != NIL) {
+            slot = getInt(slot, LEFT);
+        }
+        return keyOf(slot);
+    }
+
+    /**
+     * Returns the largest key stored.
+     *
+     * @return maximum key, or null if empty
+     * @throws IllegalStateException if closed
+     */
+    public K getMaxKey() {
+        checkOpen();
+        if (root == NIL) {
+            return null;
+        }
+        int slot = root;
+        while (getInt(slot, RIGHT) != NIL) {
+            slot = getInt(slot, RIGHT);
+        }
+        return keyOf(slot);
+    }
+
+    /**
+     * Removes the given key-data pair.
+     *
+     * @param key  key of the pair
+     * @param data data of the pair
+     * @return true if removed, false if the pair was not found
+     * @throws NullPointerException  if key or data is null
+     * @throws IllegalStateException if closed
+     */
+    public boolean remove(K key, D data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        checkOpen();
+        int hash = HashTable.spread(key.hashCode());
+        int keySlot = indexFind(key, hash);
+        int prev = NIL;
+        for (int slot = keySlot; slot != NIL; prev = slot, slot = getInt(slot, DUP)) {
+            if (!data.equals(dataOf(slot))) {
+                continue;
+            }
+            if (slot != keySlot) {
+                setInt(prev, DUP, getInt(slot, DUP));
+                release(slot);
+            } else if (getInt(slot, DUP) != NIL) {
+                // the next pair moves into the key slot, which stays linked
+                int next = getInt(slot, DUP);
+                liveBytes -= getInt(slot, DATA_LEN);
+                setLong(slot, DATA_REF, getLong(next, DATA_REF));
+                setInt(slot, DATA_LEN, getInt(next, DATA_LEN));
+                setInt(slot, DUP, getInt(next, DUP));
+                setInt(next, DATA_LEN, 0);
+                release(next);
+            } else {
+                indexRemove(hash, keySlot);
+                detach(keySlot);
+            }
+            nElems--;
+            compactIfSparse();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes all pairs with the given key.
+     *
+     * @param key key to remove
+     * @return true if any pair is removed, false otherwise
+     * @throws NullPointerException  if the key is null
+     * @throws IllegalStateException if closed
+     */
+    public boolean removeAll(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        checkOpen();
+        int hash = HashTable.spread(key.hashCode());
+        int keySlot = indexFind(key, hash);
+        if (keySlot == NIL) {
+            return false;
+        }
+        int slot = getInt(keySlot, DUP);
+        while (slot != NIL) {
+            int next = getInt(slot, DUP);
+            release(slot);
+            nElems--;
+            slot = next;
+        }
+        indexRemove(hash, keySlot);
+        detach(keySlot);
+        nElems--;
+        compactIfSparse();
+        return true;
+    }
+
+    /**
+     * Rewrites the live keys and data into fresh arena chunks and frees the
+     * old ones. Runs by itself once more than half of the arena is dead.
+     *
+     * @throws IllegalStateException if closed
+     */
+    public void compact() {
+        checkOpen();
+        ResourceScope oldScope = arenaScope;
+        ArrayList<ByteBuffer> oldChunks = chunks;
+        arenaScope = ResourceScope.newSharedScope();
+        chunks = new ArrayList<>();
+        arenaBytes = 0;
+        writtenBytes = 0;
+        liveBytes = 0;
+        int[] stack = new int[MAX_HEIGHT];
+        int top = 0;
+        int slot = root;
+        while (slot != NIL || top > 0) {
+            while (slot != NIL) {
+                stack[top++] = slot;
+                slot = getInt(slot, LEFT);
+            }
+            slot = stack[--top];
+            setLong(slot, KEY_REF, copy(oldChunks, getLong(slot, KEY_REF), getInt(slot, KEY_LEN)));
+            for (int chain = slot; chain != NIL; chain = getInt(chain, DUP)) {
+                setLong(chain, DATA_REF, copy(oldChunks, getLong(chain, DATA_REF), getInt(chain, DATA_LEN)));
+            }
+            slot = getInt(slot, RIGHT);
+        }
+        oldScope.close();
+    }
+
+    /**
+     * Frees all native memory. Any later call throws IllegalStateException;
+     * closing again does nothing.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        nodeScope.close();
+        indexScope.close();
+        arenaScope.close();
+        chunks = null;
+    }
+
+    /**
+     * Helper to fail fast once closed.
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+    }
+
+    /**
+     * Helper to read an int field of a node slot.
+     *
+     * @param slot  slot index
+     * @param field field offset
+     * @return field value
+     */
+    private int getInt(int slot, int field) {
+        return MemoryAccess.getIntAtOffset(nodes, (long) slot * NODE_BYTES + field);
+    }
+
+    /**
+     * Helper to write an int field of a node slot.
+     *
+     * @param slot  slot index
+     * @param field field offset
+     * @param value new value
+     */
+    private void setInt(int slot, int field, int value) {
+        MemoryAccess.setIntAtOffset(nodes, (long) slot * NODE_BYTES + field, value);
+    }
+
+    /**
+     * Helper to read a long field of a node slot.
+     *
+     * @param slot  slot index
+     * @param field field offset
+     * @return field value
+     */
+    private long getLong(int slot, int field) {
+        return MemoryAccess.getLongAtOffset(nodes, (long) slot * NODE_BYTES + field);
+    }
+
+    /**
+     * Helper to write a long field of a node slot.
+     *
+     * @param slot  slot index
+     * @param field field offset
+     * @param value new value
+     */
+    private void setLong(int slot, int field, long value) {
+        MemoryAccess.setLongAtOffset(nodes, (long) slot * NODE_BYTES + field, value);
+    }
+
+    /**
+     * Helper to decode the key of a key slot.
+     *
+     * @param slot slot index
+     * @return its key
+     */
+    private K keyOf(int slot) {
+        return keyCodec.decode(at(chunks, getLong(slot, KEY_REF)));
+    }
+
+    /**
+     * Helper to decode the data of a slot.
+     *
+     * @param slot slot index
+     * @return its data
+     */
+    private D dataOf(int slot) {
+        return dataCodec.decode(at(chunks, getLong(slot, DATA_REF)));
+    }
+
+    /**
+     * Helper to position the chunk of an arena reference at its offset.
+     *
+     * @param from chunks the reference points into
+     * @param ref  chunk index in the high half, offset in the low half
+     * @return the chunk, positioned at the value
+     */
+    private static ByteBuffer at(ArrayList<ByteBuffer> from, long ref) {
+        ByteBuffer chunk = from.get((int) (ref >>> 32));
+        chunk.limit(chunk.capacity()).position((int) ref);
+        return chunk;
+    }
+
+    /**
+     * Helper to make room for a value at the end of the arena, starting a new
+     * chunk if the last one is too full. Values never span two chunks.
+     *
+     * @param size bytes needed
+     * @return reference to the reserved bytes
+     */
+    private long reserve(int size) {
+        if (chunks.isEmpty() || chunkPos + size > chunks.get(chunks.size() - 1).capacity()) {
+            // chunks double the arena up to ARENA_CHUNK each
+            int length = Math.max(size, (int) Math.min(ARENA_CHUNK, Math.max(MIN_CHUNK, arenaBytes)));
+            chunks.add(MemorySegment.allocateNative(length, 8, arenaScope).asByteBuffer());
+            arenaBytes += length;
+            chunkPos = 0;
+        }
+        long ref = ((long) (chunks.size() - 1) << 32) | chunkPos;
+        chunkPos += size;
+        writtenBytes += size;
+        liveBytes += size;
+        return ref;
+    }
+
+    /**
+     * Helper to encode a value into the arena.
+     *
+     * @param codec codec of the value
+     * @param value value to write
+     * @param size  encoded size of the value
+     * @param <T>   Generic type of value
+     * @return reference to the encoded value
+     */
+    private <T> long write(Codec<T> codec, T value, int size) {
+        long ref = reserve(size);
+        codec.encode(value, at(chunks, ref));
+        return ref;
+    }
+
+    /**
+     * Helper to copy encoded bytes from old chunks to the end of the arena.
+     *
+     * @param from old chunks
+     * @param ref  reference into the old chunks
+     * @param size number of bytes
+     * @return reference to the copy
+     */
+    private long copy(ArrayList<ByteBuffer> from, long ref, int size) {
+        long copied = reserve(size);
+        chunks.get((int) (copied >>> 32)).put((int) copied, from.get((int) (ref >>> 32)), (int) ref, size);
+        return copied;
+    }
+
+    /**
+     * Helper to compact the arena once more than half of it, and more than a
+     * chunk, is dead.
+     */
+    private void compactIfSparse() {
+        long dead = writtenBytes - liveBytes;
+        if (dead > ARENA_CHUNK && dead > liveBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Helper to take a node slot for the given data, from the free list or
+     * the end of the slots, growing them if they are full.
+     *
+     * @param data data of the slot
+     * @return the slot, with no chain successor
+     */
+    private int allocate(D data) {
+        int slot;
+        if (free != NIL) {
+            slot = free;
+            free = getInt(slot, DUP);
+        } else {
+            if (used == nodeCapacity) {
+                growNodes();
+            }
+            slot = used++;
+        }
+        int size = dataCodec.size(data);
+        setLong(slot, DATA_REF, write(dataCodec, data, size));
+        setInt(slot, DATA_LEN, size);
+        setInt(slot, KEY_LEN, 0);
+        setInt(slot, DUP, NIL);
+        return slot;
+    }
+
+    /**
+     * Helper to put a node slot on the free list, leaving its key and data as
+     * dead arena bytes.
+     *
+     * @param slot slot to free
+     */
+    private void release(int slot) {
+        liveBytes -= getInt(slot, KEY_LEN) + getInt(slot, DATA_LEN);
+        setInt(slot, DUP, free);
+        free = slot;
+    }
+
+    /**
+     * Helper to move the node slots into a segment of twice the size and
+     * free the old one.
+     */
+    private void growNodes() {
+        int capacity = nodeCapacity + Math.max(nodeCapacity, HashTable.MIN_CAPACITY);
+        ResourceScope scope = ResourceScope.newSharedScope();
+        MemorySegment grown = MemorySegment.allocateNative((long) capacity * NODE_BYTES, 8, scope);
+        grown.asSlice(0, nodes.byteSize()).copyFrom(nodes);
+        nodeScope.close();
+        nodeScope = scope;
+        nodes = grown;
+        nodeCapacity = capacity;
+    }
+
+    /**
+     * Helper to find the key slot of a key through the hash index.
+     *
+     * @param key  key to find
+     * @param hash spread hash of the key
+     * @return its key slot, or NIL if not stored
+     */
+    private int indexFind(K key, int hash) {
+        int mask = buckets - 1;
+        for (int bucket = hash & mask; ; bucket = (bucket + 1) & mask) {
+            long at = (long) bucket * BUCKET_BYTES;
+            int slot = MemoryAccess.getIntAtOffset(index, at + 4) - 1;
+            if (slot == NIL) {
+                return NIL;
+            }
+            if (MemoryAccess.getIntAtOffset(index, at) == hash && key.equals(keyOf(slot))) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Helper to add a new key slot to the hash index, doubling it first if it
+     * would become more than half full.
+     *
+     * @param hash spread hash of the key
+     * @param slot key slot
+     */
+    private void indexPut(int hash, int slot) {
+        if ((long) nKeys * 2 > buckets) {
+            growIndex();
+        }
+        int mask = buckets - 1;
+        int bucket = hash & mask;
+        while (MemoryAccess.getIntAtOffset(index, (long) bucket * BUCKET_BYTES + 4) != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        MemoryAccess.setIntAtOffset(index, (long) bucket * BUCKET_BYTES, hash);
+        MemoryAccess.setIntAtOffset(index, (long) bucket * BUCKET_BYTES + 4, slot + 1);
+    }
+
+    /**
+     * Helper to remove a key slot from the hash index, shifting later
+     * entries of its probe run back so no tombstones are needed.
+     *
+     * @param hash spread hash of the key
+     * @param slot key slot
+     */
+    private void indexRemove(int hash, int slot) {
+        int mask = buckets - 1;
+        int hole = hash & mask;
+        while (MemoryAccess.getIntAtOffset(index, (long) hole * BUCKET_BYTES + 4) != slot + 1) {
+            hole = (hole + 1) & mask;
+        }
+        for (int bucket = (hole + 1) & mask; ; bucket = (bucket + 1) & mask) {
+            long at = (long) bucket * BUCKET_BYTES;
+            int entry = MemoryAccess.getIntAtOffset(index, at + 4);
+            if (entry == 0) {
+                break;
+            }
+            int entryHash = MemoryAccess.getIntAtOffset(index, at);
+            // move the entry into the hole unless its home lies after the hole
+            if (((bucket - (entryHash & mask)) & mask) >= ((bucket - hole) & mask)) {
+                MemoryAccess.setIntAtOffset(index, (long) hole * BUCKET_BYTES, entryHash);
+                MemoryAccess.setIntAtOffset(index, (long) hole * BUCKET_BYTES + 4, entry);
+                hole = bucket;
+            }
+        }
+        MemoryAccess.setIntAtOffset(index, (long) hole * BUCKET_BYTES, 0);
+        MemoryAccess.setIntAtOffset(index, (long) hole * BUCKET_BYTES + 4, 0);
+    }
+
+    /**
+     * Helper to move the hash index into a segment of twice the buckets and
+     * free the old one.
+     */
+    private void growIndex() {
+        MemorySegment old = index;
+        ResourceScope oldScope = indexScope;
+        int oldBuckets = buckets;
+        buckets *= 2;
+        indexScope = ResourceScope.newSharedScope();
+        index = MemorySegment.allocateNative((long) buckets * BUCKET_BYTES, 8, indexScope);
+        int mask = buckets - 1;
+        for (int n = 0; n < oldBuckets; n++) {
+            int entry = MemoryAccess.getIntAtOffset(old, (long) n * BUCKET_BYTES + 4);
+            if (entry == 0) {
+                continue;
+            }
+            int hash = MemoryAccess.getIntAtOffset(old, (long) n * BUCKET_BYTES);
+            int bucket = hash & mask;
+            while (MemoryAccess.getIntAtOffset(index, (long) bucket * BUCKET_BYTES + 4) != 0) {
+                bucket = (bucket + 1) & mask;
+            }
+            MemoryAccess.setIntAtOffset(index, (long) bucket * BUCKET_BYTES, hash);
+            MemoryAccess.setIntAtOffset(index, (long) bucket * BUCKET_BYTES + 4, entry);
+        }
+        oldScope.close();
+    }
+
+    /**
+     * Helper to link a new key slot into the tree. The key must be absent.
+     * The tree is descended once and rebalanced along the same path.
+     *
+     * @param key  key to insert
+     * @param data its first data
+     * @return the new key slot
+     */
+    private int attach(K key, D data) {
+        int depth = 0;
+        int slot = root;
+        int c = 0;
+        while (slot != NIL) {
+            c = key.compareTo(keyOf(slot));
+            path[depth++] = slot;
+            slot = (c < 0) ? getInt(slot, LEFT) : getInt(slot, RIGHT);
+        }
+        slot = allocate(data);
+        int size = keyCodec.size(key);
+        setLong(slot, KEY_REF, write(keyCodec, key, size));
+        setInt(slot, KEY_LEN, size);
+        setInt(slot, LEFT, NIL);
+        setInt(slot, RIGHT, NIL);
+        setInt(slot, HEIGHT, 1);
+        if (depth == 0) {
+            root = slot;
+        } else {
+            setInt(path[depth - 1], (c < 0) ? LEFT : RIGHT, slot);
+        }
+        nElems++;
+        nKeys++;
+        rebalancePath(depth);
+        return slot;
+    }
+
+    /**
+     * Helper to unlink a key slot whose chain is down to that one slot from
+     * the tree and free it. A slot with two children is replaced by its
+     * successor slot, so no other slot changes its key.
+     *
+     * @param target key slot to detach
+     */
+    private void detach(int target) {
+        K key = keyOf(target);
+        int depth = 0;
+        int slot = root;
+        while (slot != target) {
+            path[depth++] = slot;
+            slot = (key.compareTo(keyOf(slot)) < 0) ? getInt(slot, LEFT) : getInt(slot, RIGHT);
+        }
+        int parentDepth = depth;
+        int replacement;
+        if (getInt(target, LEFT) != NIL && getInt(target, RIGHT) != NIL) {
+            path[depth++] = target;
+            int successor = getInt(target, RIGHT);
+            while (getInt(successor, LEFT) != NIL) {
+                path[depth++] = successor;
+                successor = getInt(successor, LEFT);
+            }
+            int successorParent = path[depth - 1];
+            setInt(successorParent, (successorParent == target) ? RIGHT : LEFT, getInt(successor, RIGHT));
+            setInt(successor, LEFT, getInt(target, LEFT));
+            setInt(successor, RIGHT, getInt(target, RIGHT));
+            setInt(successor, HEIGHT, getInt(target, HEIGHT));
+            path[parentDepth] = successor;
+            replacement = successor;
+        } else {
+            replacement = (getInt(target, LEFT) != NIL) ? getInt(target, LEFT) : getInt(target, RIGHT);
+        }
+        if (parentDepth == 0) {
+            root = replacement;
+        } else {
+            int parent = path[parentDepth - 1];
+            setInt(parent, (getInt(parent, LEFT) == target) ? LEFT : RIGHT, replacement);
+        }
+        release(target);
+        nKeys--;
+        rebalancePath(depth);
+    }
+
+    /**
+     * Helper to rebalance the first depth slots of path, bottom up, relinking
+     * each rotated subtree into its parent. Stops early once a subtree keeps
+     * its height without rotating.
+     *
+     * @param depth number of slots on the path
+     */
+    private void rebalancePath(int depth) {
+        for (int i = depth - 1; i >= 0; i--) {
+            int slot = path[i];
+            int oldHeight = getInt(slot, HEIGHT);
+            int balanced = rebalance(slot);
+            if (balanced != slot) {
+                if (i == 0) {
+                    root = balanced;
+                } else {
+                    int parent = path[i - 1];
+                    setInt(parent, (getInt(parent, LEFT) == slot) ? LEFT : RIGHT, balanced);
+                }
+            } else if (getInt(slot, HEIGHT) == oldHeight) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Helper to restore the AVL property at a slot whose children are
+     * balanced.
+     *
+     * @param slot slot to rebalance
+     * @return root slot of the subtree afterwards
+     */
+    private int rebalance(int slot) {
+        updateHeight(slot);
+        int l = getInt(slot, LEFT);
+        int r = getInt(slot, RIGHT);
+        int balance = height(l) - height(r);
+        if (balance > 1) {
+            if (height(getInt(l, LEFT)) < height(getInt(l, RIGHT))) {
+                setInt(slot, LEFT, rotate(l, RIGHT, LEFT));
+            }
+            return rotate(slot, LEFT, RIGHT);
+        }
+        if (balance < -1) {
+            if (height(getInt(r, RIGHT)) < height(getInt(r, LEFT))) {
+                setInt(slot, RIGHT, rotate(r, LEFT, RIGHT));
+            }
+            return rotate(slot, RIGHT, LEFT);
+        }
+        return slot;
+    }
+
+    /**
+     * Helper to rotate a subtree, lifting its child on the given side. Lifting
+     * the left child is a right rotation.
+     *
+     * @param slot root slot of the subtree
+     * @param up   side of the child to lift
+     * @param down other side
+     * @return new root slot
+     */
+    private int rotate(int slot, int up, int down) {
+        int top = getInt(slot, up);
+        setInt(slot, up, getInt(top, down));
+        setInt(top, down, slot);
+        updateHeight(slot);
+        updateHeight(top);
+        return top;
+    }
+
+    /**
+     * Helper to return the height of a key slot.
+     *
+     * @param slot slot index, or NIL
+     * @return its height, 0 for NIL
+     */
+    private int height(int slot) {
+        return (slot == NIL) ? 0 : getInt(slot, HEIGHT);
+    }
+
+    /**
+     * Helper to recompute the height of a slot from its children.
+     *
+     * @param slot slot to update
+     */
+    private void updateHeight(int slot) {
+        setInt(slot, HEIGHT, 1 + Math.max(height(getInt(slot, LEFT)), height(getInt(slot, RIGHT))));
+    }
+}
@@ -0,0 +1,118 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapFADAFTest {
+
+    @Test
+    public void variableLengthCodecsRoundTrip() {
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            big.append((char) ('a' + i % 26)).append('\u00e9');
+        }
+        // empty, multi-byte, surrogate pairs, and one larger than an arena chunk
+        List<String> keys = Arrays.asList("", "a", "k\u00e9y", "\uD83D\uDE00x", big.toString(), "z");
+        try (OffHeapFADAF<String, String> fadaf = new OffHeapFADAF<>(10, Codec.STRING, Codec.STRING)) {
+            for (String key : keys) {
+                assertTrue(fadaf.insert(key, key + "|" + key.length()));
+                assertTrue(fadaf.insert(key, ""));
+                assertFalse(fadaf.insert(key, ""));
+            }
+            for (String key : keys) {
+                assertEquals(Arrays.asList(key + "|" + key.length(), ""), fadaf.getAllData(key));
+                assertTrue(fadaf.lookup(key, ""));
+            }
+            assertFalse(fadaf.lookupAny(big.substring(1)));
+            TreeSet<String> ordered = new TreeSet<>(keys);
+            assertEquals("", fadaf.getMinKey());
+            assertEquals("\uD83D\uDE00x", fadaf.getMaxKey());
+            List<String> sorted = new ArrayList<>();
+            for (String key : ordered) {
+                sorted.add(key);
+                sorted.add(key);
+            }
+            assertEquals(sorted, fadaf.getAllKeys());
+            assertTrue(fadaf.offHeapBytes() > 3L * big.length());
+        }
+    }
+
+    @Test
+    public void compactKeepsLiveData() {
+        try (OffHeapFADAF<Integer, String> fadaf = new OffHeapFADAF<>(10, Codec.INTEGER, Codec.STRING)) {
+            for (int i = 0; i < 3000; i++) {
+                for (int d = 0; d < 3; d++) {
+                    fadaf.insert(i, "data-" + i + "-" + d);
+                }
+            }
+            // drop two thirds of the pairs: every head, and every key divisible by 3
+            for (int i = 0; i < 3000; i++) {
+                if (i % 3 == 0) {
+                    assertTrue(fadaf.removeAll(i));
+                } else {
+                    assertTrue(fadaf.remove(i, "data-" + i + "-0"));
+                }
+            }
+            long before = fadaf.offHeapBytes();
+            fadaf.compact();
+            assertTrue(fadaf.offHeapBytes() < before);
+            assertEquals(2 * 2000, fadaf.size());
+            for (int i = 0; i < 3000; i++) {
+                List<String> expected = (i % 3 == 0) ? Collections.emptyList()
+                        : Arrays.asList("data-" + i + "-1", "data-" + i + "-2");
+                assertEquals(expected, fadaf.getAllData(i));
+            }
+            // the compacted arena takes new writes
+            assertTrue(fadaf.insert(0, "back"));
+            assertTrue(fadaf.insert(1, "data-1-0"));
+            assertEquals(Arrays.asList("data-1-1", "data-1-2", "data-1-0"), fadaf.getAllData(1));
+            assertEquals(Integer.valueOf(0), fadaf.getMinKey());
+        }
+    }
+
+    @Test
+    public void nodesAndIndexGrowAndSlotsAreReused() {
+        try (OffHeapFADAF<Long, Long> fadaf = new OffHeapFADAF<>(10, Codec.LONG, Codec.LONG)) {
+            long initial = fadaf.offHeapBytes();
+            for (long i = 0; i < 50000; i++) {
+                assertTrue(fadaf.insert(i * 7919, i));
+            }
+            assertTrue(fadaf.offHeapBytes() >= initial + 50000L * OffHeapFADAF.NODE_BYTES);
+            for (long i = 0; i < 50000; i++) {
+                assertTrue(fadaf.lookupAny(i * 7919));
+                assertFalse(fadaf.lookupAny(i * 7919 + 1));
+            }
+            fadaf.compact();
+            long grown = fadaf.offHeapBytes();
+
+            // freed slots and buckets take the same keys again without growing
+            for (long i = 0; i < 50000; i++) {
+                assertTrue(fadaf.removeAll(i * 7919));
+            }
+            assertEquals(0, fadaf.nUniqueKeys());
+            assertNull(fadaf.getMinKey());
+            for (long i = 49999; i >= 0; i--) {
+                assertTrue(fadaf.insert(i * 7919, i));
+            }
+            fadaf.compact();
+            assertEquals(grown, fadaf.offHeapBytes());
+            assertEquals(Arrays.asList(123L), fadaf.getAllData(123 * 7919L));
+            assertEquals(Long.valueOf(49999 * 7919L), fadaf.getMaxKey());
+        }
+    }
+
+    @Test
+    public void closeFreesAndFailsAfter() {
+        OffHeapFADAF<Long, Long> fadaf = new OffHeapFADAF<>(10, Codec.LONG, Codec.LONG);
+        for (long i = 0; i < 10000; i++) {
+            fadaf.insert(i, -i);
+        }
+        assertTrue(fadaf.offHeapBytes() >= 10000L * OffHeapFADAF.NODE_BYTES);
+        assertEquals(Arrays.asList(-42L), fadaf.getAllData(42L));
+        fadaf.close();
+        fadaf.close();
+        assertThrows(IllegalStateException.class, () -> fadaf.lookupAny(1L));
+        assertThrows(IllegalStateException.class, () -> fadaf.insert(1L, 1L));
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Name: Yin Lam Lai
+ * PID: A15779757
+ */
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An ordered store of key-data pairs where a key may hold several data (its
+ * dup chain, kept in insertion order). DAFTree is the default engine behind
+ * FADAF; SkipListStore is a lock-free alternative.
+ *
+ * @param <K> Generic type of key
+ * @param <D> Generic type of data
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+public interface OrderedStore<K extends Comparable<? super K>, D> {
+
+    /**
+     * Returns the total number of key-data pairs stored.
+     *
+     * @return count of key-data pairs
+     */
+    int size();
+
+    /**
+     * Returns the total number of unique keys stored.
+     *
+     * @return count of unique keys
+     */
+    int nUniqueKeys();
+
+    /**
+     * Inserts the given key-data pair.
+     *
+     * @param key  key to insert
+     * @param data data to insert
+     * @return the stored pair, or null if the pair already exists
+     * @throws NullPointerException if key or data is null
+     */
+    Map.Entry<K, D> insert(K key, D data);
+
+    /**
+     * Checks if any pair with the given key is stored.
+     *
+     * @param key key to search
+     * @return true if found, false otherwise
+     * @throws NullPointerException if the key is null
+     */
+    boolean lookupAny(K key);
+
+    /**
+     * Checks if the given key-data pair is stored.
+     *
+     * @param key  key to search
+     * @param data data to search
+     * @return true if found, false otherwise
+     * @throws NullPointerException if key or data is null
+     */
+    boolean lookup(K key, D data);
+
+    /**
+     * Returns a LinkedList of all data paired with the given key, in insertion
+     * order.
+     *
+     * @param key target key
+     * @return list of data (empty if no data found)
+     * @throws NullPointerException if the key is null
+     */
+    LinkedList<D> getAllData(K key);
+
+    /**
+     * Removes the given key-data pair.
+     *
+     * @param key  key of the pair
+     * @param data data of the pair
+     * @return true if removed, false if the pair was not found
+     * @throws NullPointerException if key or data is null
+     */
+    boolean remove(K key, D data);
+
+    /**
+     * Removes all pairs with the given key.
+     *
+     * @param key key to remove
+     * @return true if any pair is removed, false otherwise
+     * @throws NullPointerException if the key is null
+     */
+    boolean removeAll(K key);
+
+    /**
+     * Inserts the given pair only if the key is not stored yet.
+     *
+     * @param key  key to insert
+     * @param data data to insert
+     * @return the first data of the key if it was already stored, or null if
+     *         the pair was inserted
+     * @throws NullPointerException if key or data is null
+     */
+    D putIfAbsent(K key, D data);
+
+    /**
+     * Inserts a pair for the key with data computed by the given function,
+     * only if the key is not stored yet.
+     *
+     * @param key     key to look up or insert
+     * @param mapping function computing the data of a new key
+     * @return the first data of the key, or null if the key was absent and the
+     *         function returned null
+     * @throws NullPointerException if key or mapping is null
+     */
+    D computeIfAbsent(K key, Function<? super K, ? extends D> mapping);
+
+    /**
+     * Replaces the data of the given pair, keeping its place in the dup chain.
+     * If the new pair is already stored the old pair is just removed.
+     *
+     * @param key     key of the pair
+     * @param oldData data to replace
+     * @param newData data to put in its place
+     * @return true if the old pair was found, false otherwise
+     * @throws NullPointerException if any argument is null
+     */
+    boolean replace(K key, D oldData, D newData);
+
+    /**
+     * Inserts the given pair if the key is absent. Otherwise the first data of
+     * the key is replaced by the result of the given function applied to it
+     * and the given data, or removed if the function returns null.
+     *
+     * @param key       key to merge into
+     * @param data      data to insert or merge
+     * @param remapping function combining the first data and the given data
+     * @return the new first data of the merged pair, or null if it was removed
+     * @throws NullPointerException if any argument is null
+     */
+    D merge(K key, D data, BiFunction<? super D, ? super D, ? extends D> remapping);
+
+    /**
+     * Returns an iterator over all pairs in ascending key order, each key's
+     * data in insertion order.
+     *
+     * @return iterator
+     */
+    Iterator<? extends Map.Entry<K, D>> iterator();
+
+    /**
+     * Returns a spliterator over all pairs in the same order as iterator,
+     * able to split for parallel streams.
+     *
+     * @return spliterator
+     */
+    Spliterator<? extends Map.Entry<K, D>> spliterator();
+
+    /**
+     * Returns the smallest key stored.
+     *
+     * @return minimum key, or null if empty
+     */
+    K getMinKey();
+
+    /**
+     * Returns the largest key stored.
+     *
+     * @return maximum key, or null if empty
+     */
+    K getMaxKey();
+
+    /**
+     * Returns the largest key less than or equal to the given key.
+     *
+     * @param key target key
+     * @return floor key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    K floorKey(K key);
+
+    /**
+     * Returns the smallest key greater than or equal to the given key.
+     *
+     * @param key target key
+     * @return ceiling key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    K ceilingKey(K key);
+
+    /**
+     * Returns the largest key strictly less than the given key.
+     *
+     * @param key target key
+     * @return lower key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    K lowerKey(K key);
+
+    /**
+     * Returns the smallest key strictly greater than the given key.
+     *
+     * @param key target key
+     * @return higher key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    K higherKey(K key);
+
+    /**
+     * Returns a LinkedList of all keys (including duplicates) in [lo, hi), in
+     * ascending order.
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return list of keys (empty if none in range)
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    LinkedList<K> rangeKeys(K lo, K hi);
+
+    /**
+     * Returns a LinkedList of all key-data pairs with keys in [lo, hi), in
+     * ascending key order.
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return list of pairs (empty if none in range)
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    LinkedList<Map.Entry<K, D>> rangeEntries(K lo, K hi);
+
+    /**
+     * Performs the given action on every key in ascending order, once per
+     * pair (so a key with several data is visited several times).
+     *
+     * @param action action to perform on each key
+     * @throws NullPointerException if the action is null
+     */
+    void forEachKey(Consumer<? super K> action);
+
+    /**
+     * Performs the given action on every data paired with the given key, in
+     * insertion order.
+     *
+     * @param key    target key
+     * @param action action to perform on each data
+     * @throws NullPointerException if key or action is null
+     */
+    void forEachData(K key, Consumer<? super D> action);
+
+    /**
+     * Performs the given action on every pair with a key in [lo, hi), in
+     * ascending key order.
+     *
+     * @param lo     inclusive lower bound
+     * @param hi     exclusive upper bound
+     * @param action action to perform on each key and data
+     * @throws NullPointerException     if lo, hi or action is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    void forEachInRange(K lo, K hi, BiConsumer<? super K, ? super D> action);
+
+    /**
+     * Copies keys (including duplicates) in ascending order into the given
+     * array, stopping when it is full.
+     *
+     * @param buffer array to fill from index 0
+     * @return number of keys written
+     * @throws NullPointerException if the buffer is null
+     */
+    int getAllKeys(K[] buffer);
+
+    /**
+     * Copies the data of the given key in insertion order into the given
+     * array, stopping when it is full.
+     *
+     * @param key    target key
+     * @param buffer array to fill from index 0
+     * @return number of data written
+     * @throws NullPointerException if key or buffer is null
+     */
+    int getAllData(K key, D[] buffer);
+
+    /**
+     * Copies keys (including duplicates) in [lo, hi) in ascending order into
+     * the given array, stopping when it is full.
+     *
+     * @param lo     inclusive lower bound
+     * @param hi     exclusive upper bound
+     * @param buffer array to fill from index 0
+     * @return number of keys written
+     * @throws NullPointerException     if lo, hi or buffer is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    int rangeKeys(K lo, K hi, K[] buffer);
+
+    /**
+     * Removes all pairs with keys in [lo, hi).
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return list of the unique keys removed, in ascending order
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    LinkedList<K> removeRange(K lo, K hi);
+}
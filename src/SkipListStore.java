@@ -0,0 +1,819 @@
+/*
+ * Name: Yin Lam Lai
+ * PID: A15779757
+ */
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Creates a lock-free OrderedStore on a ConcurrentSkipListMap. Each key maps
+ * to an immutable array holding its dup chain in insertion order. Writers
+ * never lock: they build a new array and swap it in with a compare-and-set,
+ * retrying if another writer got to the key first, so writers on different
+ * keys never wait for each other. Readers see either the old or the new
+ * chain of a key, never a half-written one.
+ *
+ * Iterators and range methods are weakly consistent, like those of
+ * ConcurrentSkipListMap. Dup chains are copied on every write, so very long
+ * chains make insert and remove O(d).
+ *
+ * @param <K> Generic type of key
+ * @param <D> Generic type of data
+ * @author Yin Lam Lai
+ * @since 6/6/2020
+ */
+public class SkipListStore<K extends Comparable<? super K>, D> implements OrderedStore<K, D> {
+
+    // instance variables
+    private final ConcurrentSkipListMap<K, Object[]> chains; // key -> its data, in insertion order
+    private final AtomicInteger nElems; // number of elements stored
+    private final AtomicInteger nKeys; // number of unique keys stored
+
+    /**
+     * Initializes an empty SkipListStore.
+     */
+    public SkipListStore() {
+        chains = new ConcurrentSkipListMap<>();
+        nElems = new AtomicInteger();
+        nKeys = new AtomicInteger();
+    }
+
+    /**
+     * Returns the total number of key-data pairs stored.
+     *
+     * @return count of key-data pairs
+     */
+    public int size() {
+        return nElems.get();
+    }
+
+    /**
+     * Returns the total number of unique keys stored.
+     *
+     * @return count of unique keys
+     */
+    public int nUniqueKeys() {
+        return nKeys.get();
+    }
+
+    /**
+     * Inserts the given key-data pair.
+     *
+     * @param key  key to insert
+     * @param data data to insert
+     * @return the stored pair, or null if the pair already exists
+     * @throws NullPointerException if key or data is null
+     */
+    public Map.Entry<K, D> insert(K key, D data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            Object[] chain = chains.get(key);
+            if (chain == null) {
+                if (chains.putIfAbsent(key, new Object[] {data}) == null) {
+                    nKeys.incrementAndGet();
+                    break;
+                }
+            } else {
+                if (indexOf(chain, data) >= 0) {
+                    return null;
+                }
+                Object[] grown = Arrays.copyOf(chain, chain.length + 1);
+                grown[chain.length] = data;
+                if (chains.replace(key, chain, grown)) {
+                    break;
+                }
+            }
+            // another writer changed this key first, read it again
+        }
+        nElems.incrementAndGet();
+        return new AbstractMap.SimpleImmutableEntry<>(key, data);
+    }
+
+    /**
+     * Checks if any pair with the given key is stored.
+     *
+     * @param key key to search
+     * @return true if found, false otherwise
+     * @throws NullPointerException if the key is null
+     */
+    public boolean lookupAny(K key) {
+        return chains.containsKey(key);
+    }
+
+    /**
+     * Checks if the given key-data pair is stored.
+     *
+     * @param key  key to search
+     * @param data data to search
+     * @return true if found, false otherwise
+     * @throws NullPointerException if key or data is null
+     */
+    public boolean lookup(K key, D data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        Object[] chain = chains.get(key);
+        return chain != null && indexOf(chain, data) >= 0;
+    }
+
+    /**
+     * Returns a LinkedList of all data paired with the given key, in insertion
+     * order.
+     *
+     * @param key target key
+     * @return list of data (empty if no data found)
+     * @throws NullPointerException if the key is null
+     */
+    @SuppressWarnings("unchecked")
+    public LinkedList<D> getAllData(K key) {
+        LinkedList<D> dataList = new LinkedList<>();
+        Object[] chain = chains.get(key);
+        if (chain != null) {
+            for (Object data : chain) {
+                dataList.add((D) data);
+            }
+        }
+        return dataList;
+    }
+
+    /**
+     * Removes the given key-data pair.
+     *
+     * @param key  key of the pair
+     * @param data data of the pair
+     * @return true if removed, false if the pair was not found
+     * @throws NullPointerException if key or data is null
+     */
+    public boolean remove(K key, D data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            Object[] chain = chains.get(key);
+            int index = (chain == null) ? -1 : indexOf(chain, data);
+            if (index < 0) {
+                return false;
+            }
+            if (removeAt(key, chain, index)) {
+                return true;
+            }
+            // another writer changed this key first, read it again
+        }
+    }
+
+    /**
+     * Removes all pairs with the given key.
+     *
+     * @param key key to remove
+     * @return true if any pair is removed, false otherwise
+     * @throws NullPointerException if the key is null
+     */
+    public boolean removeAll(K key) {
+        Object[] chain = chains.remove(key);
+        if (chain == null) {
+            return false;
+        }
+        nKeys.decrementAndGet();
+        nElems.addAndGet(-chain.length);
+        return true;
+    }
+
+    /**
+     * Inserts the given pair only if the key is not stored yet.
+     *
+     * @param key  key to insert
+     * @param data data to insert
+     * @return the first data of the key if it was already stored, or null if
+     *         the pair was inserted
+     * @throws NullPointerException if key or data is null
+     */
+    @SuppressWarnings("unchecked")
+    public D putIfAbsent(K key, D data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        Object[] chain = chains.putIfAbsent(key, new Object[] {data});
+        if (chain != null) {
+            return (D) chain[0];
+        }
+        nKeys.incrementAndGet();
+        nElems.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Inserts a pair for the key with data computed by the given function,
+     * only if the key is not stored yet. Like ConcurrentSkipListMap, the
+     * function may run in several threads racing on the same absent key;
+     * only one result is kept.
+     *
+     * @param key     key to look up or insert
+     * @param mapping function computing the data of a new key
+     * @return the first data of the key, or null if the key was absent and the
+     *         function returned null
+     * @throws NullPointerException if key or mapping is null
+     */
+    @SuppressWarnings("unchecked")
+    public D computeIfAbsent(K key, Function<? super K, ? extends D> mapping) {
+        if (key == null || mapping == null) {
+            throw new NullPointerException();
+        }
+        Object[] chain = chains.get(key);
+        if (chain != null) {
+            return (D) chain[0];
+        }
+        D data = mapping.apply(key);
+        if (data == null) {
+            return null;
+        }
+        D stored = putIfAbsent(key, data);
+        return (stored == null) ? data : stored;
+    }
+
+    /**
+     * Replaces the data of the given pair, keeping its place in the dup chain.
+     * If the new pair is already stored the old pair is just removed.
+     *
+     * @param key     key of the pair
+     * @param oldData data to replace
+     * @param newData data to put in its place
+     * @return true if the old pair was found, false otherwise
+     * @throws NullPointerException if any argument is null
+     */
+    public boolean replace(K key, D oldData, D newData) {
+        if (key == null || oldData == null || newData == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            Object[] chain = chains.get(key);
+            int index = (chain == null) ? -1 : indexOf(chain, oldData);
+            if (index < 0) {
+                return false;
+            }
+            if (oldData.equals(newData)) {
+                return true;
+            }
+            if (swapData(key, chain, index, newData)) {
+                return true;
+            }
+            // another writer changed this key first, read it again
+        }
+    }
+
+    /**
+     * Inserts the given pair if the key is absent. Otherwise the first data of
+     * the key is replaced by the result of the given function applied to it
+     * and the given data, or removed if the function returns null. The
+     * function may run more than once if other writers change the key.
+     *
+     * @param key       key to merge into
+     * @param data      data to insert or merge
+     * @param remapping function combining the first data and the given data
+     * @return the new first data of the merged pair, or null if it was removed
+     * @throws NullPointerException if any argument is null
+     */
+    @SuppressWarnings("unchecked")
+    public D merge(K key, D data, BiFunction<? super D, ? super D, ? extends D> remapping) {
+        if (key == null || data == null || remapping == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            Object[] chain = chains.get(key);
+            if (chain == null) {
+                if (putIfAbsent(key, data) == null) {
+                    return data;
+                }
+                continue;
+            }
+            D merged = remapping.apply((D) chain[0], data);
+            if (merged == null) {
+                if (removeAt(key, chain, 0)) {
+                    return null;
+                }
+            } else if (merged.equals(chain[0]) || swapData(key, chain, 0, merged)) {
+                return merged;
+            }
+            // another writer changed this key first, read it again
+        }
+    }
+
+    /**
+     * Returns a weakly consistent iterator over all pairs in ascending key
+     * order.
+     *
+     * @return iterator
+     */
+    public Iterator<Map.Entry<K, D>> iterator() {
+        return new ChainIterator(chains.entrySet().iterator());
+    }
+
+    /**
+     * Returns a weakly consistent spliterator over all pairs in ascending key
+     * order. It splits by key like the spliterators of ConcurrentSkipListMap.
+     *
+     * @return spliterator
+     */
+    public Spliterator<Map.Entry<K, D>> spliterator() {
+        return new ChainSpliterator(chains.entrySet().spliterator());
+    }
+
+    /**
+     * Returns the smallest key stored.
+     *
+     * @return minimum key, or null if empty
+     */
+    public K getMinKey() {
+        Map.Entry<K, Object[]> first = chains.firstEntry();
+        return (first == null) ? null : first.getKey();
+    }
+
+    /**
+     * Returns the largest key stored.
+     *
+     * @return maximum key, or null if empty
+     */
+    public K getMaxKey() {
+        Map.Entry<K, Object[]> last = chains.lastEntry();
+        return (last == null) ? null : last.getKey();
+    }
+
+    /**
+     * Returns the largest key less than or equal to the given key.
+     *
+     * @param key target key
+     * @return floor key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    public K floorKey(K key) {
+        return chains.floorKey(key);
+    }
+
+    /**
+     * Returns the smallest key greater than or equal to the given key.
+     *
+     * @param key target key
+     * @return ceiling key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    public K ceilingKey(K key) {
+        return chains.ceilingKey(key);
+    }
+
+    /**
+     * Returns the largest key strictly less than the given key.
+     *
+     * @param key target key
+     * @return lower key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    public K lowerKey(K key) {
+        return chains.lowerKey(key);
+    }
+
+    /**
+     * Returns the smallest key strictly greater than the given key.
+     *
+     * @param key target key
+     * @return higher key, or null if there is none
+     * @throws NullPointerException if the key is null
+     */
+    public K higherKey(K key) {
+        return chains.higherKey(key);
+    }
+
+    /**
+     * Returns a LinkedList of all keys (including duplicates) in [lo, hi), in
+     * ascending order.
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return list of keys (empty if none in range)
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public LinkedList<K> rangeKeys(K lo, K hi) {
+        LinkedList<K> keys = new LinkedList<>();
+        for (Map.Entry<K, Object[]> entry : range(lo, hi).entrySet()) {
+            for (int i = 0; i < entry.getValue().length; i++) {
+                keys.add(entry.getKey());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns a LinkedList of all key-data pairs with keys in [lo, hi), in
+     * ascending key order.
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return list of pairs (empty if none in range)
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public LinkedList<Map.Entry<K, D>> rangeEntries(K lo, K hi) {
+        LinkedList<Map.Entry<K, D>> entries = new LinkedList<>();
+        Iterator<Map.Entry<K, D>> iter = new ChainIterator(range(lo, hi).entrySet().iterator());
+        while (iter.hasNext()) {
+            entries.add(iter.next());
+        }
+        return entries;
+    }
+
+    /**
+     * Performs the given action on every key in ascending order, once per
+     * pair. Weakly consistent, like iterator.
+     *
+     * @param action action to perform on each key
+     * @throws NullPointerException if the action is null
+     */
+    public void forEachKey(Consumer<? super K> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        chains.forEach((key, chain) -> {
+            for (int i = 0; i < chain.length; i++) {
+                action.accept(key);
+            }
+        });
+    }
+
+    /**
+     * Performs the given action on every data paired with the given key, in
+     * insertion order, as of one moment.
+     *
+     * @param key    target key
+     * @param action action to perform on each data
+     * @throws NullPointerException if key or action is null
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachData(K key, Consumer<? super D> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        Object[] chain = chains.get(key);
+        if (chain != null) {
+            for (Object data : chain) {
+                action.accept((D) data);
+            }
+        }
+    }
+
+    /**
+     * Performs the given action on every pair with a key in [lo, hi), in
+     * ascending key order. Weakly consistent, like iterator.
+     *
+     * @param lo     inclusive lower bound
+     * @param hi     exclusive upper bound
+     * @param action action to perform on each key and data
+     * @throws NullPointerException     if lo, hi or action is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachInRange(K lo, K hi, BiConsumer<? super K, ? super D> action) {
+        NavigableMap<K, Object[]> range = range(lo, hi);
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        for (Map.Entry<K, Object[]> entry : range.entrySet()) {
+            for (Object data : entry.getValue()) {
+                action.accept(entry.getKey(), (D) data);
+            }
+        }
+    }
+
+    /**
+     * Copies keys (including duplicates) in ascending order into the given
+     * array, stopping when it is full.
+     *
+     * @param buffer array to fill from index 0
+     * @return number of keys written
+     * @throws NullPointerException if the buffer is null
+     */
+    public int getAllKeys(K[] buffer) {
+        return fillKeys(chains, buffer);
+    }
+
+    /**
+     * Copies the data of the given key in insertion order into the given
+     * array, stopping when it is full.
+     *
+     * @param key    target key
+     * @param buffer array to fill from index 0
+     * @return number of data written
+     * @throws NullPointerException if key or buffer is null
+     */
+    public int getAllData(K key, D[] buffer) {
+        if (buffer == null) {
+            throw new NullPointerException();
+        }
+        Object[] chain = chains.get(key);
+        if (chain == null) {
+            return 0;
+        }
+        int n = Math.min(chain.length, buffer.length);
+        System.arraycopy(chain, 0, buffer, 0, n);
+        return n;
+    }
+
+    /**
+     * Copies keys (including duplicates) in [lo, hi) in ascending order into
+     * the given array, stopping when it is full.
+     *
+     * @param lo     inclusive lower bound
+     * @param hi     exclusive upper bound
+     * @param buffer array to fill from index 0
+     * @return number of keys written
+     * @throws NullPointerException     if lo, hi or buffer is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public int rangeKeys(K lo, K hi, K[] buffer) {
+        return fillKeys(range(lo, hi), buffer);
+    }
+
+    /**
+     * Removes all pairs with keys in [lo, hi). Each key is removed on its own,
+     * so concurrent inserts into the range may survive.
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return list of the unique keys removed, in ascending order
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public LinkedList<K> removeRange(K lo, K hi) {
+        LinkedList<K> keys = new LinkedList<>();
+        for (K key : range(lo, hi).keySet()) {
+            if (removeAll(key)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Helper to return the live view of the chains with keys in [lo, hi).
+     *
+     * @param lo inclusive lower bound
+     * @param hi exclusive upper bound
+     * @return sub map view
+     * @throws NullPointerException     if lo or hi is null
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    private NavigableMap<K, Object[]> range(K lo, K hi) {
+        if (lo == null || hi == null) {
+            throw new NullPointerException();
+        }
+        if (lo.compareTo(hi) > 0) {
+            throw new IllegalArgumentException();
+        }
+        return chains.subMap(lo, true, hi, false);
+    }
+
+    /**
+     * Helper to copy the keys of the given chains, once per pair, into an
+     * array until it is full.
+     *
+     * @param map    chains to copy the keys of
+     * @param buffer array to fill from index 0
+     * @return number of keys written
+     * @throws NullPointerException if the buffer is null
+     */
+    private static <K> int fillKeys(NavigableMap<K, Object[]> map, K[] buffer) {
+        if (buffer == null) {
+            throw new NullPointerException();
+        }
+        int n = 0;
+        for (Map.Entry<K, Object[]> entry : map.entrySet()) {
+            if (n == buffer.length) {
+                break;
+            }
+            for (int i = Math.min(entry.getValue().length, buffer.length - n); i > 0; i--) {
+                buffer[n++] = entry.getKey();
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Helper to try to swap in a chain where the data at the given position
+     * is replaced, or dropped if the new data is already in the chain.
+     *
+     * @param key     key of the chain
+     * @param chain   chain read by the caller
+     * @param index   position to replace
+     * @param newData data to put there
+     * @return true if the swap happened, false if another writer changed the
+     *         key first
+     */
+    private boolean swapData(K key, Object[] chain, int index, D newData) {
+        if (indexOf(chain, newData) >= 0) {
+            return removeAt(key, chain, index);
+        }
+        Object[] changed = chain.clone();
+        changed[index] = newData;
+        return chains.replace(key, chain, changed);
+    }
+
+    /**
+     * Helper to try to swap in a chain without the data at the given position,
+     * dropping the key with its last pair.
+     *
+     * @param key   key of the chain
+     * @param chain chain read by the caller
+     * @param index position to drop
+     * @return true if the swap happened, false if another writer changed the
+     *         key first
+     */
+    private boolean removeAt(K key, Object[] chain, int index) {
+        if (chain.length == 1) {
+            if (!chains.remove(key, chain)) {
+                return false;
+            }
+            nKeys.decrementAndGet();
+        } else {
+            Object[] shrunk = new Object[chain.length - 1];
+            System.arraycopy(chain, 0, shrunk, 0, index);
+            System.arraycopy(chain, index + 1, shrunk, index, shrunk.length - index);
+            if (!chains.replace(key, chain, shrunk)) {
+                return false;
+            }
+        }
+        nElems.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Helper to find the given data in a chain.
+     *
+     * @param chain chain to search
+     * @param data  data to find
+     * @return position in the chain, or -1 if not found
+     */
+    private static int indexOf(Object[] chain, Object data) {
+        for (int i = 0; i < chain.length; i++) {
+            if (data.equals(chain[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Creates an iterator that flattens the chains of a key-ordered view into
+     * single key-data pairs. Each chain is read once, so a key's data always
+     * come from one consistent version of its chain.
+     */
+    private class ChainIterator implements Iterator<Map.Entry<K, D>> {
+
+        private final Iterator<Map.Entry<K, Object[]>> keys; // remaining chains
+        private K key; // key of the current chain
+        private Object[] chain; // current chain
+        private int index; // next position in chain
+
+        /**
+         * Constructor for ChainIterator.
+         *
+         * @param keys iterator over the chains to flatten
+         */
+        ChainIterator(Iterator<Map.Entry<K, Object[]>> keys) {
+            this.keys = keys;
+        }
+
+        /**
+         * Checks if the iterator has a next pair.
+         *
+         * @return true if there is a next pair, false otherwise
+         */
+        public boolean hasNext() {
+            while (chain == null || index == chain.length) {
+                if (!keys.hasNext()) {
+                    return false;
+                }
+                Map.Entry<K, Object[]> next = keys.next();
+                key = next.getKey();
+                chain = next.getValue();
+                index = 0;
+            }
+            return true;
+        }
+
+        /**
+         * Returns the next pair.
+         *
+         * @return next pair
+         * @throws NoSuchElementException if there is no next pair
+         */
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, D> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return new AbstractMap.SimpleImmutableEntry<>(key, (D) chain[index++]);
+        }
+    }
+
+    /**
+     * Creates a spliterator that flattens the chains of a key-ordered
+     * spliterator into single key-data pairs. Splits hand out a prefix of the
+     * remaining keys, so they are only made between chains.
+     */
+    private class ChainSpliterator implements Spliterator<Map.Entry<K, D>> {
+
+        private final Spliterator<Map.Entry<K, Object[]>> keys; // remaining chains
+        private K key; // key of the current chain
+        private Object[] chain; // current chain, null between chains
+        private int index; // next position in chain
+
+        /**
+         * Constructor for ChainSpliterator.
+         *
+         * @param keys spliterator over the chains to flatten
+         */
+        ChainSpliterator(Spliterator<Map.Entry<K, Object[]>> keys) {
+            this.keys = keys;
+        }
+
+        /**
+         * Visits the next pair, if any.
+         *
+         * @param action action to apply to the pair
+         * @return true if a pair was visited, false if none are left
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super Map.Entry<K, D>> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            while (chain == null) {
+                if (!keys.tryAdvance(next -> {
+                    key = next.getKey();
+                    chain = next.getValue();
+                    index = 0;
+                })) {
+                    return false;
+                }
+            }
+            action.accept(new AbstractMap.SimpleImmutableEntry<>(key, (D) chain[index++]));
+            if (index == chain.length) {
+                chain = null;
+            }
+            return true;
+        }
+
+        /**
+         * Splits off a prefix of the remaining chains.
+         *
+         * @return spliterator over the prefix, or null if this one cannot be
+         *         split right now
+         */
+        @Override
+        public Spliterator<Map.Entry<K, D>> trySplit() {
+            if (chain != null) {
+                return null;
+            }
+            Spliterator<Map.Entry<K, Object[]>> prefix = keys.trySplit();
+            return (prefix == null) ? null : new ChainSpliterator(prefix);
+        }
+
+        /**
+         * Returns the estimated number of chains left, a lower bound on the
+         * pairs left.
+         *
+         * @return estimated size
+         */
+        @Override
+        public long estimateSize() {
+            return keys.estimateSize();
+        }
+
+        /**
+         * Returns the characteristics of this spliterator.
+         *
+         * @return ORDERED, SORTED, DISTINCT, NONNULL and CONCURRENT
+         */
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | NONNULL | CONCURRENT;
+        }
+
+        /**
+         * Returns the order of the pairs, by key.
+         *
+         * @return key comparator for entries
+         */
+        @Override
+        public Comparator<? super Map.Entry<K, D>> getComparator() {
+            return Map.Entry.comparingByKey();
+        }
+    }
+}
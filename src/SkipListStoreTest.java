@@ -0,0 +1,95 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SkipListStoreTest {
+
+    @Test
+    public void dupChains() {
+        SkipListStore<Integer, String> store = new SkipListStore<>();
+        assertNotNull(store.insert(5, "a"));
+        assertNotNull(store.insert(5, "b"));
+        assertNotNull(store.insert(3, "c"));
+        assertNull(store.insert(5, "a"));
+        assertEquals(3, store.size());
+        assertEquals(2, store.nUniqueKeys());
+        assertEquals(Arrays.asList("a", "b"), store.getAllData(5));
+        assertTrue(store.lookup(5, "b"));
+        assertFalse(store.lookup(3, "a"));
+
+        assertTrue(store.remove(5, "a"));
+        assertFalse(store.remove(5, "a"));
+        assertEquals(Arrays.asList("b"), store.getAllData(5));
+        assertTrue(store.remove(5, "b"));
+        assertFalse(store.lookupAny(5));
+        assertEquals(1, store.nUniqueKeys());
+        assertTrue(store.removeAll(3));
+        assertEquals(0, store.size());
+        assertNull(store.getMinKey());
+    }
+
+    @Test
+    public void orderedViews() {
+        SkipListStore<Integer, String> store = new SkipListStore<>();
+        for (int i = 9; i >= 0; i--) {
+            store.insert(i, "a");
+            store.insert(i, "b");
+        }
+        Iterator<Map.Entry<Integer, String>> iter = store.iterator();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(new AbstractMap.SimpleImmutableEntry<>(i, "a"), iter.next());
+            assertEquals(new AbstractMap.SimpleImmutableEntry<>(i, "b"), iter.next());
+        }
+        assertFalse(iter.hasNext());
+        assertEquals(Arrays.asList(2, 2, 3, 3), store.rangeKeys(2, 4));
+        assertEquals(Arrays.asList(2, 3), store.removeRange(2, 4));
+        assertEquals(16, store.size());
+        assertEquals(1, (int) store.lowerKey(4));
+        assertEquals(4, (int) store.ceilingKey(2));
+    }
+
+    @Test
+    public void concurrentWritersKeepCounts() throws InterruptedException {
+        SkipListStore<Integer, Integer> store = new SkipListStore<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                // every thread adds its own data to the same keys, then drops half
+                for (int key = 0; key < 500; key++) {
+                    store.insert(key, id);
+                }
+                for (int key = 0; key < 500; key += 2) {
+                    store.remove(key, id);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(250 * threads.length, store.size());
+        assertEquals(250, store.nUniqueKeys());
+        assertEquals(threads.length, store.getAllData(1).size());
+        assertFalse(store.lookupAny(0));
+    }
+
+    @Test
+    public void upserts() {
+        SkipListStore<String, Integer> store = new SkipListStore<>();
+        assertNull(store.putIfAbsent("a", 1));
+        assertEquals(1, (int) store.putIfAbsent("a", 2));
+        assertEquals(1, (int) store.computeIfAbsent("a", k -> 3));
+        store.insert("a", 5);
+        assertTrue(store.replace("a", 1, 10));
+        assertEquals(Arrays.asList(10, 5), store.getAllData("a"));
+        assertTrue(store.replace("a", 10, 5));
+        assertEquals(Arrays.asList(5), store.getAllData("a"));
+        assertEquals(7, (int) store.merge("a", 2, Integer::sum));
+        assertNull(store.merge("a", 0, (x, y) -> null));
+        assertEquals(0, store.size());
+        assertEquals(0, store.nUniqueKeys());
+    }
+}